@@ -0,0 +1,360 @@
+package com.git.original.common.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 以基本类型long为键的线程安全哈希表
+ * <p>
+ * 按键的哈希值分为多个段, 每段内部使用开放定址(线性探测)的long[]/Object[]数组存储, 不需要为每个元素创建
+ * {@link Long}键对象及链表节点; 各段独立加锁, 不同段之间的操作互不阻塞
+ * <p>
+ * 注意: 不允许null值
+ *
+ * @author linaoxiang
+ */
+public class ConcurrentLongHashMap<V> {
+
+	/**
+	 * 默认的段数量
+	 */
+	private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+	/**
+	 * 默认的初始容量
+	 */
+	private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+	/**
+	 * 各段
+	 */
+	private final Segment<V>[] segments;
+
+	/**
+	 * 段索引的位移量
+	 */
+	private final int segmentShift;
+
+	/**
+	 * 默认构造函数
+	 */
+	public ConcurrentLongHashMap() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param initialCapacity
+	 *            初始容量
+	 * @param concurrencyLevel
+	 *            预计的并发修改线程数
+	 */
+	public ConcurrentLongHashMap(int initialCapacity, int concurrencyLevel) {
+		if (initialCapacity < 0 || concurrencyLevel <= 0) {
+			throw new IllegalArgumentException();
+		}
+
+		int count = 1;
+		int bits = 0;
+		while (count < concurrencyLevel && count < (1 << 16)) {
+			count <<= 1;
+			bits++;
+		}
+		this.segmentShift = 32 - bits;
+		// 不能直接创建泛型数组; 数组只在本类内部使用, 转换是安全的
+		@SuppressWarnings("unchecked")
+		Segment<V>[] array = (Segment<V>[]) new Segment<?>[count];
+		this.segments = array;
+
+		int perSegment = Math.max(4, (initialCapacity + count - 1) / count);
+		for (int i = 0; i < count; i++) {
+			this.segments[i] = new Segment<V>(perSegment);
+		}
+	}
+
+	/**
+	 * 计算键的哈希值(MurmurHash3的64位混合函数)
+	 *
+	 * @param key
+	 * @return
+	 */
+	static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private Segment<V> segmentFor(int hash) {
+		return (segments.length == 1 ? segments[0]
+				: segments[hash >>> segmentShift]);
+	}
+
+	/**
+	 * @param key
+	 * @return null=不存在
+	 */
+	public V get(long key) {
+		int h = hash(key);
+		return segmentFor(h).get(key, h);
+	}
+
+	/**
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(long key) {
+		return this.get(key) != null;
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 *            不允许为null
+	 * @return 原有的值(null=原先不存在)
+	 */
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		int h = hash(key);
+		return segmentFor(h).put(key, h, value, false);
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 *            不允许为null
+	 * @return 已经存在的值(null=放入成功)
+	 */
+	public V putIfAbsent(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		int h = hash(key);
+		return segmentFor(h).put(key, h, value, true);
+	}
+
+	/**
+	 * @param key
+	 * @return 被删除的值(null=不存在)
+	 */
+	public V remove(long key) {
+		int h = hash(key);
+		return segmentFor(h).remove(key, h, null);
+	}
+
+	/**
+	 * 仅当键对应的值为指定值时删除
+	 *
+	 * @param key
+	 * @param value
+	 * @return true=已删除
+	 */
+	public boolean remove(long key, V value) {
+		if (value == null) {
+			return false;
+		}
+		int h = hash(key);
+		return segmentFor(h).remove(key, h, value) != null;
+	}
+
+	/**
+	 * @return 元素数量
+	 */
+	public int size() {
+		long size = 0;
+		for (Segment<V> s : segments) {
+			size += s.size();
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return
+	 */
+	public boolean isEmpty() {
+		for (Segment<V> s : segments) {
+			if (s.size() > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 获取当前所有值的快照
+	 *
+	 * @return
+	 */
+	public List<V> values() {
+		List<V> list = new ArrayList<V>(this.size());
+		for (Segment<V> s : segments) {
+			s.copyValues(list);
+		}
+		return list;
+	}
+
+	/**
+	 * 删除所有元素
+	 */
+	public void clear() {
+		for (Segment<V> s : segments) {
+			s.clear();
+		}
+	}
+
+	/**
+	 * 哈希表中的一段
+	 */
+	private static final class Segment<V> {
+		/**
+		 * 键数组
+		 */
+		private long[] keys;
+
+		/**
+		 * 值数组(null=空位)
+		 */
+		private Object[] values;
+
+		/**
+		 * 元素数量
+		 */
+		private volatile int size;
+
+		Segment(int capacity) {
+			int cap = 4;
+			while (cap < capacity * 2) {
+				cap <<= 1;
+			}
+			this.keys = new long[cap];
+			this.values = new Object[cap];
+		}
+
+		int size() {
+			return size;
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized V get(long key, int hash) {
+			long[] ks = keys;
+			Object[] vs = values;
+			int mask = ks.length - 1;
+			for (int i = hash & mask;; i = (i + 1) & mask) {
+				Object v = vs[i];
+				if (v == null) {
+					return null;
+				}
+				if (ks[i] == key) {
+					return (V) v;
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized V put(long key, int hash, V value, boolean onlyIfAbsent) {
+			long[] ks = keys;
+			Object[] vs = values;
+			int mask = ks.length - 1;
+			int i = hash & mask;
+			for (;; i = (i + 1) & mask) {
+				Object v = vs[i];
+				if (v == null) {
+					break;
+				}
+				if (ks[i] == key) {
+					if (!onlyIfAbsent) {
+						vs[i] = value;
+					}
+					return (V) v;
+				}
+			}
+
+			ks[i] = key;
+			vs[i] = value;
+			int newSize = size + 1;
+			size = newSize;
+			if (newSize * 2 > ks.length) {
+				// 装载因子保持在1/2以下
+				this.rehash(ks.length * 2);
+			}
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized V remove(long key, int hash, V expected) {
+			long[] ks = keys;
+			Object[] vs = values;
+			int mask = ks.length - 1;
+			int i = hash & mask;
+			for (;; i = (i + 1) & mask) {
+				Object v = vs[i];
+				if (v == null) {
+					return null;
+				}
+				if (ks[i] == key) {
+					if (expected != null && !expected.equals(v)) {
+						return null;
+					}
+					break;
+				}
+			}
+
+			V old = (V) vs[i];
+			// 后移删除: 将探测链上后续的元素前移, 不需要墓碑标记
+			int gap = i;
+			for (int j = (gap + 1) & mask; vs[j] != null; j = (j + 1) & mask) {
+				int home = hash(ks[j]) & mask;
+				// 元素j的理想位置不在(gap, j]区间内时, 可以移入空位
+				if ((j > gap) ? (home <= gap || home > j)
+						: (home <= gap && home > j)) {
+					ks[gap] = ks[j];
+					vs[gap] = vs[j];
+					gap = j;
+				}
+			}
+			vs[gap] = null;
+			size = size - 1;
+			return old;
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized void copyValues(List<V> list) {
+			for (Object v : values) {
+				if (v != null) {
+					list.add((V) v);
+				}
+			}
+		}
+
+		synchronized void clear() {
+			Arrays.fill(values, null);
+			size = 0;
+		}
+
+		private void rehash(int capacity) {
+			long[] oldKeys = keys;
+			Object[] oldValues = values;
+			long[] ks = new long[capacity];
+			Object[] vs = new Object[capacity];
+			int mask = capacity - 1;
+			for (int k = 0; k < oldKeys.length; k++) {
+				if (oldValues[k] != null) {
+					int i = hash(oldKeys[k]) & mask;
+					while (vs[i] != null) {
+						i = (i + 1) & mask;
+					}
+					ks[i] = oldKeys[k];
+					vs[i] = oldValues[k];
+				}
+			}
+			this.keys = ks;
+			this.values = vs;
+		}
+	}
+}
@@ -126,6 +126,194 @@ public final class CharsetUtil {
         return d;
     }
 
+    /**
+     * Maximum length of the cached thread-local scratch char array used by
+     * {@link #decode(byte[], int, int, Charset)}
+     */
+    private static final int MAX_SCRATCH_CHARS = 64 * 1024;
+
+    private static final ThreadLocal<char[]> scratchChars = new ThreadLocal<char[]>();
+
+    /**
+     * Returns <tt>true</tt> if the specified <tt>charset</tt> is handled by the
+     * specialized routines {@link #encodedLength(CharSequence, Charset)},
+     * {@link #encode(CharSequence, Charset, byte[], int)} and
+     * {@link #decode(byte[], int, int, Charset)}, i.e. US-ASCII, ISO-8859-1
+     * or UTF-8.
+     */
+    public static boolean hasFastPath(Charset charset) {
+        return charset == US_ASCII || charset == UTF_8
+                || charset == ISO_8859_1 || US_ASCII.equals(charset)
+                || UTF_8.equals(charset) || ISO_8859_1.equals(charset);
+    }
+
+    /**
+     * Returns the exact number of bytes required to encode the specified
+     * <tt>src</tt>, or <tt>-1</tt> if the <tt>charset</tt> has no fast path.
+     * Unmappable characters and malformed surrogates are counted as one
+     * replacement byte (<tt>'?'</tt>), the same as the cached encoders.
+     */
+    public static int encodedLength(CharSequence src, Charset charset) {
+        final int length = src.length();
+        if (UTF_8.equals(charset)) {
+            int bytes = length;
+            for (int i = 0; i < length; i++) {
+                char c = src.charAt(i);
+                if (c < 0x80) {
+                    continue;
+                } else if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(src.charAt(i + 1))) {
+                    // 4 bytes for 2 chars
+                    bytes += 2;
+                    i++;
+                } else if (!isSurrogate(c)) {
+                    bytes += 2;
+                }
+            }
+            return bytes;
+        } else if (US_ASCII.equals(charset) || ISO_8859_1.equals(charset)) {
+            int bytes = length;
+            for (int i = 0; i < length - 1; i++) {
+                if (Character.isHighSurrogate(src.charAt(i))
+                        && Character.isLowSurrogate(src.charAt(i + 1))) {
+                    // a surrogate pair is replaced by a single byte
+                    bytes--;
+                    i++;
+                }
+            }
+            return bytes;
+        }
+        return -1;
+    }
+
+    /**
+     * Encodes the specified <tt>src</tt> into <tt>dst</tt> without going
+     * through the {@link CharsetEncoder} state machine. Pure ASCII input is
+     * copied char by char.
+     *
+     * @param src
+     *            the characters to encode
+     * @param charset
+     *            US-ASCII, ISO-8859-1 or UTF-8
+     * @param dst
+     *            the destination array, which must have at least
+     *            {@link #encodedLength(CharSequence, Charset)} bytes
+     *            remaining from <tt>offset</tt>
+     * @param offset
+     *            the first index of <tt>dst</tt> to write
+     * @return the number of bytes written
+     * @throws IllegalArgumentException
+     *             if the <tt>charset</tt> has no fast path
+     */
+    public static int encode(CharSequence src, Charset charset, byte[] dst,
+            int offset) {
+        final int length = src.length();
+        int pos = offset;
+
+        // ASCII prefix, shared by all supported charsets
+        int i = 0;
+        for (; i < length; i++) {
+            char c = src.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            dst[pos++] = (byte) c;
+        }
+        if (i == length) {
+            return pos - offset;
+        }
+
+        if (UTF_8.equals(charset)) {
+            for (; i < length; i++) {
+                char c = src.charAt(i);
+                if (c < 0x80) {
+                    dst[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    dst[pos++] = (byte) (0xC0 | (c >> 6));
+                    dst[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(src.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, src.charAt(++i));
+                        dst[pos++] = (byte) (0xF0 | (cp >> 18));
+                        dst[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                        dst[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                        dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+                    } else {
+                        dst[pos++] = '?';
+                    }
+                } else {
+                    dst[pos++] = (byte) (0xE0 | (c >> 12));
+                    dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    dst[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        } else if (US_ASCII.equals(charset) || ISO_8859_1.equals(charset)) {
+            final char max = (US_ASCII.equals(charset) ? (char) 0x7F
+                    : (char) 0xFF);
+            for (; i < length; i++) {
+                char c = src.charAt(i);
+                if (c <= max) {
+                    dst[pos++] = (byte) c;
+                } else {
+                    if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(src.charAt(i + 1))) {
+                        i++;
+                    }
+                    dst[pos++] = '?';
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("no fast path for charset: "
+                    + charset);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Decodes the specified bytes into a {@link String}. Pure ASCII input
+     * (and any ISO-8859-1 input) is widened byte by byte through a cached
+     * thread-local scratch array; other input falls back to
+     * {@link String#String(byte[], int, int, Charset)}.
+     */
+    public static String decode(byte[] src, int offset, int length,
+            Charset charset) {
+        if (length == 0) {
+            return "";
+        }
+
+        boolean latin1 = ISO_8859_1.equals(charset);
+        if (!latin1 && !US_ASCII.equals(charset) && !UTF_8.equals(charset)) {
+            return new String(src, offset, length, charset);
+        }
+
+        char[] chars = scratchChars.get();
+        if (chars == null || chars.length < length) {
+            if (length > MAX_SCRATCH_CHARS) {
+                chars = new char[length];
+            } else {
+                chars = new char[Math.max(length, 256)];
+                scratchChars.set(chars);
+            }
+        }
+
+        for (int i = 0; i < length; i++) {
+            byte b = src[offset + i];
+            if (b < 0 && !latin1) {
+                // not ASCII, let the JDK decode it
+                return new String(src, offset, length, charset);
+            }
+            chars[i] = (char) (b & 0xFF);
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
     private CharsetUtil() {
         // Unused
     }
@@ -147,50 +147,88 @@ public final class CompressUtils {
 	 */
 	public static ByteBuffer uncompressDefalte(ByteBuffer buffer, boolean nowrap)
 			throws DataFormatException {
+		return uncompressDefalte(buffer, nowrap, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 基于ZLIB压缩库，对<a
+	 * href="http://en.wikipedia.org/wiki/DEFLATE">Deflate</a>算法压缩后的数据进行解压缩操作,
+	 * 解压后的数据超过上限时立即中止
+	 * <p>
+	 * 用于解压来自网络等不可信来源的数据, 避免少量压缩数据解压后占用大量内存
+	 * 
+	 * @param buffer
+	 *            压缩后的数据
+	 * @param nowrap
+	 * @param maxLength
+	 *            解压后的数据长度上限(字节)
+	 * @return 解压后的原始数据; null=解压后的数据超过上限
+	 * @throws DataFormatException
+	 * @see {@link Inflater}
+	 */
+	public static ByteBuffer uncompressDefalte(ByteBuffer buffer,
+			boolean nowrap, int maxLength) throws DataFormatException {
 
 		// 获取需要解压缩的原始字节长度
 		int srcLength = buffer.remaining();
 
 		Inflater inf = new Inflater(nowrap);
-		if (buffer.hasArray()) {
-			inf.setInput(buffer.array(),
-					buffer.position() + buffer.arrayOffset(), srcLength);
-			buffer.position(buffer.limit());
-		} else {
-			byte[] srcBytes = new byte[srcLength];
-			buffer.get(srcBytes);
-			inf.setInput(srcBytes);
-		}
-
-		// 设置预设存储数据块
-		int capacity = (srcLength < 1 * 1024) ? (srcLength << 2) : srcLength;
-		byte[] bytes = new byte[(capacity <= 0 ? 8 : capacity)]; // 保证不会出现0字节缓存
-		int offset = 0;
-		int limit = bytes.length;
-
-		// 解压缩
-		do {
-			if (offset >= limit) {
-				// 扩容
-				byte[] tmp = new byte[(bytes.length << 1)];
-				System.arraycopy(bytes, 0, tmp, 0, bytes.length);
-
-				offset = bytes.length;
-				limit = tmp.length;
-				bytes = tmp;
+		try {
+			if (buffer.hasArray()) {
+				inf.setInput(buffer.array(),
+						buffer.position() + buffer.arrayOffset(), srcLength);
+				buffer.position(buffer.limit());
+			} else {
+				byte[] srcBytes = new byte[srcLength];
+				buffer.get(srcBytes);
+				inf.setInput(srcBytes);
 			}
 
-			int inflated = inf.inflate(bytes, offset, (limit - offset));
-			if (inflated > 0) {
-				offset += inflated;
-			} else if (inf.needsInput()) {
-				inf.setInput(INFALTE_PADDING_BYTES);
-			}
-		} while (!inf.finished());
+			// 输出缓存最多比上限多1个字节, 用于判断是否超过上限
+			long bound = Math.min((long) Math.max(0, maxLength) + 1,
+					Integer.MAX_VALUE - 8);
+
+			// 设置预设存储数据块
+			int capacity = (srcLength < 1 * 1024) ? (srcLength << 2)
+					: srcLength;
+			byte[] bytes = new byte[(int) Math.min(bound,
+					(capacity <= 0 ? 8 : capacity))]; // 保证不会出现0字节缓存
+			int offset = 0;
+			int limit = bytes.length;
+
+			// 解压缩
+			do {
+				if (offset >= limit) {
+					if (limit >= bound) {
+						// 超过上限
+						return null;
+					}
+
+					// 扩容
+					byte[] tmp = new byte[(int) Math.min(bound,
+							(long) bytes.length << 1)];
+					System.arraycopy(bytes, 0, tmp, 0, bytes.length);
+
+					offset = bytes.length;
+					limit = tmp.length;
+					bytes = tmp;
+				}
 
-		inf.end();
+				int inflated = inf.inflate(bytes, offset, (limit - offset));
+				if (inflated > 0) {
+					offset += inflated;
+				} else if (inf.needsInput()) {
+					inf.setInput(INFALTE_PADDING_BYTES);
+				}
+			} while (!inf.finished());
 
-		return ByteBuffer.wrap(bytes, 0, offset);
+			if (offset > maxLength) {
+				return null;
+			}
+			return ByteBuffer.wrap(bytes, 0, offset);
+		} finally {
+			inf.end();
+		}
 	}
 
 	/**
@@ -49,8 +49,24 @@ public final class Utils {
 	 * @return 全局唯一的sessionid
 	 */
 	public static final String getGlobalSessionId(long localSessionId, int ip) {
-		long millis = System.currentTimeMillis();
+		return getGlobalSessionId(localSessionId, ip,
+				System.currentTimeMillis());
+	}
 
+	/**
+	 * 根据本地服务器上的session id, 本地服务器的ip及会话创建时间产生全局唯一的会话ID
+	 * 
+	 * @param localSessionId
+	 *            服务器上当前sessionid
+	 * @param ip
+	 *            当前服务器ip
+	 * @param millis
+	 *            会话创建的时间(单位:ms)
+	 * @return 全局唯一的sessionid
+	 * @see #getGlobalSessionId(long, int)
+	 */
+	public static final String getGlobalSessionId(long localSessionId, int ip,
+			long millis) {
 		StringBuilder idBuf = new StringBuilder(32);
 
 		// 第二部分: 时间戳(定长=10)
@@ -0,0 +1,28 @@
+package com.git.original.server;
+
+/**
+ * 异步处理消息的会话处理器
+ * <p>
+ * 消息处理方法可以在发起存储等耗时操作后立即返回, 不占用业务处理线程; 操作结束时通过
+ * {@link ICommandCompletion}通知框架. 命令未完成期间, 框架暂停读取该连接的数据, 已经解码的后续消息按顺序暂存,
+ * 命令完成后再依次处理, 保证同一连接的消息处理及响应顺序
+ * <p>
+ * 实现该接口后, {@link ISessionHandler#messageReceived(Object)}不再被框架调用
+ *
+ * @author linaoxiang
+ */
+public interface IAsyncSessionHandler extends ISessionHandler {
+	/**
+	 * 数据到达
+	 *
+	 * @param message
+	 *            数据
+	 * @param completion
+	 *            命令完成时必须调用{@link ICommandCompletion#completed()}或者
+	 *            {@link ICommandCompletion#failed(Throwable)}
+	 * @throws Exception
+	 *             抛出异常等同于调用{@link ICommandCompletion#failed(Throwable)}
+	 */
+	void messageReceived(Object message, ICommandCompletion completion)
+			throws Exception;
+}
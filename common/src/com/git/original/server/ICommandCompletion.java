@@ -0,0 +1,23 @@
+package com.git.original.server;
+
+/**
+ * 异步命令的完成通知
+ * <p>
+ * 每个命令只能通知一次, 重复的通知将被忽略; 允许在任意线程中调用
+ *
+ * @author linaoxiang
+ */
+public interface ICommandCompletion {
+	/**
+	 * 命令处理完成(响应已经写出), 继续处理该连接的后续消息
+	 */
+	void completed();
+
+	/**
+	 * 命令处理失败, 按照连接异常处理(关闭连接)
+	 *
+	 * @param cause
+	 *            失败原因
+	 */
+	void failed(Throwable cause);
+}
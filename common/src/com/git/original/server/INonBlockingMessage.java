@@ -0,0 +1,13 @@
+package com.git.original.server;
+
+/**
+ * 非阻塞消息标记接口
+ * <p>
+ * 实现该接口的业务消息(如NOOP, CAPABILITY等简单命令)的处理过程不会阻塞且耗时极短, 在开启内联处理后,
+ * 当该连接没有正在排队或处理中的事件时, 直接在网络I/O线程中交给{@link ISessionHandler}处理,
+ * 不再切换到业务处理线程池
+ *
+ * @author linaoxiang
+ */
+public interface INonBlockingMessage {
+}
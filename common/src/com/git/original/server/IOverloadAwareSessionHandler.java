@@ -0,0 +1,27 @@
+package com.git.original.server;
+
+/**
+ * 可以在服务器过载时以协议方式拒绝请求的会话处理器
+ * <p>
+ * 业务处理线程池饱和时, 新到达的消息不再进入线程池排队, 而是在网络I/O线程中交给
+ * {@link #messageRejected(Object)}处理, 由会话返回协议层面的"稍后重试"响应(如SMTP 421, IMAP
+ * NO [UNAVAILABLE]); 未实现该接口的会话将被直接关闭
+ * <p>
+ * 流式数据块(StreamChunk)及合并帧(FrameBatch)不会交给本接口处理:
+ * 拒绝其中一部分会使会话与客户端的协议状态不一致, 此时总是直接关闭连接
+ *
+ * @author linaoxiang
+ */
+public interface IOverloadAwareSessionHandler extends ISessionHandler {
+	/**
+	 * 服务器过载, 拒绝处理消息
+	 * <p>
+	 * 注意: 在网络I/O线程中调用, 不允许执行任何阻塞操作; 只会收到单个完整的命令消息
+	 *
+	 * @param message
+	 *            被拒绝的消息
+	 * @return true=已经以协议方式响应; false=需要关闭连接
+	 * @throws Exception
+	 */
+	boolean messageRejected(Object message) throws Exception;
+}
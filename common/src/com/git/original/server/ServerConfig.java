@@ -25,11 +25,157 @@ public abstract class ServerConfig {
 	 */
 	public static final String CONF_SERVER_IDLE_TIMEOUT = "server.idle-timeout";
 
+	/**
+	 * 配置路径: IDLE检测使用的独立时间轮数量(0=使用JVM全局共享的定时器)
+	 */
+	public static final String CONF_SERVER_IDLE_TIMER_SHARDS = "server.idle-timer.shards";
+
+	/**
+	 * 配置路径: IDLE检测使用的独立时间轮刻度间隔(单位:ms)
+	 */
+	public static final String CONF_SERVER_IDLE_TIMER_TICK_DURATION = "server.idle-timer.tick-duration";
+
+	/**
+	 * 配置路径: IDLE检测使用的独立时间轮槽位数量
+	 */
+	public static final String CONF_SERVER_IDLE_TIMER_WHEEL_SIZE = "server.idle-timer.wheel-size";
+
+	/**
+	 * 配置路径: 编解码处理器中帧数据缓存的累积策略
+	 * 
+	 * @see #CODEC_CUMULATION_COPY
+	 * @see #CODEC_CUMULATION_COMPOSITE
+	 */
+	public static final String CONF_SERVER_CODEC_CUMULATION = "server.codec-cumulation";
+
+	/** 帧数据缓存累积策略: 复制到可自动扩展的缓存块中 */
+	public static final String CODEC_CUMULATION_COPY = "copy";
+
+	/** 帧数据缓存累积策略: 以组合缓存的方式引用接收到的数据块 */
+	public static final String CODEC_CUMULATION_COMPOSITE = "composite";
+
+	/**
+	 * 配置路径: composite累积策略下未完成的帧允许跨越的数据块数量上限
+	 */
+	public static final String CONF_SERVER_CODEC_MAX_COMPONENTS = "server.codec-max-components";
+
+	/**
+	 * 配置路径: 是否将一次网络读取中解码得到的多个帧合并为一个批量消息处理(适用于命令流水线)
+	 */
+	public static final String CONF_SERVER_CODEC_BATCH_FRAMES = "server.codec-batch-frames";
+
+	/**
+	 * 配置路径: 编解码处理器中帧数据缓存自动缩减时的容量下限(字节, 0=跟随连接的读缓存大小预测)
+	 */
+	public static final String CONF_SERVER_CODEC_MIN_SHRINK_CAPACITY = "server.codec-min-shrink-capacity";
+
+	/**
+	 * 配置路径: 连接读缓存大小
+	 * <p>
+	 * 格式: "最小,初始,最大"表示根据每个连接的实际读取量自适应调整; 单个容量值表示固定大小(允许使用容量单位后缀, 如:
+	 * 64,1k,64k)
+	 */
+	public static final String CONF_SERVER_READ_BUFFER_SIZE = "server.read-buffer-size";
+
+	/**
+	 * 配置路径: 是否在网络I/O线程中直接处理非阻塞消息(参见{@link INonBlockingMessage})
+	 */
+	public static final String CONF_SERVER_INLINE_NON_BLOCKING = "server.inline-non-blocking";
+
+	/**
+	 * 配置路径: 业务处理线程池中等待处理的事件数达到该值后拒绝新的消息(0=不限制)
+	 */
+	public static final String CONF_SERVER_SATURATION_MAX_PENDING = "server.saturation.max-pending";
+
+	/**
+	 * 配置路径: 业务处理线程池中近期的平均排队耗时达到该值后拒绝新的消息(单位:ms, 0=不限制)
+	 */
+	public static final String CONF_SERVER_SATURATION_MAX_WAIT = "server.saturation.max-wait";
+
+	/**
+	 * 配置路径: 业务处理线程池饱和时拒绝消息的方式
+	 * 
+	 * @see #SATURATION_ACTION_REJECT
+	 * @see #SATURATION_ACTION_CLOSE
+	 */
+	public static final String CONF_SERVER_SATURATION_ACTION = "server.saturation.action";
+
+	/** 拒绝消息的方式: 由会话以协议方式响应(参见{@link IOverloadAwareSessionHandler}), 不支持时关闭连接 */
+	public static final String SATURATION_ACTION_REJECT = "reject";
+
+	/** 拒绝消息的方式: 直接关闭连接 */
+	public static final String SATURATION_ACTION_CLOSE = "close";
+
+	/**
+	 * 配置路径: 是否将每次业务处理期间产生的响应合并为一次写出
+	 */
+	public static final String CONF_SERVER_WRITE_AGGREGATION = "server.write-aggregation";
+
+	/**
+	 * 配置路径: 合并写出时暂存数据量达到该值后立即写出(字节)
+	 */
+	public static final String CONF_SERVER_WRITE_FLUSH_THRESHOLD = "server.write-flush-threshold";
+
+	/**
+	 * 配置路径: 是否通过JMX输出服务器运行统计
+	 */
+	public static final String CONF_SERVER_METRICS_JMX = "server.metrics-jmx";
+
+	/**
+	 * 配置路径: 是否按命令名称汇总消息处理耗时
+	 */
+	public static final String CONF_SERVER_COMMAND_STATISTICS = "server.command-statistics";
+
+	/**
+	 * 配置路径: 服务器关闭时等待现有连接完成处理的最长时间(0=立即关闭)
+	 */
+	public static final String CONF_SERVER_SHUTDOWN_DRAIN_TIMEOUT = "server.shutdown-drain-timeout";
+
 	/**
 	 * 配置路径: 连接写超时
 	 */
 	public static final String CONF_SERVER_WRITE_TIMEOUT = "server.write-timeout";
 
+	/**
+	 * 配置路径: 连接写缓存高水位(字节), 超过该值后通道将变为不可写状态
+	 */
+	public static final String CONF_SERVER_WRITE_BUFFER_HIGH_WATER_MARK = "server.write-buffer-high-water-mark";
+
+	/**
+	 * 配置路径: 连接写缓存低水位(字节), 低于该值后通道将恢复为可写状态
+	 */
+	public static final String CONF_SERVER_WRITE_BUFFER_LOW_WATER_MARK = "server.write-buffer-low-water-mark";
+
+	/**
+	 * 配置路径: 连接写缓存超过高水位时, 是否暂停读取该连接的数据
+	 */
+	public static final String CONF_SERVER_WRITE_BACKPRESSURE = "server.write-backpressure";
+
+	/**
+	 * 配置路径: 服务器全局的连接数上限(0=不限制)
+	 */
+	public static final String CONF_SERVER_MAX_CONNECTIONS = "server.connection-limit.max-connections";
+
+	/**
+	 * 配置路径: 单个来源IP的连接数上限(0=不限制)
+	 */
+	public static final String CONF_SERVER_MAX_CONNECTIONS_PER_IP = "server.connection-limit.max-connections-per-ip";
+
+	/**
+	 * 配置路径: 每秒允许新建的连接数(0=不限制)
+	 */
+	public static final String CONF_SERVER_CONNECT_RATE = "server.connection-limit.connect-rate";
+
+	/**
+	 * 配置路径: 新建连接的突发上限(0=与每秒允许新建的连接数相同)
+	 */
+	public static final String CONF_SERVER_CONNECT_BURST = "server.connection-limit.connect-burst";
+
+	/**
+	 * 配置路径: 不受连接数限制的来源IP白名单(逗号分隔, 支持IPv4/IPv6的网络掩码和网络段格式)
+	 */
+	public static final String CONF_SERVER_CONNECTION_LIMIT_WHITELIST = "server.connection-limit.whitelist";
+
 	/**
 	 * 配置路径: 网络IO类型
 	 */
@@ -59,6 +205,75 @@ public abstract class ServerConfig {
 	 */
 	public static final String BIND_ADDRESS_ATTRIBUTE_IO_TYPE = "type";
 
+	/**
+	 * 配置路径: 非阻塞式网络IO的线程模式
+	 * 
+	 * @see #IO_THREAD_MODE_SHARED
+	 * @see #IO_THREAD_MODE_DEDICATED
+	 */
+	public static final String CONF_SERVER_IO_THREAD_MODE = "server.io-thread-mode";
+
+	/** 网络IO线程模式: 使用JVM全局共享的IO线程池 */
+	public static final String IO_THREAD_MODE_SHARED = "shared";
+
+	/** 网络IO线程模式: 当前服务独占的IO线程池 */
+	public static final String IO_THREAD_MODE_DEDICATED = "dedicated";
+
+	/**
+	 * 配置路径: 服务独占IO线程池时的IO工作线程数(0=CPU核数*2)
+	 */
+	public static final String CONF_SERVER_IO_WORKER_COUNT = "server.io-worker-count";
+
+	/**
+	 * 侦听地址属性值: 该侦听地址独占的IO工作线程数
+	 * <p>
+	 * 指定了该属性(且大于0)的非阻塞式侦听地址将使用独立的IO线程池, 不与其它侦听地址共享
+	 */
+	public static final String BIND_ADDRESS_ATTRIBUTE_IO_WORKER_COUNT = "io-worker-count";
+
+	/**
+	 * 配置路径: 侦听地址默认的Socket选项
+	 * <p>
+	 * 子节点名称同时也是侦听地址节点的属性名称, 侦听地址节点上的同名属性值优先生效
+	 */
+	public static final String CONF_SERVER_SOCKET_OPTION = "server.socket-option";
+
+	/** Socket选项: 侦听队列长度(backlog) */
+	public static final String SOCKET_OPTION_BACKLOG = "backlog";
+
+	/** Socket选项: SO_REUSEADDR */
+	public static final String SOCKET_OPTION_REUSE_ADDRESS = "reuse-address";
+
+	/** Socket选项: TCP_NODELAY */
+	public static final String SOCKET_OPTION_TCP_NO_DELAY = "tcp-no-delay";
+
+	/** Socket选项: SO_KEEPALIVE */
+	public static final String SOCKET_OPTION_KEEP_ALIVE = "keep-alive";
+
+	/** Socket选项: SO_RCVBUF(允许使用容量单位后缀, 如: 64k) */
+	public static final String SOCKET_OPTION_RECEIVE_BUFFER_SIZE = "receive-buffer-size";
+
+	/** Socket选项: SO_SNDBUF(允许使用容量单位后缀, 如: 64k) */
+	public static final String SOCKET_OPTION_SEND_BUFFER_SIZE = "send-buffer-size";
+
+	/** Socket选项: SO_LINGER(单位:s, 小于0表示关闭该选项) */
+	public static final String SOCKET_OPTION_SO_LINGER = "so-linger";
+
+	/**
+	 * 侦听地址属性值: 连接写缓存高水位(允许使用容量单位后缀, 如: 64k)
+	 */
+	public static final String BIND_ADDRESS_ATTRIBUTE_WRITE_BUFFER_HIGH_WATER_MARK = "write-buffer-high-water-mark";
+
+	/**
+	 * 侦听地址属性值: 连接写缓存低水位(允许使用容量单位后缀, 如: 32k)
+	 */
+	public static final String BIND_ADDRESS_ATTRIBUTE_WRITE_BUFFER_LOW_WATER_MARK = "write-buffer-low-water-mark";
+
+	/**
+	 * 侦听地址属性值: 连接读缓存大小(格式参见{@link #CONF_SERVER_READ_BUFFER_SIZE})
+	 */
+	public static final String BIND_ADDRESS_ATTRIBUTE_READ_BUFFER_SIZE = "read-buffer-size";
+
 	/**
 	 * 服务器管理端口配置参数节点路径
 	 */
@@ -89,6 +304,43 @@ public abstract class ServerConfig {
 	 */
 	public static final String CONF_SERVER_HANDLE_THREAD_COUNT = "server.handle-thread-count";
 
+	/**
+	 * 配置路径: 业务处理线程池的调度策略
+	 * 
+	 * @see #EXECUTOR_STRATEGY_ORDERED
+	 * @see #EXECUTOR_STRATEGY_STRIPED
+	 * @see #EXECUTOR_STRATEGY_UNORDERED
+	 * @see #EXECUTOR_STRATEGY_VIRTUAL
+	 */
+	public static final String CONF_SERVER_EXECUTOR_STRATEGY = "server.executor-strategy";
+
+	/** 业务线程池调度策略: 同一连接的事件按顺序处理, 不同连接的事件共享全部线程 */
+	public static final String EXECUTOR_STRATEGY_ORDERED = "ordered";
+
+	/** 业务线程池调度策略: 按连接ID散列到固定的单线程队列, 同一连接的事件总是由同一线程处理 */
+	public static final String EXECUTOR_STRATEGY_STRIPED = "striped";
+
+	/** 业务线程池调度策略: 不保证同一连接的事件处理顺序 */
+	public static final String EXECUTOR_STRATEGY_UNORDERED = "unordered";
+
+	/** 业务线程池调度策略: 每个连接使用独立的虚拟线程按顺序处理事件(JDK不支持时使用ordered策略) */
+	public static final String EXECUTOR_STRATEGY_VIRTUAL = "virtual";
+
+	/**
+	 * 配置路径: 业务线程池中单个连接等待处理的事件占用内存上限(0=不限制)
+	 */
+	public static final String CONF_SERVER_EXECUTOR_CHANNEL_MEMORY_LIMIT = "server.executor-channel-memory-limit";
+
+	/**
+	 * 配置路径: 业务线程池中全部等待处理的事件占用内存上限(0=不限制)
+	 */
+	public static final String CONF_SERVER_EXECUTOR_TOTAL_MEMORY_LIMIT = "server.executor-total-memory-limit";
+
+	/**
+	 * 配置路径: striped调度策略下每个线程的等待队列容量(0=不限制)
+	 */
+	public static final String CONF_SERVER_EXECUTOR_QUEUE_CAPACITY = "server.executor-queue-capacity";
+
 	/**
 	 * 配置路径: SSL证书配置
 	 */
@@ -219,6 +471,54 @@ public abstract class ServerConfig {
 				32);
 	}
 
+	/**
+	 * 获取业务处理线程池的调度策略
+	 * <p>
+	 * 默认值: {@link #EXECUTOR_STRATEGY_ORDERED}
+	 * 
+	 * @return
+	 */
+	public String getServerExecutorStrategy() {
+		return config.getRootNode().getNonEmptyString(
+				CONF_SERVER_EXECUTOR_STRATEGY, EXECUTOR_STRATEGY_ORDERED);
+	}
+
+	/**
+	 * 获取业务线程池中单个连接等待处理的事件占用内存上限(单位:字节)
+	 * <p>
+	 * 默认值: 0 (不限制)
+	 * 
+	 * @return
+	 */
+	public long getServerExecutorChannelMemoryLimit() {
+		return config.getRootNode().getByteSize(
+				CONF_SERVER_EXECUTOR_CHANNEL_MEMORY_LIMIT, 0);
+	}
+
+	/**
+	 * 获取业务线程池中全部等待处理的事件占用内存上限(单位:字节)
+	 * <p>
+	 * 默认值: 0 (不限制)
+	 * 
+	 * @return
+	 */
+	public long getServerExecutorTotalMemoryLimit() {
+		return config.getRootNode().getByteSize(
+				CONF_SERVER_EXECUTOR_TOTAL_MEMORY_LIMIT, 0);
+	}
+
+	/**
+	 * 获取striped调度策略下每个线程的等待队列容量
+	 * <p>
+	 * 默认值: 0 (不限制)
+	 * 
+	 * @return
+	 */
+	public int getServerExecutorQueueCapacity() {
+		return config.getRootNode().getInteger(
+				CONF_SERVER_EXECUTOR_QUEUE_CAPACITY, 0);
+	}
+
 	/**
 	 * 获取服务器空闲超时(单位:s)
 	 * <p>
@@ -230,6 +530,197 @@ public abstract class ServerConfig {
 		return config.getRootNode().getInteger(CONF_SERVER_IDLE_TIMEOUT, 30);
 	}
 
+	/**
+	 * 获取IDLE检测使用的独立时间轮数量
+	 * <p>
+	 * 默认值: 0 (使用JVM全局共享的定时器, 此时忽略刻度间隔及槽位数量配置)
+	 * 
+	 * @return
+	 */
+	public int getServerIdleTimerShards() {
+		return config.getRootNode().getInteger(CONF_SERVER_IDLE_TIMER_SHARDS,
+				0);
+	}
+
+	/**
+	 * 获取IDLE检测使用的独立时间轮刻度间隔(单位:ms)
+	 * <p>
+	 * 默认值: 200ms
+	 * 
+	 * @return
+	 */
+	public int getServerIdleTimerTickDuration() {
+		return config.getRootNode().getInteger(
+				CONF_SERVER_IDLE_TIMER_TICK_DURATION, 200);
+	}
+
+	/**
+	 * 获取IDLE检测使用的独立时间轮槽位数量
+	 * <p>
+	 * 默认值: 512
+	 * 
+	 * @return
+	 */
+	public int getServerIdleTimerWheelSize() {
+		return config.getRootNode().getInteger(
+				CONF_SERVER_IDLE_TIMER_WHEEL_SIZE, 512);
+	}
+
+	/**
+	 * 获取编解码处理器中帧数据缓存的累积策略
+	 * <p>
+	 * 默认值: {@link #CODEC_CUMULATION_COPY}
+	 * 
+	 * @return
+	 */
+	public String getServerCodecCumulation() {
+		return config.getRootNode().getNonEmptyString(
+				CONF_SERVER_CODEC_CUMULATION, CODEC_CUMULATION_COPY);
+	}
+
+	/**
+	 * 获取composite累积策略下未完成的帧允许跨越的数据块数量上限
+	 * <p>
+	 * 默认值: 16
+	 * 
+	 * @return
+	 */
+	public int getServerCodecMaxComponents() {
+		return config.getRootNode().getInteger(
+				CONF_SERVER_CODEC_MAX_COMPONENTS, 16);
+	}
+
+	/**
+	 * 是否将一次网络读取中解码得到的多个帧合并为一个批量消息处理
+	 * <p>
+	 * 默认值: false
+	 * 
+	 * @return
+	 */
+	public boolean isServerCodecBatchFrames() {
+		return config.getRootNode().getBoolean(CONF_SERVER_CODEC_BATCH_FRAMES,
+				false);
+	}
+
+	/**
+	 * 获取编解码处理器中帧数据缓存自动缩减时的容量下限(单位:字节)
+	 * <p>
+	 * 默认值: 0 (跟随连接的读缓存大小预测)
+	 * 
+	 * @return
+	 */
+	public int getServerCodecMinShrinkCapacity() {
+		return (int) config.getRootNode().getByteSize(
+				CONF_SERVER_CODEC_MIN_SHRINK_CAPACITY, 0);
+	}
+
+	/**
+	 * 是否在网络I/O线程中直接处理非阻塞消息
+	 * <p>
+	 * 默认值: false
+	 * 
+	 * @return
+	 */
+	public boolean isServerInlineNonBlocking() {
+		return config.getRootNode().getBoolean(
+				CONF_SERVER_INLINE_NON_BLOCKING, false);
+	}
+
+	/**
+	 * 获取业务处理线程池饱和时等待处理的事件数上限
+	 * <p>
+	 * 默认值: 0 (不限制)
+	 * 
+	 * @return
+	 */
+	public int getServerSaturationMaxPending() {
+		return config.getRootNode().getInteger(
+				CONF_SERVER_SATURATION_MAX_PENDING, 0);
+	}
+
+	/**
+	 * 获取业务处理线程池饱和时近期的平均排队耗时上限(单位:ms)
+	 * <p>
+	 * 默认值: 0 (不限制)
+	 * 
+	 * @return
+	 */
+	public int getServerSaturationMaxWait() {
+		return config.getRootNode().getInteger(
+				CONF_SERVER_SATURATION_MAX_WAIT, 0);
+	}
+
+	/**
+	 * 获取业务处理线程池饱和时拒绝消息的方式
+	 * <p>
+	 * 默认值: {@link #SATURATION_ACTION_REJECT}
+	 * 
+	 * @return
+	 */
+	public String getServerSaturationAction() {
+		return config.getRootNode().getNonEmptyString(
+				CONF_SERVER_SATURATION_ACTION, SATURATION_ACTION_REJECT);
+	}
+
+	/**
+	 * 是否将每次业务处理期间产生的响应合并为一次写出
+	 * <p>
+	 * 默认值: false
+	 * 
+	 * @return
+	 */
+	public boolean isServerWriteAggregation() {
+		return config.getRootNode().getBoolean(CONF_SERVER_WRITE_AGGREGATION,
+				false);
+	}
+
+	/**
+	 * 获取合并写出时暂存数据量的立即写出阈值(单位:字节)
+	 * <p>
+	 * 默认值: 64K
+	 * 
+	 * @return
+	 */
+	public int getServerWriteFlushThreshold() {
+		return (int) config.getRootNode().getByteSize(
+				CONF_SERVER_WRITE_FLUSH_THRESHOLD, 64 * 1024);
+	}
+
+	/**
+	 * 是否通过JMX输出服务器运行统计
+	 * <p>
+	 * 默认值: true
+	 * 
+	 * @return
+	 */
+	public boolean isServerMetricsJmxEnabled() {
+		return config.getRootNode().getBoolean(CONF_SERVER_METRICS_JMX, true);
+	}
+
+	/**
+	 * 是否按命令名称汇总消息处理耗时
+	 * <p>
+	 * 默认值: false(每个消息都需要解析命令名称, 按需开启)
+	 * 
+	 * @return
+	 */
+	public boolean isCommandStatisticsEnabled() {
+		return config.getRootNode().getBoolean(CONF_SERVER_COMMAND_STATISTICS,
+				false);
+	}
+
+	/**
+	 * 获取服务器关闭时等待现有连接完成处理的最长时间(单位:s)
+	 * <p>
+	 * 默认值: 0 (不等待, 立即关闭所有连接)
+	 * 
+	 * @return
+	 */
+	public int getServerShutdownDrainTimeout() {
+		return config.getRootNode().getInteger(
+				CONF_SERVER_SHUTDOWN_DRAIN_TIMEOUT, 0);
+	}
+
 	/**
 	 * 获取服务器写超时(单位:s)
 	 * <p>
@@ -241,6 +732,113 @@ public abstract class ServerConfig {
 		return config.getRootNode().getInteger(CONF_SERVER_WRITE_TIMEOUT, 120);
 	}
 
+	/**
+	 * 获取连接写缓存高水位
+	 * 
+	 * @param addrNode
+	 *            侦听地址节点(null=只检查服务器配置)
+	 * @return null=使用Netty默认值
+	 */
+	public String getWriteBufferHighWaterMark(ConfigNode addrNode) {
+		return getBindAddressOption(addrNode,
+				BIND_ADDRESS_ATTRIBUTE_WRITE_BUFFER_HIGH_WATER_MARK,
+				CONF_SERVER_WRITE_BUFFER_HIGH_WATER_MARK);
+	}
+
+	/**
+	 * 获取连接写缓存低水位
+	 * 
+	 * @param addrNode
+	 *            侦听地址节点(null=只检查服务器配置)
+	 * @return null=使用Netty默认值
+	 */
+	public String getWriteBufferLowWaterMark(ConfigNode addrNode) {
+		return getBindAddressOption(addrNode,
+				BIND_ADDRESS_ATTRIBUTE_WRITE_BUFFER_LOW_WATER_MARK,
+				CONF_SERVER_WRITE_BUFFER_LOW_WATER_MARK);
+	}
+
+	/**
+	 * 获取连接读缓存大小
+	 * 
+	 * @param addrNode
+	 *            侦听地址节点(null=只检查服务器配置)
+	 * @return null=使用Netty默认值(自适应: 64,1k,64k)
+	 * @see #CONF_SERVER_READ_BUFFER_SIZE
+	 */
+	public String getReadBufferSize(ConfigNode addrNode) {
+		return getBindAddressOption(addrNode,
+				BIND_ADDRESS_ATTRIBUTE_READ_BUFFER_SIZE,
+				CONF_SERVER_READ_BUFFER_SIZE);
+	}
+
+	/**
+	 * 连接写缓存超过高水位时, 是否暂停读取该连接的数据
+	 * <p>
+	 * 默认值: false
+	 * 
+	 * @return
+	 */
+	public boolean isServerWriteBackpressure() {
+		return config.getRootNode().getBoolean(CONF_SERVER_WRITE_BACKPRESSURE,
+				false);
+	}
+
+	/**
+	 * 获取服务器全局的连接数上限
+	 * <p>
+	 * 默认值: 0 (不限制)
+	 * 
+	 * @return
+	 */
+	public int getMaxConnections() {
+		return config.getRootNode().getInteger(CONF_SERVER_MAX_CONNECTIONS, 0);
+	}
+
+	/**
+	 * 获取单个来源IP的连接数上限
+	 * <p>
+	 * 默认值: 0 (不限制)
+	 * 
+	 * @return
+	 */
+	public int getMaxConnectionsPerIp() {
+		return config.getRootNode().getInteger(
+				CONF_SERVER_MAX_CONNECTIONS_PER_IP, 0);
+	}
+
+	/**
+	 * 获取每秒允许新建的连接数
+	 * <p>
+	 * 默认值: 0 (不限制)
+	 * 
+	 * @return
+	 */
+	public int getConnectRate() {
+		return config.getRootNode().getInteger(CONF_SERVER_CONNECT_RATE, 0);
+	}
+
+	/**
+	 * 获取新建连接的突发上限
+	 * <p>
+	 * 默认值: 0 (与每秒允许新建的连接数相同)
+	 * 
+	 * @return
+	 */
+	public int getConnectBurst() {
+		return config.getRootNode().getInteger(CONF_SERVER_CONNECT_BURST, 0);
+	}
+
+	/**
+	 * 获取不受连接数限制的来源IP白名单
+	 * 
+	 * @return null=没有白名单
+	 */
+	public String getConnectionLimitWhitelist() {
+		return config.getRootNode().getNonEmptyString(
+				CONF_SERVER_CONNECTION_LIMIT_WHITELIST, null);
+	}
+
 	/**
 	 * 返回服务网络IO类型
 	 * 
@@ -252,6 +850,29 @@ public abstract class ServerConfig {
 				CONF_SERVER_NETWORK_IO_TYPE, null);
 	}
 
+	/**
+	 * 获取非阻塞式网络IO的线程模式
+	 * <p>
+	 * 默认值: {@link #IO_THREAD_MODE_SHARED}
+	 * 
+	 * @return
+	 */
+	public String getServerIoThreadMode() {
+		return config.getRootNode().getNonEmptyString(CONF_SERVER_IO_THREAD_MODE,
+				IO_THREAD_MODE_SHARED);
+	}
+
+	/**
+	 * 获取服务独占IO线程池时的IO工作线程数
+	 * <p>
+	 * 默认值: 0 (即CPU核数*2)
+	 * 
+	 * @return
+	 */
+	public int getServerIoWorkerCount() {
+		return config.getRootNode().getInteger(CONF_SERVER_IO_WORKER_COUNT, 0);
+	}
+
 	/**
 	 * 获取服务器普通侦听地址列表
 	 * 
@@ -289,6 +910,76 @@ public abstract class ServerConfig {
 		return config.getRootNode().getChildList(CONF_SERVER_BIND_SSL_ADDRESS);
 	}
 
+	/**
+	 * 获取侦听地址的配置选项值
+	 * <p>
+	 * 优先使用侦听地址节点上的同名属性值, 其次使用服务器配置中指定路径的参数值
+	 * 
+	 * @param addrNode
+	 *            侦听地址节点(null=只检查服务器配置)
+	 * @param attrName
+	 *            侦听地址节点的属性名称
+	 * @param confPath
+	 *            服务器配置中的参数路径(null=只检查侦听地址节点属性)
+	 * @return null=未配置该选项
+	 */
+	public String getBindAddressOption(ConfigNode addrNode, String attrName,
+			String confPath) {
+		if (addrNode != null && attrName != null) {
+			String value = addrNode.getAttribute(attrName);
+			if (value != null && !value.trim().isEmpty()) {
+				return value.trim();
+			}
+		}
+
+		if (confPath == null) {
+			return null;
+		}
+
+		String value = config.getRootNode().getNonEmptyString(confPath, null);
+		return (value == null ? null : value.trim());
+	}
+
+	/**
+	 * 获取侦听地址的Socket选项值
+	 * 
+	 * @param addrNode
+	 *            侦听地址节点(null=只检查服务器默认配置)
+	 * @param option
+	 *            Socket选项名称, 如: {@link #SOCKET_OPTION_BACKLOG}
+	 * @return null=未配置该选项
+	 */
+	public String getSocketOption(ConfigNode addrNode, String option) {
+		return getBindAddressOption(addrNode, option, CONF_SERVER_SOCKET_OPTION
+				+ "." + option);
+	}
+
+	/**
+	 * 检查侦听地址节点上是否单独指定了Socket选项(包括读缓存大小及写缓存水位)
+	 * 
+	 * @param addrNode
+	 *            侦听地址节点
+	 * @return
+	 */
+	public boolean hasCustomSocketOption(ConfigNode addrNode) {
+		if (addrNode == null) {
+			return false;
+		}
+
+		return addrNode.getAttribute(SOCKET_OPTION_BACKLOG) != null
+				|| addrNode.getAttribute(SOCKET_OPTION_REUSE_ADDRESS) != null
+				|| addrNode.getAttribute(SOCKET_OPTION_TCP_NO_DELAY) != null
+				|| addrNode.getAttribute(SOCKET_OPTION_KEEP_ALIVE) != null
+				|| addrNode.getAttribute(SOCKET_OPTION_RECEIVE_BUFFER_SIZE) != null
+				|| addrNode.getAttribute(SOCKET_OPTION_SEND_BUFFER_SIZE) != null
+				|| addrNode.getAttribute(SOCKET_OPTION_SO_LINGER) != null
+				|| addrNode
+						.getAttribute(BIND_ADDRESS_ATTRIBUTE_WRITE_BUFFER_HIGH_WATER_MARK) != null
+				|| addrNode
+						.getAttribute(BIND_ADDRESS_ATTRIBUTE_WRITE_BUFFER_LOW_WATER_MARK) != null
+				|| addrNode.getAttribute(BIND_ADDRESS_ATTRIBUTE_READ_BUFFER_SIZE) != null;
+	}
+
 	/**
 	 * 获取指令消息最长字节数
 	 * 
@@ -22,9 +22,20 @@ public abstract class AbstractNettySessionHandler implements ISessionHandler {
 	protected final Channel channel;
 
 	/**
-	 * 会话全局唯一标记
+	 * 会话全局唯一标记(首次调用{@link #getUniqueSessionId()}时生成; 子类通过该方法获取,
+	 * 通过{@link #setUniqueSessionId(String)}指定)
 	 */
-	protected String uniqueSessionId;
+	private volatile String uniqueSessionId;
+
+	/**
+	 * 服务器IP, 用于生成会话全局唯一标记
+	 */
+	private final int localIp;
+
+	/**
+	 * 会话创建的时间(单位:ms), 用于生成会话全局唯一标记
+	 */
+	private final long createTime;
 
 	/**
 	 * 构造函数
@@ -38,8 +49,40 @@ public abstract class AbstractNettySessionHandler implements ISessionHandler {
 			Channel channel) {
 		this.channelUid = channelUid;
 		this.channel = channel;
-		this.uniqueSessionId = Utils.getGlobalSessionId(channelUid,
-				server.getLocalIp());
+		this.localIp = server.getLocalIp();
+		this.createTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * 从会话全局唯一标记中解析出连接唯一ID
+	 * 
+	 * @param uniqueSessionId
+	 *            会话全局唯一标记
+	 * @return 连接唯一ID(-1=格式错误)
+	 * @see Utils#getGlobalSessionId(long, int, long)
+	 */
+	public static long parseChannelUid(String uniqueSessionId) {
+		// 时间戳(定长=10) + IP地址(定长=4) + 连接通道id(不定长)
+		if (uniqueSessionId == null || uniqueSessionId.length() < 14
+				|| uniqueSessionId.length() > 14 + 16) {
+			return -1;
+		}
+		if (uniqueSessionId.length() == 14) {
+			return 0;
+		}
+
+		try {
+			return Long.parseLong(uniqueSessionId.substring(14), 16);
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return 连接唯一ID
+	 */
+	public long getChannelUid() {
+		return channelUid;
 	}
 
 	/**
@@ -50,10 +93,34 @@ public abstract class AbstractNettySessionHandler implements ISessionHandler {
 	}
 
 	/**
+	 * 获取会话全局唯一标记
+	 * <p>
+	 * 大多数会话不需要该标记, 首次调用时才生成(格式同{@link Utils#getGlobalSessionId(long, int)},
+	 * 时间戳为会话创建的时间)
+	 * 
 	 * @return the uniqueSessionId
 	 */
 	public String getUniqueSessionId() {
-		return uniqueSessionId;
+		String id = uniqueSessionId;
+		if (id == null) {
+			// 并发调用时可能重复生成, 但结果相同
+			id = Utils.getGlobalSessionId(channelUid, localIp, createTime);
+			uniqueSessionId = id;
+		}
+		return id;
+	}
+
+	/**
+	 * 指定会话全局唯一标记, 替代默认生成的标记
+	 * <p>
+	 * 注意: {@link SessionRegistry#findBySessionId(String)}按默认格式解析连接唯一ID,
+	 * 指定其他格式的标记后将无法通过该方法找到本会话
+	 * 
+	 * @param uniqueSessionId
+	 *            会话全局唯一标记(null=恢复为默认生成)
+	 */
+	protected void setUniqueSessionId(String uniqueSessionId) {
+		this.uniqueSessionId = uniqueSessionId;
 	}
 
 	/*
@@ -0,0 +1,188 @@
+package com.git.original.server.netty;
+
+import java.nio.charset.Charset;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.util.CharsetUtil;
+
+/**
+ * 基于字节缓存的字符序列视图
+ * <p>
+ * 字符集兼容ASCII且数据全部为ASCII字符时, 直接按字节读取字符, 不产生任何String对象; 否则在首次访问字符时才进行解码
+ * <p>
+ * 注意: 本对象直接引用底层字节缓存, 底层数据被修改后内容随之改变
+ * 
+ * @author linaoxiang
+ */
+public class ChannelBufferCharSequence implements CharSequence {
+
+	/** ASCII检测状态: 尚未检测 */
+	private static final int ASCII_UNKNOWN = 0;
+
+	/** ASCII检测状态: 全部为ASCII字符 */
+	private static final int ASCII_YES = 1;
+
+	/** ASCII检测状态: 包含非ASCII字符 */
+	private static final int ASCII_NO = 2;
+
+	/**
+	 * 字节数据(只使用readerIndex至writerIndex之间的数据)
+	 */
+	private final ChannelBuffer buffer;
+
+	/**
+	 * 字符集
+	 */
+	private final Charset charset;
+
+	/**
+	 * ASCII检测状态
+	 */
+	private int asciiState;
+
+	/**
+	 * 解码后的字符串(null=尚未解码)
+	 */
+	private String decoded;
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param buffer
+	 *            字节数据(只使用readerIndex至writerIndex之间的数据)
+	 * @param charset
+	 *            字符集
+	 */
+	public ChannelBufferCharSequence(ChannelBuffer buffer, Charset charset) {
+		this.buffer = buffer;
+		this.charset = charset;
+		this.asciiState = isAsciiCompatible(charset) ? ASCII_UNKNOWN
+				: ASCII_NO;
+	}
+
+	/**
+	 * 字符集对ASCII字符的编码是否与ASCII相同
+	 * 
+	 * @param charset
+	 * @return
+	 */
+	private static boolean isAsciiCompatible(Charset charset) {
+		return CharsetUtil.US_ASCII.equals(charset)
+				|| CharsetUtil.UTF_8.equals(charset)
+				|| CharsetUtil.ISO_8859_1.equals(charset);
+	}
+
+	/**
+	 * @return 字节数据
+	 */
+	public ChannelBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return 字符集
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * 是否可以直接按字节读取字符
+	 * 
+	 * @return
+	 */
+	private boolean isAscii() {
+		if (asciiState == ASCII_UNKNOWN) {
+			asciiState = ASCII_YES;
+			for (int i = buffer.readerIndex(), end = buffer.writerIndex(); i < end; i++) {
+				if (buffer.getByte(i) < 0) {
+					asciiState = ASCII_NO;
+					break;
+				}
+			}
+		}
+		return asciiState == ASCII_YES;
+	}
+
+	/**
+	 * 获取解码后的字符串
+	 * 
+	 * @return
+	 */
+	private String decode() {
+		if (decoded == null) {
+			decoded = buffer.toString(charset);
+		}
+		return decoded;
+	}
+
+	@Override
+	public int length() {
+		if (decoded == null && isAscii()) {
+			return buffer.readableBytes();
+		}
+		return decode().length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (decoded == null && isAscii()) {
+			if (index < 0 || index >= buffer.readableBytes()) {
+				throw new IndexOutOfBoundsException("index: " + index);
+			}
+			return (char) buffer.getByte(buffer.readerIndex() + index);
+		}
+		return decode().charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (decoded == null && isAscii()) {
+			if (start < 0 || end > buffer.readableBytes() || start > end) {
+				throw new IndexOutOfBoundsException("start: " + start
+						+ ", end: " + end);
+			}
+			ChannelBufferCharSequence sub = new ChannelBufferCharSequence(
+					buffer.slice(buffer.readerIndex() + start, end - start),
+					charset);
+			sub.asciiState = ASCII_YES;
+			return sub;
+		}
+		return decode().subSequence(start, end);
+	}
+
+	/**
+	 * 判断是否以指定的前缀开头(忽略ASCII字母大小写)
+	 * <p>
+	 * 用于协议指令的匹配, 避免生成字符串
+	 * 
+	 * @param prefix
+	 *            前缀
+	 * @return
+	 */
+	public boolean startsWithIgnoreCase(String prefix) {
+		if (prefix.length() > this.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < prefix.length(); i++) {
+			char a = this.charAt(i);
+			char b = prefix.charAt(i);
+			if (a != b
+					&& Character.toUpperCase(a) != Character.toUpperCase(b)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return decode();
+	}
+}
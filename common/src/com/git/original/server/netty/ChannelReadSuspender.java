@@ -0,0 +1,175 @@
+package com.git.original.server.netty;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelLocal;
+
+/**
+ * 按原因暂停及恢复通道的读取
+ * <p>
+ * 多个功能(如写缓存高水位, 异步命令)都可能暂停读取同一通道; 每个功能只设置或清除自己的原因,
+ * 只有在所有原因都被清除后才恢复读取, 避免一个功能恢复了另一个功能有意暂停的读取
+ *
+ * @author linaoxiang
+ */
+public final class ChannelReadSuspender {
+
+	/**
+	 * 暂停原因: 写缓存超过高水位(对端未能及时读取数据)
+	 */
+	public static final int REASON_UNWRITABLE = 0x01;
+
+	/**
+	 * 暂停原因: 存在未完成的异步命令
+	 */
+	public static final int REASON_ASYNC_COMMAND = 0x02;
+
+	/**
+	 * 通道 --> 当前的暂停原因
+	 */
+	private static final ChannelLocal<State> states = new ChannelLocal<State>(
+			true);
+
+	private ChannelReadSuspender() {
+	}
+
+	/**
+	 * 以指定原因暂停读取
+	 *
+	 * @param channel
+	 *            网络通道
+	 * @param reason
+	 *            暂停原因
+	 * @return false=已经以该原因暂停
+	 */
+	public static boolean suspend(Channel channel, int reason) {
+		return state(channel).suspend(channel, reason);
+	}
+
+	/**
+	 * 清除指定的暂停原因, 没有其他原因时恢复读取
+	 *
+	 * @param channel
+	 *            网络通道
+	 * @param reason
+	 *            暂停原因
+	 * @return false=未以该原因暂停
+	 */
+	public static boolean resume(Channel channel, int reason) {
+		State state = states.get(channel);
+		return (state != null && state.resume(channel, reason));
+	}
+
+	/**
+	 * 判断是否以指定原因暂停了读取
+	 *
+	 * @param channel
+	 *            网络通道
+	 * @param reason
+	 *            暂停原因
+	 * @return
+	 */
+	public static boolean isSuspended(Channel channel, int reason) {
+		State state = states.get(channel);
+		return (state != null && state.isSuspended(reason));
+	}
+
+	private static State state(Channel channel) {
+		State state = states.get(channel);
+		if (state == null) {
+			state = new State();
+			State old = states.setIfAbsent(channel, state);
+			if (old != null) {
+				state = old;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * 单个通道的暂停原因
+	 * <p>
+	 * 锁内只变更原因; 读取状态的切换会经过整个下行处理器链(可能同步触发写缓存水位事件并回到本类),
+	 * 因此在锁外进行: 同一时间只有一个线程切换, 切换期间原因再次变更时由该线程按最新的原因重新切换,
+	 * 保证最终的读取状态与原因一致
+	 */
+	private static final class State {
+		private int reasons = 0;
+
+		/**
+		 * 最近一次切换后的读取状态
+		 */
+		private boolean readable = true;
+
+		/**
+		 * 是否有线程正在切换读取状态
+		 */
+		private boolean applying = false;
+
+		boolean suspend(Channel channel, int reason) {
+			synchronized (this) {
+				if ((reasons & reason) != 0) {
+					return false;
+				}
+				reasons |= reason;
+			}
+			this.apply(channel);
+			return true;
+		}
+
+		boolean resume(Channel channel, int reason) {
+			synchronized (this) {
+				if ((reasons & reason) == 0) {
+					return false;
+				}
+				reasons &= ~reason;
+			}
+			this.apply(channel);
+			return true;
+		}
+
+		synchronized boolean isSuspended(int reason) {
+			return (reasons & reason) != 0;
+		}
+
+		/**
+		 * 在锁外将通道的读取状态切换为与当前原因一致
+		 */
+		private void apply(Channel channel) {
+			synchronized (this) {
+				if (applying) {
+					// 正在切换的线程完成切换后会按最新的原因重新检查
+					return;
+				}
+				applying = true;
+			}
+
+			boolean finished = false;
+			try {
+				for (;;) {
+					boolean target;
+					synchronized (this) {
+						target = (reasons == 0);
+						if (target == readable) {
+							applying = false;
+							finished = true;
+							return;
+						}
+						readable = target;
+					}
+
+					if (!target) {
+						channel.setReadable(false);
+					} else if (channel.isOpen()) {
+						channel.setReadable(true);
+					}
+				}
+			} finally {
+				if (!finished) {
+					synchronized (this) {
+						applying = false;
+					}
+				}
+			}
+		}
+	}
+}
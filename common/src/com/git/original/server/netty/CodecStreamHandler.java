@@ -1,18 +1,26 @@
 package com.git.original.server.netty;
 
 import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.CompositeChannelBuffer;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelConfig;
 import org.jboss.netty.channel.ChannelDownstreamHandler;
 import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelState;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DownstreamMessageEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioSocketChannelConfig;
 
 /**
  * 协议字节流编解码处理器抽象类
@@ -24,15 +32,106 @@ import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 public abstract class CodecStreamHandler extends SimpleChannelUpstreamHandler
 		implements ChannelDownstreamHandler {
 
+	/**
+	 * 帧数据缓存的累积策略枚举类
+	 * 
+	 * @author linaoxiang
+	 */
+	public enum CumulationStrategy {
+		/** 将接收到的数据复制到可自动扩展的缓存块中 */
+		COPY,
+		/**
+		 * 以组合缓存的方式引用接收到的数据块, 不复制数据;
+		 * 仅当未完成的帧跨越的数据块数量超过上限时才合并为一个缓存块
+		 */
+		COMPOSITE
+	}
+
 	/**
 	 * 帧数据缓存
 	 */
 	protected ChannelBuffer cumulation;
 
 	/**
-	 * 缓存块自动缩减时的容量下限
+	 * 帧数据缓存的累积策略
+	 */
+	private CumulationStrategy cumulationStrategy = CumulationStrategy.COPY;
+
+	/**
+	 * 组合缓存中允许的数据块数量上限
+	 */
+	private int maxCumulationComponents = 16;
+
+	/**
+	 * 帧数据缓存中待解码数据量的高水位(随每次接收逐渐衰减)
+	 */
+	private int highWaterMark = 0;
+
+	/**
+	 * 缓存块自动缩减时的默认容量下限(无法获得读缓存大小预测时使用)
+	 */
+	private static final int DEFAULT_MIN_SHRINK_CAPACITY = 32 * 1024;
+
+	/**
+	 * 缓存块自动缩减时的容量下限(0=跟随连接的读缓存大小预测)
+	 */
+	private int minShrinkCapacity = DEFAULT_MIN_SHRINK_CAPACITY;
+
+	/**
+	 * 是否将一次网络读取中解码得到的多个帧合并为一个{@link FrameBatch}消息
+	 */
+	private boolean batchFrames = false;
+
+	/**
+	 * 是否在每次业务处理期间合并写出
+	 */
+	private boolean aggregateWrites = false;
+
+	/**
+	 * 合并写出时暂存数据量达到该值后立即写出(单位:字节)
 	 */
-	private int minShrinkCapacity = 32 * 1024;
+	private int writeFlushThreshold = 64 * 1024;
+
+	/**
+	 * 正在合并写出的线程(null=未合并写出; 同一时间只有一个线程合并写出)
+	 */
+	private volatile Thread writeBatchThread = null;
+
+	/**
+	 * 合并写出使用的输出数据聚合器(null=从未合并写出; 创建后不再替换, 其内容只在持有{@link #writeBatchLock}时访问)
+	 */
+	private volatile WriteAggregator writeAggregator;
+
+	/**
+	 * 合并写出的锁: 保护输出数据聚合器及待写出事件队列, 并保证其他线程写出的消息排在已暂存的数据之后
+	 * <p>
+	 * 持有该锁期间只暂存数据或者调整队列, 不向下传递任何事件: 向下传递可能同步触发写缓存水位事件,
+	 * 进而在其他锁(如{@link ChannelReadSuspender})内回到本处理器
+	 */
+	private final Object writeBatchLock = new Object();
+
+	/**
+	 * 按顺序等待向下传递的事件(只在持有{@link #writeBatchLock}时访问)
+	 */
+	private final ArrayDeque<ChannelEvent> outboundEvents = new ArrayDeque<ChannelEvent>();
+
+	/**
+	 * 待写出事件所属的处理器上下文(只在持有{@link #writeBatchLock}时访问)
+	 */
+	private ChannelHandlerContext outboundContext;
+
+	/**
+	 * 是否有线程正在依次向下传递待写出的事件(只在持有{@link #writeBatchLock}时访问)
+	 */
+	private boolean outboundFlushing = false;
+
+	/**
+	 * 帧数据缓存中已读取的数据是否仍被解码产生的帧引用
+	 * <p>
+	 * 为true时不能再修改该缓存: 帧可能正在其他线程中被读取, 而追加数据可能移动或扩展缓存的内部存储;
+	 * 再次接收数据时将未解码的剩余数据复制到新的缓存块中累积, 原缓存块只由帧引用
+	 */
+	private boolean cumulationShared = false;
 
 	/**
 	 * 构造函数
@@ -40,12 +139,149 @@ public abstract class CodecStreamHandler extends SimpleChannelUpstreamHandler
 	public CodecStreamHandler() {
 	}
 
+	/**
+	 * @return 缓存块自动缩减时的容量下限(0=跟随连接的读缓存大小预测)
+	 */
 	public int getMinShrinkCapacity() {
 		return minShrinkCapacity;
 	}
 
+	/**
+	 * 设置缓存块自动缩减时的容量下限
+	 * <p>
+	 * 设置为0时以连接当前预测的读缓存大小作为下限: 空闲连接的缓存随读取量一起缩小, 大量上传时则保持较大的缓存
+	 * 
+	 * @param minCapacity
+	 *            0=跟随连接的读缓存大小预测
+	 */
 	public void setMinShrinkCapacity(int minCapacity) {
-		this.minShrinkCapacity = minCapacity;
+		this.minShrinkCapacity = Math.max(0, minCapacity);
+	}
+
+	/**
+	 * @return 帧数据缓存的累积策略
+	 */
+	public CumulationStrategy getCumulationStrategy() {
+		return cumulationStrategy;
+	}
+
+	/**
+	 * 设置帧数据缓存的累积策略
+	 * <p>
+	 * 注意: 必须在接收到任何数据之前设置
+	 * 
+	 * @param strategy
+	 *            null=默认使用{@link CumulationStrategy#COPY}
+	 */
+	public void setCumulationStrategy(CumulationStrategy strategy) {
+		this.cumulationStrategy = (strategy == null ? CumulationStrategy.COPY
+				: strategy);
+	}
+
+	public boolean isBatchFrames() {
+		return batchFrames;
+	}
+
+	/**
+	 * 设置是否将一次网络读取中解码得到的多个帧合并为一个{@link FrameBatch}消息
+	 * <p>
+	 * 只解码得到一个帧时仍然直接产生该帧
+	 * 
+	 * @param batchFrames
+	 */
+	public void setBatchFrames(boolean batchFrames) {
+		this.batchFrames = batchFrames;
+	}
+
+	public boolean isAggregateWrites() {
+		return aggregateWrites;
+	}
+
+	/**
+	 * 设置是否在每次业务处理期间合并写出
+	 * <p>
+	 * 开启后{@link NettyChannelHandler}在每次调用会话处理器期间产生的响应合并为一次写出;
+	 * 处理{@link FrameBatch}消息时总是合并写出
+	 * 
+	 * @param aggregateWrites
+	 */
+	public void setAggregateWrites(boolean aggregateWrites) {
+		this.aggregateWrites = aggregateWrites;
+	}
+
+	public int getWriteFlushThreshold() {
+		return writeFlushThreshold;
+	}
+
+	public void setWriteFlushThreshold(int threshold) {
+		this.writeFlushThreshold = threshold;
+	}
+
+	/**
+	 * 开始合并写出
+	 * <p>
+	 * 此后当前线程写出的消息被编码后暂存, 直到调用{@link #endWriteBatch()}或暂存数据量达到阈值时合并为一次写操作;
+	 * 其他线程写出的消息不参与合并, 但会先将已暂存的数据写出, 保证写出顺序
+	 * <p>
+	 * 其他线程正在合并写出时(如无序的业务线程池), 当前线程不合并写出
+	 */
+	public void beginWriteBatch() {
+		Thread current = Thread.currentThread();
+		synchronized (this.writeBatchLock) {
+			if (this.writeBatchThread != null
+					&& this.writeBatchThread != current) {
+				return;
+			}
+			if (this.writeAggregator == null) {
+				this.writeAggregator = new WriteAggregator(
+						this.writeFlushThreshold);
+			}
+			this.writeBatchThread = current;
+		}
+	}
+
+	/**
+	 * 结束合并写出, 将暂存的数据合并为一次写操作
+	 */
+	public void endWriteBatch() {
+		synchronized (this.writeBatchLock) {
+			if (this.writeBatchThread != Thread.currentThread()) {
+				return;
+			}
+
+			this.writeBatchThread = null;
+			this.stageWriteBatch();
+		}
+		this.flushOutbound();
+	}
+
+	/**
+	 * 当前线程是否正在合并写出
+	 * <p>
+	 * 合并写出期间{@link #encode(ChannelHandlerContext, Channel, Object)}的返回值会被立即复制,
+	 * 编码器可以返回只在下一次编码之前有效的缓存(如线程内复用的编码缓存)
+	 * 
+	 * @return
+	 */
+	protected final boolean isWriteBatching() {
+		return this.writeBatchThread == Thread.currentThread();
+	}
+
+	public int getMaxCumulationComponents() {
+		return maxCumulationComponents;
+	}
+
+	public void setMaxCumulationComponents(int maxComponents) {
+		this.maxCumulationComponents = Math.max(2, maxComponents);
+	}
+
+	/**
+	 * 标记帧数据缓存中已读取的数据仍被解码产生的帧引用
+	 * <p>
+	 * 解码器通过{@link ChannelBuffer#readSlice(int)}等方式产生与缓存共享数据的帧时, 必须调用本方法
+	 */
+	protected void markCumulationShared() {
+		this.cumulationShared = true;
 	}
 
 	@Override
@@ -63,41 +299,225 @@ public abstract class CodecStreamHandler extends SimpleChannelUpstreamHandler
 			return;
 		}
 
+		if (this.cumulationStrategy == CumulationStrategy.COMPOSITE) {
+			this.compositeReceived(ctx, e, input);
+			return;
+		}
+
 		ChannelBuffer cumulation = cumulation(ctx);
 		if (cumulation.readable()) {
-			cumulation.discardReadBytes();
+			if (this.cumulationShared) {
+				cumulation = this.unshareCumulation(ctx,
+						input.readableBytes());
+			} else {
+				cumulation.discardReadBytes();
+			}
 			cumulation.writeBytes(input);
+			if (cumulation.readableBytes() > this.highWaterMark) {
+				this.highWaterMark = cumulation.readableBytes();
+			}
 			callDecode(ctx, e.getChannel(), cumulation, e.getRemoteAddress());
 		} else {
-			callDecode(ctx, e.getChannel(), input, e.getRemoteAddress());
-			if (input.readable()) {
-				cumulation.writeBytes(input);
+			// 直接解码本次接收的数据时, 产生的帧不引用帧数据缓存
+			boolean shared = this.cumulationShared;
+			try {
+				callDecode(ctx, e.getChannel(), input, e.getRemoteAddress());
+			} finally {
+				this.cumulationShared = shared;
+				if (input.readable()) {
+					// 解码异常(如丢弃超长帧)时剩余数据同样需要保存; 解码过程中缓存可能已被缩减替换, 必须重新获取
+					ChannelBuffer c = (shared ? this.unshareCumulation(ctx,
+							input.readableBytes()) : cumulation(ctx));
+					c.writeBytes(input);
+				}
 			}
 		}
 	}
 
+	/**
+	 * 将帧数据缓存替换为新的缓存块, 并复制未解码的剩余数据
+	 * <p>
+	 * 原缓存块仍被解码产生的帧引用, 此后不再修改
+	 * 
+	 * @param ctx
+	 * @param extra
+	 *            即将追加的数据长度
+	 * @return 新的帧数据缓存
+	 */
+	private ChannelBuffer unshareCumulation(ChannelHandlerContext ctx,
+			int extra) {
+		ChannelBuffer old = cumulation(ctx);
+		ChannelBuffer c = ChannelBuffers.dynamicBuffer(old.readableBytes()
+				+ extra, ctx.getChannel().getConfig().getBufferFactory());
+		c.writeBytes(old);
+
+		this.cumulation = c;
+		this.cumulationShared = false;
+		return c;
+	}
+
+	/**
+	 * 以组合缓存的方式累积接收到的数据并解码
+	 * 
+	 * @param ctx
+	 * @param e
+	 * @param input
+	 *            本次接收到的数据
+	 * @throws Exception
+	 */
+	private void compositeReceived(ChannelHandlerContext ctx, MessageEvent e,
+			ChannelBuffer input) throws Exception {
+		ChannelBuffer c = this.cumulation;
+		if (c == null || !c.readable()) {
+			c = input;
+		} else if (c instanceof CompositeChannelBuffer
+				&& ((CompositeChannelBuffer) c).numComponents() >= this.maxCumulationComponents) {
+			// 未完成的帧跨越过多的数据块, 合并为一个缓存块以免索引开销过大
+			ChannelBuffer merged = ctx.getChannel().getConfig()
+					.getBufferFactory()
+					.getBuffer(c.readableBytes() + input.readableBytes());
+			merged.writeBytes(c);
+			merged.writeBytes(input);
+			c = merged;
+		} else {
+			// 仅引用尚未读取的数据
+			c = ChannelBuffers.wrappedBuffer(c, input);
+		}
+
+		this.cumulation = c;
+		callDecode(ctx, e.getChannel(), c, e.getRemoteAddress());
+		if (!c.readable() && this.cumulation == c) {
+			// 释放对已经解码完成的数据块的引用
+			this.cumulation = null;
+		}
+	}
+
 	@Override
 	public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent evt)
 			throws Exception {
+		boolean batching = this.isWriteBatching();
 		if (!(evt instanceof MessageEvent)) {
-			ctx.sendDownstream(evt);
+			if (!batching || isInterestOpsEvent(evt)) {
+				// 不涉及暂存的数据, 直接向下传递(读写状态的切换不需要排在数据之后)
+				ctx.sendDownstream(evt);
+				return;
+			}
+
+			// 合并写出线程的关闭等操作: 排在已暂存的数据之后
+			synchronized (this.writeBatchLock) {
+				this.stageWriteBatch();
+				this.outboundContext = ctx;
+				this.outboundEvents.add(evt);
+			}
+			this.flushOutbound();
 			return;
 		}
 
 		MessageEvent e = (MessageEvent) evt;
 		Object originalMessage = e.getMessage();
 
-		if (originalMessage instanceof ChannelBuffer) {
+		ChannelBuffer buffer;
+		boolean encoded = this.isEncodeRequired(originalMessage);
+		if (!encoded) {
 			// 对于ChannelBuffer不尝试编码
-			ctx.sendDownstream(evt);
+			buffer = (ChannelBuffer) originalMessage;
 		} else {
-			ChannelBuffer encodedMessage = encode(ctx, e.getChannel(),
-					originalMessage);
-			if (encodedMessage != null) {
-				Channels.write(ctx, e.getFuture(), encodedMessage,
-						e.getRemoteAddress());
+			buffer = encode(ctx, e.getChannel(), originalMessage);
+			if (buffer == null) {
+				return;
 			}
 		}
+
+		if (this.writeAggregator == null) {
+			// 从未合并写出, 不存在暂存的数据
+			if (encoded) {
+				Channels.write(ctx, e.getFuture(), buffer, e.getRemoteAddress());
+			} else {
+				ctx.sendDownstream(evt);
+			}
+			return;
+		}
+
+		synchronized (this.writeBatchLock) {
+			if (batching) {
+				this.writeAggregator.write(ctx, e.getFuture(), buffer, encoded);
+				if (!this.writeAggregator.isFull()) {
+					return;
+				}
+				this.stageWriteBatch();
+			} else {
+				// 其他线程写出: 排在已暂存的数据之后
+				this.stageWriteBatch();
+				this.outboundContext = ctx;
+				this.outboundEvents.add(encoded ? new DownstreamMessageEvent(
+						e.getChannel(), e.getFuture(), buffer,
+						e.getRemoteAddress()) : evt);
+			}
+		}
+		this.flushOutbound();
+	}
+
+	/**
+	 * 将暂存的数据合并为一个写事件, 加入待写出事件队列(必须持有{@link #writeBatchLock})
+	 */
+	private void stageWriteBatch() {
+		WriteAggregator aggregator = this.writeAggregator;
+		if (aggregator == null) {
+			return;
+		}
+
+		ChannelHandlerContext ctx = aggregator.getContext();
+		MessageEvent merged = aggregator.drain();
+		if (merged != null) {
+			this.outboundContext = ctx;
+			this.outboundEvents.add(merged);
+		}
+	}
+
+	/**
+	 * 在不持有{@link #writeBatchLock}的情况下按顺序向下传递待写出的事件
+	 * <p>
+	 * 同一时间只有一个线程传递; 其他线程加入队列的事件由正在传递的线程依次处理
+	 */
+	private void flushOutbound() {
+		synchronized (this.writeBatchLock) {
+			if (this.outboundFlushing) {
+				return;
+			}
+			this.outboundFlushing = true;
+		}
+
+		boolean finished = false;
+		try {
+			for (;;) {
+				ChannelHandlerContext ctx;
+				ChannelEvent evt;
+				synchronized (this.writeBatchLock) {
+					evt = this.outboundEvents.poll();
+					if (evt == null) {
+						this.outboundFlushing = false;
+						finished = true;
+						return;
+					}
+					ctx = this.outboundContext;
+				}
+				ctx.sendDownstream(evt);
+			}
+		} finally {
+			if (!finished) {
+				synchronized (this.writeBatchLock) {
+					this.outboundFlushing = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 是否为切换读写状态的事件(如{@link Channel#setReadable(boolean)})
+	 */
+	private static boolean isInterestOpsEvent(ChannelEvent evt) {
+		return evt instanceof ChannelStateEvent
+				&& ((ChannelStateEvent) evt).getState() == ChannelState.INTEREST_OPS;
 	}
 
 	@Override
@@ -145,28 +565,47 @@ public abstract class CodecStreamHandler extends SimpleChannelUpstreamHandler
 			throws Exception {
 
 		if (cumulation.readable()) {
-			do {
-				int oldReaderIndex = cumulation.readerIndex();
-				Object frame = decode(context, channel, cumulation);
-				if (frame == null) {
-					if (oldReaderIndex == cumulation.readerIndex()) {
-						// Seems like more data is required.
-						// Let us wait for the next notification.
-						break;
+			// 批量模式下解码得到的帧
+			List<Object> frames = null;
+			try {
+				do {
+					int oldReaderIndex = cumulation.readerIndex();
+					Object frame = decode(context, channel, cumulation);
+					if (frame == null) {
+						if (oldReaderIndex == cumulation.readerIndex()) {
+							// Seems like more data is required.
+							// Let us wait for the next notification.
+							break;
+						} else {
+							// Previous data has been discarded.
+							// Probably it is reading on.
+							continue;
+						}
+					} else if (oldReaderIndex == cumulation.readerIndex()) {
+						throw new IllegalStateException(
+								"decode() method must read at least one byte "
+										+ "if it returned a frame (caused by: "
+										+ getClass() + ")");
+					}
+
+					if (this.batchFrames) {
+						if (frames == null) {
+							frames = new ArrayList<Object>(4);
+						}
+						frames.add(frame);
 					} else {
-						// Previous data has been discarded.
-						// Probably it is reading on.
-						continue;
+						Channels.fireMessageReceived(context, frame,
+								remoteAddress);
 					}
-				} else if (oldReaderIndex == cumulation.readerIndex()) {
-					throw new IllegalStateException(
-							"decode() method must read at least one byte "
-									+ "if it returned a frame (caused by: "
-									+ getClass() + ")");
+				} while (cumulation.readable());
+			} finally {
+				// 解码异常时, 之前已经解码得到的帧仍需送达(与非批量模式一致)
+				if (frames != null) {
+					Channels.fireMessageReceived(context,
+							frames.size() == 1 ? frames.get(0)
+									: new FrameBatch(frames), remoteAddress);
 				}
-
-				Channels.fireMessageReceived(context, frame, remoteAddress);
-			} while (cumulation.readable());
+			}
 
 			// 尝试缩减缓存
 			shrinkCumulation(context);
@@ -217,24 +656,58 @@ public abstract class CodecStreamHandler extends SimpleChannelUpstreamHandler
 
 	/**
 	 * 自动缩小超长的帧数据缓存
+	 * <p>
+	 * 仅当缓存容量超过近期高水位(每次解码后衰减1/8)的两倍时才进行缩减; 数据已全部解码时直接释放超过下限的缓存
 	 * 
 	 * @param ctx
 	 * @return
 	 */
 	protected void shrinkCumulation(ChannelHandlerContext ctx) {
 		ChannelBuffer c = cumulation;
-		if (this.cumulation != null) {
-			if (cumulation.readableBytes() < this.minShrinkCapacity
-					&& cumulation.capacity() > this.minShrinkCapacity) {
-				c = ChannelBuffers.dynamicBuffer(this.minShrinkCapacity, ctx
-						.getChannel().getConfig().getBufferFactory());
+		if (this.cumulation != null
+				&& this.cumulationStrategy == CumulationStrategy.COPY) {
+			// 缩减的目标容量参考近期的高水位, 避免连续的大帧导致缓存反复缩减及扩展
+			int hw = this.highWaterMark;
+			this.highWaterMark = hw - (hw >>> 3);
+
+			int target = Math.max(this.getShrinkFloor(ctx), hw);
+			if (!cumulation.readable() && cumulation.capacity() > target) {
+				// 数据已全部解码, 直接释放缓存, 下次接收时再按需分配
+				this.cumulation = null;
+				this.cumulationShared = false;
+			} else if (cumulation.readableBytes() < target
+					&& cumulation.capacity() / 2 >= target) {
+				c = ChannelBuffers.dynamicBuffer(target, ctx.getChannel()
+						.getConfig().getBufferFactory());
 				c.writeBytes(cumulation);
 
 				this.cumulation = c;
+				// 新的缓存块不再被任何帧引用
+				this.cumulationShared = false;
 			}
 		}
 	}
 
+	/**
+	 * 获取缓存块自动缩减时的容量下限
+	 * 
+	 * @param ctx
+	 * @return
+	 */
+	private int getShrinkFloor(ChannelHandlerContext ctx) {
+		if (this.minShrinkCapacity > 0) {
+			return this.minShrinkCapacity;
+		}
+
+		ChannelConfig config = ctx.getChannel().getConfig();
+		if (config instanceof NioSocketChannelConfig) {
+			// 预测值随该连接最近的实际读取量自适应调整
+			return ((NioSocketChannelConfig) config)
+					.getReceiveBufferSizePredictor().nextReceiveBufferSize();
+		}
+		return DEFAULT_MIN_SHRINK_CAPACITY;
+	}
+
 	/**
 	 * 对指定字节格式消息内容进行解码, 转换为业务消息对象
 	 * 
@@ -250,6 +723,19 @@ public abstract class CodecStreamHandler extends SimpleChannelUpstreamHandler
 	protected abstract Object decode(ChannelHandlerContext ctx,
 			Channel channel, ChannelBuffer buffer) throws Exception;
 
+	/**
+	 * 判断写出的消息是否需要编码
+	 * <p>
+	 * 默认只对非{@link ChannelBuffer}的消息进行编码; 不需要编码的消息必须为{@link ChannelBuffer}
+	 * 
+	 * @param msg
+	 *            业务消息对象
+	 * @return
+	 */
+	protected boolean isEncodeRequired(Object msg) {
+		return !(msg instanceof ChannelBuffer);
+	}
+
 	/**
 	 * 对业务消息对象进行编码, 转换为字节格式消息内容
 	 * 
@@ -0,0 +1,383 @@
+package com.git.original.server.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * 按命令名称汇总的消息处理统计
+ * <p>
+ * 命令名称的数量有上限, 超出上限的命令统一计入{@link #OTHER_COMMAND}, 避免异常客户端产生大量不同名称;
+ * 默认不统计, 需要通过{@link #setEnabled(boolean)}开启
+ * <p>
+ * 名称保存在开放定址的哈希表中: 按消息的第一个单词统计时直接比对消息内容, 已知命令不需要分配任何对象
+ *
+ * @author linaoxiang
+ */
+public class CommandStatistics {
+
+	/**
+	 * 超出名称数量上限的命令
+	 */
+	public static final String OTHER_COMMAND = "<other>";
+
+	/**
+	 * 命令名称的最大长度, 超出部分被忽略
+	 */
+	private static final int MAX_COMMAND_NAME_LENGTH = 32;
+
+	/**
+	 * 命令名称的数量上限
+	 */
+	private final int maxCommands;
+
+	/**
+	 * 命令名称的哈希表(容量为数量上限的两倍以上, 不会被填满; 只在持有本对象锁时插入)
+	 */
+	private volatile AtomicReferenceArray<Entry> table;
+
+	/**
+	 * 哈希表中的命令数量(只在持有本对象锁时访问)
+	 */
+	private int size = 0;
+
+	/**
+	 * 超出名称数量上限的命令的统计
+	 */
+	private volatile Entry other = new Entry(OTHER_COMMAND);
+
+	/**
+	 * 是否开启统计
+	 */
+	private volatile boolean enabled = false;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param maxCommands
+	 *            命令名称的数量上限
+	 */
+	public CommandStatistics(int maxCommands) {
+		this.maxCommands = Math.max(1, maxCommands);
+		this.table = newTable(this.maxCommands);
+	}
+
+	private static AtomicReferenceArray<Entry> newTable(int maxCommands) {
+		int capacity = 4;
+		while (capacity < maxCommands * 2) {
+			capacity <<= 1;
+		}
+		return new AtomicReferenceArray<Entry>(capacity);
+	}
+
+	/**
+	 * @return 是否开启统计
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * 开启或关闭统计
+	 *
+	 * @param enabled
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * 记录一个命令的处理耗时
+	 *
+	 * @param command
+	 *            命令名称(null=忽略)
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	public void record(String command, long nanos) {
+		if (command == null) {
+			return;
+		}
+
+		int hash = command.hashCode();
+		Entry entry = this.find(hash, command, command.length(), true);
+		if (entry == null) {
+			entry = this.insert(hash, command, command.length(), true);
+		}
+		entry.record(nanos);
+	}
+
+	/**
+	 * 以文本消息的第一个单词(转为大写)作为命令名称, 记录处理耗时
+	 *
+	 * @param message
+	 *            文本消息({@link CharSequence}或{@link ChannelBuffer}, 其他类型忽略)
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	public void recordFirstWord(Object message, long nanos) {
+		int length = firstWordLength(message);
+		if (length == 0) {
+			return;
+		}
+
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + upperCharAt(message, i);
+		}
+		Entry entry = this.find(hash, message, length, false);
+		if (entry == null) {
+			entry = this.insert(hash, message, length, false);
+		}
+		entry.record(nanos);
+	}
+
+	/**
+	 * 在哈希表中查找命令
+	 *
+	 * @param hash
+	 *            命令名称的哈希值
+	 * @param name
+	 *            命令名称或文本消息
+	 * @param length
+	 *            命令名称的长度
+	 * @param exact
+	 *            true=name为完整的命令名称; false=name为文本消息, 比对第一个单词(转为大写)
+	 * @return null=不存在
+	 */
+	private Entry find(int hash, Object name, int length, boolean exact) {
+		AtomicReferenceArray<Entry> t = this.table;
+		int mask = t.length() - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			Entry entry = t.get(i);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.hash == hash
+					&& matches(entry.command, name, length, exact)) {
+				return entry;
+			}
+		}
+	}
+
+	/**
+	 * 插入新的命令(超出数量上限时返回{@link #OTHER_COMMAND}的统计)
+	 */
+	private synchronized Entry insert(int hash, Object name, int length,
+			boolean exact) {
+		Entry entry = this.find(hash, name, length, exact);
+		if (entry != null) {
+			return entry;
+		}
+		if (this.size >= this.maxCommands) {
+			return this.other;
+		}
+
+		String command;
+		if (exact) {
+			command = (String) name;
+		} else {
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++) {
+				chars[i] = upperCharAt(name, i);
+			}
+			command = new String(chars);
+		}
+
+		entry = new Entry(command);
+		AtomicReferenceArray<Entry> t = this.table;
+		int mask = t.length() - 1;
+		int i = hash & mask;
+		while (t.get(i) != null) {
+			i = (i + 1) & mask;
+		}
+		t.set(i, entry);
+		this.size++;
+		return entry;
+	}
+
+	/**
+	 * 比对命令名称
+	 */
+	private static boolean matches(String command, Object name, int length,
+			boolean exact) {
+		if (command.length() != length) {
+			return false;
+		}
+		if (exact) {
+			return command.equals(name);
+		}
+		for (int i = 0; i < length; i++) {
+			if (command.charAt(i) != upperCharAt(name, i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 获取文本消息第一个单词的长度
+	 *
+	 * @return 0=不是文本消息或者没有单词
+	 */
+	private static int firstWordLength(Object message) {
+		if (message instanceof CharSequence) {
+			CharSequence text = (CharSequence) message;
+			int len = Math.min(text.length(), MAX_COMMAND_NAME_LENGTH);
+			for (int i = 0; i < len; i++) {
+				if (text.charAt(i) <= ' ') {
+					return i;
+				}
+			}
+			return len;
+		} else if (message instanceof ChannelBuffer) {
+			ChannelBuffer buf = (ChannelBuffer) message;
+			int start = buf.readerIndex();
+			int len = Math.min(buf.readableBytes(), MAX_COMMAND_NAME_LENGTH);
+			for (int i = 0; i < len; i++) {
+				int ch = buf.getByte(start + i) & 0xFF;
+				if (ch <= ' ' || ch >= 0x7F) {
+					return i;
+				}
+			}
+			return len;
+		}
+		return 0;
+	}
+
+	/**
+	 * 获取命令名称或文本消息中指定位置的字符(转为大写)
+	 */
+	private static char upperCharAt(Object name, int index) {
+		char ch;
+		if (name instanceof CharSequence) {
+			ch = ((CharSequence) name).charAt(index);
+		} else {
+			ChannelBuffer buf = (ChannelBuffer) name;
+			ch = (char) (buf.getByte(buf.readerIndex() + index) & 0xFF);
+		}
+		return Character.toUpperCase(ch);
+	}
+
+	/**
+	 * 获取按累计耗时倒序排列的统计快照
+	 *
+	 * @return
+	 */
+	public List<Entry> list() {
+		List<Entry> list = new ArrayList<Entry>();
+		AtomicReferenceArray<Entry> t = this.table;
+		for (int i = 0; i < t.length(); i++) {
+			Entry entry = t.get(i);
+			if (entry != null) {
+				list.add(entry);
+			}
+		}
+		Entry o = this.other;
+		if (o.getCount() > 0) {
+			list.add(o);
+		}
+
+		long[] nanos = new long[list.size()];
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i] = list.get(i).getTotalNanos();
+		}
+		return SortSnapshot.sortDescending(list, nanos);
+	}
+
+	/**
+	 * 清空所有统计
+	 */
+	public synchronized void clear() {
+		this.table = newTable(this.maxCommands);
+		this.size = 0;
+		this.other = new Entry(OTHER_COMMAND);
+	}
+
+	/**
+	 * 单个命令的统计
+	 */
+	public static final class Entry {
+		/**
+		 * 命令名称
+		 */
+		private final String command;
+
+		/**
+		 * 命令名称的哈希值
+		 */
+		private final int hash;
+
+		/**
+		 * 处理次数
+		 */
+		private final AtomicLong count = new AtomicLong(0);
+
+		/**
+		 * 累计耗时(单位:ns)
+		 */
+		private final AtomicLong totalNanos = new AtomicLong(0);
+
+		/**
+		 * 最长耗时(单位:ns)
+		 */
+		private final AtomicLong maxNanos = new AtomicLong(0);
+
+		Entry(String command) {
+			this.command = command;
+			this.hash = command.hashCode();
+		}
+
+		void record(long nanos) {
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			for (;;) {
+				long max = maxNanos.get();
+				if (nanos <= max || maxNanos.compareAndSet(max, nanos)) {
+					break;
+				}
+			}
+		}
+
+		/**
+		 * @return 命令名称
+		 */
+		public String getCommand() {
+			return command;
+		}
+
+		/**
+		 * @return 处理次数
+		 */
+		public long getCount() {
+			return count.get();
+		}
+
+		/**
+		 * @return 累计耗时(单位:ns)
+		 */
+		public long getTotalNanos() {
+			return totalNanos.get();
+		}
+
+		/**
+		 * @return 最长耗时(单位:ns)
+		 */
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		@Override
+		public String toString() {
+			long n = count.get();
+			long total = totalNanos.get();
+			return command + ": count=" + n + ", total_time=" + total
+					/ 1000000 + "ms, avg_time="
+					+ (n == 0 ? 0 : total / n / 1000) + "us, max_time="
+					+ maxNanos.get() / 1000000 + "ms";
+		}
+	}
+}
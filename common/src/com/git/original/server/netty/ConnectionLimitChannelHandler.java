@@ -0,0 +1,410 @@
+package com.git.original.server.netty;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.git.original.common.utils.IpRange;
+import com.git.original.server.ServerConfig;
+
+/**
+ * 连接数限制处理器
+ * <p>
+ * 必须位于管道的最前端, 在连接建立时检查以下限制条件:
+ * <li>服务器全局的连接数上限
+ * <li>单个来源IP的连接数上限
+ * <li>新建连接的速率上限(令牌桶)
+ * <p>
+ * 被拒绝的连接将直接关闭, 其后续事件不会再向后传递, 因此不会创建任何会话处理器; 白名单中的来源IP不受任何限制
+ *
+ * @author linaoxiang
+ */
+public class ConnectionLimitChannelHandler implements ChannelUpstreamHandler {
+
+	/**
+	 * 标记被拒绝的连接(保存在处理器上下文的附件中)
+	 */
+	private static final Object REJECTED = new Object();
+
+	/**
+	 * 标记不受限制的连接(保存在处理器上下文的附件中)
+	 */
+	private static final Object UNLIMITED = new Object();
+
+	/**
+	 * 服务器全局连接数上限(0=不限制)
+	 */
+	private volatile int maxConnections;
+
+	/**
+	 * 单个来源IP的连接数上限(0=不限制)
+	 */
+	private volatile int maxConnectionsPerIp;
+
+	/**
+	 * 每秒允许新建的连接数(0=不限制)
+	 */
+	private volatile int connectRate;
+
+	/**
+	 * 新建连接的突发上限(即令牌桶容量)
+	 */
+	private volatile int connectBurst;
+
+	/**
+	 * 不受限制的来源IP范围(null=没有白名单)
+	 */
+	private volatile IpRange whitelist;
+
+	/**
+	 * 当前受限制的连接数
+	 */
+	private final AtomicInteger activeConnections = new AtomicInteger(0);
+
+	/**
+	 * 来源IP --> 连接数 映射表
+	 * <p>
+	 * 计数值为-1表示该计数器已经失效, 正在从映射表中移除
+	 */
+	private final ConcurrentHashMap<InetAddress, AtomicInteger> ip2Connections = new ConcurrentHashMap<InetAddress, AtomicInteger>();
+
+	/**
+	 * 被拒绝的连接总数
+	 */
+	private final AtomicLong rejectedCount = new AtomicLong(0);
+
+	/**
+	 * 令牌桶中当前剩余的令牌数
+	 */
+	private double tokens;
+
+	/**
+	 * 令牌桶最后一次补充令牌的时间(单位:ns)
+	 */
+	private long lastRefillTime = System.nanoTime();
+
+	/** 日志记录 */
+	private static final Logger LOG = LoggerFactory
+			.getLogger(ConnectionLimitChannelHandler.class);
+
+	/**
+	 * 构造函数
+	 *
+	 * @param conf
+	 *            服务器配置
+	 */
+	public ConnectionLimitChannelHandler(ServerConfig conf) {
+		this.updateConfig(conf);
+	}
+
+	/**
+	 * 构造函数(不设置任何限制, 须随后调用{@link #updateLimits(int, int, int, int, String)})
+	 */
+	ConnectionLimitChannelHandler() {
+	}
+
+	/**
+	 * 根据服务器配置更新限制条件
+	 *
+	 * @param conf
+	 *            服务器配置
+	 */
+	public void updateConfig(ServerConfig conf) {
+		this.updateLimits(conf.getMaxConnections(),
+				conf.getMaxConnectionsPerIp(), conf.getConnectRate(),
+				conf.getConnectBurst(), conf.getConnectionLimitWhitelist());
+	}
+
+	/**
+	 * 更新限制条件
+	 *
+	 * @param maxConnections
+	 *            服务器全局连接数上限(0=不限制)
+	 * @param maxConnectionsPerIp
+	 *            单个来源IP的连接数上限(0=不限制)
+	 * @param connectRate
+	 *            每秒允许新建的连接数(0=不限制)
+	 * @param connectBurst
+	 *            新建连接的突发上限(0=与速率相同)
+	 * @param ips
+	 *            不受限制的来源IP列表, 以逗号分隔(null=没有白名单)
+	 */
+	void updateLimits(int maxConnections, int maxConnectionsPerIp,
+			int connectRate, int connectBurst, String ips) {
+		this.maxConnections = Math.max(0, maxConnections);
+		this.maxConnectionsPerIp = Math.max(0, maxConnectionsPerIp);
+
+		int rate = Math.max(0, connectRate);
+		int burst = connectBurst;
+		if (burst <= 0) {
+			burst = rate;
+		}
+
+		synchronized (this) {
+			if (rate != this.connectRate || burst != this.connectBurst) {
+				this.connectRate = rate;
+				this.connectBurst = burst;
+				this.tokens = burst;
+				this.lastRefillTime = System.nanoTime();
+			}
+		}
+
+		IpRange range = null;
+		if (ips != null) {
+			range = new IpRange();
+			for (String ip : ips.split(",")) {
+				ip = ip.trim();
+				if (ip.isEmpty()) {
+					continue;
+				}
+
+				try {
+					// 先在临时范围中校验: 非法地址可能在添加过程中抛出运行时异常, 不能破坏白名单
+					new IpRange().addIp(ip);
+					range.addIp(ip);
+				} catch (UnknownHostException ex) {
+					LOG.warn("ignore illegal whitelist ip: {}", ip);
+				} catch (RuntimeException ex) {
+					LOG.warn("ignore illegal whitelist ip: {}", ip);
+				}
+			}
+		}
+		this.whitelist = range;
+
+		LOG.info("connection limit: max={}, max-per-ip={}, rate={}/s, burst={}, whitelist={}",
+				new Object[] { this.maxConnections, this.maxConnectionsPerIp,
+						this.connectRate, this.connectBurst, ips });
+	}
+
+	/**
+	 * 当前配置中是否存在任何限制条件
+	 *
+	 * @param conf
+	 *            服务器配置
+	 * @return
+	 */
+	public static boolean isLimitEnabled(ServerConfig conf) {
+		return conf.getMaxConnections() > 0
+				|| conf.getMaxConnectionsPerIp() > 0
+				|| conf.getConnectRate() > 0;
+	}
+
+	/**
+	 * @return 当前受限制的连接数
+	 */
+	public int getActiveConnections() {
+		return activeConnections.get();
+	}
+
+	/**
+	 * @return 被拒绝的连接总数
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return 当前存在连接计数的来源IP数
+	 */
+	int getTrackedIpCount() {
+		return ip2Connections.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.jboss.netty.channel.ChannelUpstreamHandler#handleUpstream(org.jboss
+	 * .netty.channel.ChannelHandlerContext,
+	 * org.jboss.netty.channel.ChannelEvent)
+	 */
+	@Override
+	public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e)
+			throws Exception {
+		Object state = ctx.getAttachment();
+
+		if (e instanceof ChannelStateEvent) {
+			ChannelStateEvent evt = (ChannelStateEvent) e;
+			if (evt.getState() == ChannelState.OPEN) {
+				if (Boolean.TRUE.equals(evt.getValue())) {
+					state = this.acquire(evt.getChannel());
+					ctx.setAttachment(state);
+				} else {
+					ctx.setAttachment(null);
+					this.release(state);
+				}
+			} else if (state == REJECTED
+					&& evt.getState() == ChannelState.CONNECTED
+					&& evt.getValue() != null) {
+				evt.getChannel().close();
+			}
+		}
+
+		if (state == REJECTED) {
+			// 被拒绝的连接, 不再向后传递任何事件
+			return;
+		}
+
+		ctx.sendUpstream(e);
+	}
+
+	/**
+	 * 为新建立的连接申请许可
+	 *
+	 * @param channel
+	 *            网络通道
+	 * @return {@link #REJECTED}=拒绝连接; {@link #UNLIMITED}=不受限制;
+	 *         InetAddress=已经计数的来源IP
+	 */
+	private Object acquire(Channel channel) {
+		if (channel.getParent() == null) {
+			// 侦听通道
+			return UNLIMITED;
+		}
+
+		SocketAddress remote = channel.getRemoteAddress();
+		if (!(remote instanceof InetSocketAddress)) {
+			return UNLIMITED;
+		}
+
+		InetAddress ip = ((InetSocketAddress) remote).getAddress();
+		IpRange range = this.whitelist;
+		if (ip == null || (range != null && range.isLocated(ip))) {
+			return UNLIMITED;
+		}
+
+		if (!this.tryAcquireToken()) {
+			return this.reject(channel, ip, "connect rate exceeded");
+		}
+
+		int max = this.maxConnections;
+		int total = activeConnections.incrementAndGet();
+		if (max > 0 && total > max) {
+			activeConnections.decrementAndGet();
+			return this.reject(channel, ip, "too many connections");
+		}
+
+		if (!this.increaseIpConnections(ip)) {
+			activeConnections.decrementAndGet();
+			return this.reject(channel, ip, "too many connections from ip");
+		}
+
+		return ip;
+	}
+
+	/**
+	 * 释放连接许可
+	 *
+	 * @param state
+	 *            {@link #acquire(Channel)}的返回值
+	 */
+	private void release(Object state) {
+		if (!(state instanceof InetAddress)) {
+			return;
+		}
+
+		activeConnections.decrementAndGet();
+
+		AtomicInteger counter = ip2Connections.get(state);
+		if (counter != null && counter.decrementAndGet() == 0
+				&& counter.compareAndSet(0, -1)) {
+			ip2Connections.remove(state, counter);
+		}
+	}
+
+	/**
+	 * 增加来源IP的连接计数
+	 *
+	 * @param ip
+	 *            来源IP
+	 * @return true=成功; false=超过单个来源IP的连接数上限
+	 */
+	private boolean increaseIpConnections(InetAddress ip) {
+		int max = this.maxConnectionsPerIp;
+
+		for (;;) {
+			AtomicInteger counter = ip2Connections.get(ip);
+			if (counter == null) {
+				counter = new AtomicInteger(0);
+				AtomicInteger old = ip2Connections.putIfAbsent(ip, counter);
+				if (old != null) {
+					counter = old;
+				}
+			}
+
+			int count = counter.get();
+			if (count < 0) {
+				// 计数器已经失效
+				ip2Connections.remove(ip, counter);
+				continue;
+			}
+
+			if (max > 0 && count >= max) {
+				return false;
+			}
+
+			if (counter.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 尝试从令牌桶中获取一个令牌
+	 *
+	 * @return true=成功; false=超过新建连接的速率上限
+	 */
+	private synchronized boolean tryAcquireToken() {
+		if (this.connectRate <= 0) {
+			return true;
+		}
+
+		long now = System.nanoTime();
+		long elapsed = now - this.lastRefillTime;
+		if (elapsed > 0) {
+			this.tokens = Math.min(this.connectBurst, this.tokens
+					+ ((double) elapsed * this.connectRate)
+					/ TimeUnit.SECONDS.toNanos(1));
+			this.lastRefillTime = now;
+		}
+
+		if (this.tokens < 1) {
+			return false;
+		}
+
+		this.tokens -= 1;
+		return true;
+	}
+
+	/**
+	 * 拒绝连接
+	 *
+	 * @param channel
+	 *            网络通道
+	 * @param ip
+	 *            来源IP
+	 * @param reason
+	 *            拒绝原因
+	 * @return {@link #REJECTED}
+	 */
+	private Object reject(Channel channel, InetAddress ip, String reason) {
+		rejectedCount.incrementAndGet();
+		LOG.debug("reject connection: {}. ip={}, channel_id={}", new Object[] {
+				reason, ip.getHostAddress(), channel.getId() });
+		return REJECTED;
+	}
+}
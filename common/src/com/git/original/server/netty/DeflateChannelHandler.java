@@ -0,0 +1,362 @@
+package com.git.original.server.netty;
+
+import java.lang.reflect.Method;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelDownstreamHandler;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+
+/**
+ * 数据流压缩过滤层(raw deflate, 参见RFC 4978 IMAP COMPRESS=DEFLATE)
+ * <p>
+ * 位于SSL过滤层与编解码过滤层之间: 接收的数据先解压再交给编解码器, 编码后的数据压缩后再写出;
+ * 两个方向各自维护一个贯穿整个会话的{@link Deflater}/{@link Inflater}状态,
+ * 每次写出都进行同步刷新(SYNC_FLUSH), 使对端可以立即解压出完整的响应
+ * <p>
+ * 注意: 必须一个{@link org.jboss.netty.channel.Channel}对应一个实例; 同步刷新需要Java 7及以上的运行环境,
+ * 参见{@link #isSupported()}
+ *
+ * @author linaoxiang
+ */
+public class DeflateChannelHandler implements ChannelUpstreamHandler,
+		ChannelDownstreamHandler {
+
+	/**
+	 * 压缩/解压使用的临时缓存大小(单位:字节)
+	 */
+	private static final int SCRATCH_SIZE = 8192;
+
+	/**
+	 * 默认的单次接收数据解压后的长度上限(单位:字节)
+	 */
+	public static final int DEFAULT_MAX_INFLATE_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Deflater.SYNC_FLUSH
+	 */
+	private static final int SYNC_FLUSH = 2;
+
+	/**
+	 * Deflater.deflate(byte[], int, int, int), Java 7以下为null
+	 */
+	private static final Method DEFLATE_WITH_FLUSH;
+
+	static {
+		Method method = null;
+		try {
+			method = Deflater.class.getMethod("deflate", byte[].class,
+					int.class, int.class, int.class);
+		} catch (Exception ex) {
+			// Java 6: 不支持同步刷新
+		}
+		DEFLATE_WITH_FLUSH = method;
+	}
+
+	/**
+	 * 输出方向的压缩器
+	 */
+	private final Deflater deflater;
+
+	/**
+	 * 输入方向的解压器
+	 */
+	private final Inflater inflater;
+
+	/**
+	 * 压缩输出使用的临时缓存(由deflater同步保护)
+	 */
+	private final byte[] deflateScratch = new byte[SCRATCH_SIZE];
+
+	/**
+	 * 解压输出使用的临时缓存(只在I/O线程中使用)
+	 */
+	private final byte[] inflateScratch = new byte[SCRATCH_SIZE];
+
+	/**
+	 * 非数组缓存作为解压输入时使用的临时缓存(只在I/O线程中使用)
+	 */
+	private byte[] inflateInput;
+
+	/**
+	 * 非数组缓存作为压缩输入时使用的临时缓存(由deflater同步保护)
+	 */
+	private byte[] deflateInput;
+
+	/**
+	 * true=下一次写出请求不进行压缩
+	 */
+	private volatile boolean skipNextWrite;
+
+	/**
+	 * 是否已经释放压缩/解压器
+	 */
+	private boolean released = false;
+
+	/**
+	 * 单次接收数据解压后的长度上限(单位:字节), 超过时关闭连接, 防止少量压缩数据解压出大量数据耗尽内存
+	 */
+	private volatile int maxInflateSize = DEFAULT_MAX_INFLATE_SIZE;
+
+	/**
+	 * 当前运行环境是否支持压缩过滤层
+	 *
+	 * @return
+	 */
+	public static boolean isSupported() {
+		return DEFLATE_WITH_FLUSH != null;
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param level
+	 *            压缩级别(0-9, 或{@link Deflater#DEFAULT_COMPRESSION})
+	 * @param disableCompressOnce
+	 *            true=下一次数据发送请求不进行压缩(如开启压缩命令自身的响应)
+	 */
+	public DeflateChannelHandler(int level, boolean disableCompressOnce) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException(
+					"deflate sync flush requires Java 7 or later");
+		}
+
+		this.deflater = new Deflater(level, true);
+		this.inflater = new Inflater(true);
+		this.skipNextWrite = disableCompressOnce;
+	}
+
+	/**
+	 * @return 单次接收数据解压后的长度上限(单位:字节)
+	 */
+	public int getMaxInflateSize() {
+		return maxInflateSize;
+	}
+
+	/**
+	 * 设置单次接收数据解压后的长度上限, 超过时关闭连接
+	 *
+	 * @param maxInflateSize
+	 *            长度上限(单位:字节), 必须大于0
+	 */
+	public void setMaxInflateSize(int maxInflateSize) {
+		if (maxInflateSize <= 0) {
+			throw new IllegalArgumentException("maxInflateSize: "
+					+ maxInflateSize);
+		}
+		this.maxInflateSize = maxInflateSize;
+	}
+
+	/**
+	 * @return 已经压缩的输入字节数
+	 */
+	public long getDeflateBytesRead() {
+		synchronized (deflater) {
+			return released ? 0 : deflater.getBytesRead();
+		}
+	}
+
+	/**
+	 * @return 压缩后输出的字节数
+	 */
+	public long getDeflateBytesWritten() {
+		synchronized (deflater) {
+			return released ? 0 : deflater.getBytesWritten();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.jboss.netty.channel.ChannelUpstreamHandler#handleUpstream(org.jboss
+	 * .netty.channel.ChannelHandlerContext,
+	 * org.jboss.netty.channel.ChannelEvent)
+	 */
+	@Override
+	public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e)
+			throws Exception {
+		if (e instanceof MessageEvent) {
+			MessageEvent evt = (MessageEvent) e;
+			if (evt.getMessage() instanceof ChannelBuffer) {
+				ChannelBuffer output = this.inflate((ChannelBuffer) evt
+						.getMessage());
+				if (output == null) {
+					// 解压后的数据超过长度上限
+					Channels.close(ctx.getChannel());
+				} else if (output.readable()) {
+					Channels.fireMessageReceived(ctx, output,
+							evt.getRemoteAddress());
+				}
+				return;
+			}
+		} else if (e instanceof ChannelStateEvent) {
+			ChannelStateEvent evt = (ChannelStateEvent) e;
+			if (evt.getState() == ChannelState.OPEN
+					&& Boolean.FALSE.equals(evt.getValue())) {
+				this.release();
+			}
+		}
+
+		ctx.sendUpstream(e);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.jboss.netty.channel.ChannelDownstreamHandler#handleDownstream(org
+	 * .jboss.netty.channel.ChannelHandlerContext,
+	 * org.jboss.netty.channel.ChannelEvent)
+	 */
+	@Override
+	public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent e)
+			throws Exception {
+		if (!(e instanceof MessageEvent)) {
+			ctx.sendDownstream(e);
+			return;
+		}
+
+		MessageEvent evt = (MessageEvent) e;
+		if (!(evt.getMessage() instanceof ChannelBuffer)) {
+			// 例如FileRegion: 无法在压缩流中直接发送
+			evt.getFuture().setFailure(
+					new UnsupportedOperationException(
+							"only ChannelBuffer can be compressed: "
+									+ evt.getMessage().getClass().getName()));
+			return;
+		}
+
+		// 压缩流的字节顺序必须与写出顺序一致, 压缩与向下传递在同一个锁内完成
+		synchronized (deflater) {
+			if (this.skipNextWrite) {
+				this.skipNextWrite = false;
+				ctx.sendDownstream(e);
+				return;
+			}
+			if (released) {
+				ctx.sendDownstream(e);
+				return;
+			}
+
+			ChannelBuffer output = this.deflate(ctx,
+					(ChannelBuffer) evt.getMessage());
+			Channels.write(ctx, evt.getFuture(), output,
+					evt.getRemoteAddress());
+		}
+	}
+
+	/**
+	 * 压缩一次写出的数据, 并进行同步刷新
+	 *
+	 * @param ctx
+	 * @param input
+	 * @return
+	 * @throws Exception
+	 */
+	private ChannelBuffer deflate(ChannelHandlerContext ctx, ChannelBuffer input)
+			throws Exception {
+		int length = input.readableBytes();
+		if (input.hasArray()) {
+			deflater.setInput(input.array(),
+					input.arrayOffset() + input.readerIndex(), length);
+		} else {
+			if (deflateInput == null || deflateInput.length < length) {
+				deflateInput = new byte[Math.max(SCRATCH_SIZE, length)];
+			}
+			input.getBytes(input.readerIndex(), deflateInput, 0, length);
+			deflater.setInput(deflateInput, 0, length);
+		}
+
+		ChannelBuffer output = null;
+		for (;;) {
+			int n = (Integer) DEFLATE_WITH_FLUSH.invoke(deflater,
+					deflateScratch, 0, deflateScratch.length, SYNC_FLUSH);
+			if (output == null) {
+				if (n < deflateScratch.length) {
+					// 绝大多数情况: 一次即可完成
+					return ChannelBuffers.copiedBuffer(deflateScratch, 0, n);
+				}
+				output = ChannelBuffers.dynamicBuffer(n * 2, ctx.getChannel()
+						.getConfig().getBufferFactory());
+			}
+			output.writeBytes(deflateScratch, 0, n);
+			if (n < deflateScratch.length) {
+				return output;
+			}
+		}
+	}
+
+	/**
+	 * 解压一次接收的数据
+	 *
+	 * @param input
+	 * @return null=解压后的数据超过长度上限
+	 * @throws DataFormatException
+	 */
+	private ChannelBuffer inflate(ChannelBuffer input)
+			throws DataFormatException {
+		int length = input.readableBytes();
+		if (released || inflater.finished() || length == 0) {
+			// 对端已经结束压缩流, 其后的数据无效
+			return ChannelBuffers.EMPTY_BUFFER;
+		}
+
+		if (input.hasArray()) {
+			inflater.setInput(input.array(),
+					input.arrayOffset() + input.readerIndex(), length);
+		} else {
+			if (inflateInput == null || inflateInput.length < length) {
+				inflateInput = new byte[Math.max(SCRATCH_SIZE, length)];
+			}
+			input.getBytes(input.readerIndex(), inflateInput, 0, length);
+			inflater.setInput(inflateInput, 0, length);
+		}
+		input.skipBytes(length);
+
+		int maxSize = this.maxInflateSize;
+		ChannelBuffer output = null;
+		for (;;) {
+			int n = inflater.inflate(inflateScratch);
+			if (n > 0) {
+				if (output == null) {
+					output = ChannelBuffers.dynamicBuffer(Math.max(n,
+							Math.min(length * 2, maxSize)));
+				}
+				if (output.writerIndex() + n > maxSize) {
+					return null;
+				}
+				output.writeBytes(inflateScratch, 0, n);
+			}
+			if (n < inflateScratch.length
+					&& (inflater.needsInput() || inflater.finished() || inflater
+							.needsDictionary())) {
+				break;
+			}
+		}
+
+		return (output == null ? ChannelBuffers.EMPTY_BUFFER : output);
+	}
+
+	/**
+	 * 释放压缩/解压器占用的本地内存
+	 */
+	private void release() {
+		synchronized (deflater) {
+			if (!released) {
+				released = true;
+				deflater.end();
+				inflater.end();
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.git.original.server.netty;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.handler.execution.ChannelEventRunnable;
+
+/**
+ * 业务处理线程池的事件计数器
+ * <p>
+ * 只统计通道事件({@link ChannelEventRunnable}), 忽略线程池内部使用的其他任务
+ * 
+ * @author linaoxiang
+ */
+class ExecutorEventCounter {
+
+	/**
+	 * 等待处理的事件数
+	 */
+	private final AtomicInteger pending = new AtomicInteger(0);
+
+	/**
+	 * 已经处理完成的事件总数
+	 */
+	private final AtomicLong completed = new AtomicLong(0);
+
+	/**
+	 * 被拒绝处理的事件总数
+	 */
+	private final AtomicLong rejected = new AtomicLong(0);
+
+	/**
+	 * 事件被提交到线程池
+	 * 
+	 * @param task
+	 */
+	void onSubmit(Runnable task) {
+		if (task instanceof ChannelEventRunnable) {
+			pending.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 事件被线程池拒绝
+	 * 
+	 * @param task
+	 */
+	void onRejected(Runnable task) {
+		if (task instanceof ChannelEventRunnable) {
+			pending.decrementAndGet();
+			rejected.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 事件开始处理
+	 * 
+	 * @param task
+	 */
+	void beforeExecute(Runnable task) {
+		if (task instanceof ChannelEventRunnable) {
+			pending.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 事件处理结束
+	 * 
+	 * @param task
+	 */
+	void afterExecute(Runnable task) {
+		if (task instanceof ChannelEventRunnable) {
+			completed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return 等待处理的事件数
+	 */
+	int getPending() {
+		return Math.max(0, pending.get());
+	}
+
+	/**
+	 * @return 已经处理完成的事件总数
+	 */
+	long getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * @return 被拒绝处理的事件总数
+	 */
+	long getRejected() {
+		return rejected.get();
+	}
+}
@@ -0,0 +1,186 @@
+package com.git.original.server.netty;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.git.original.server.IOverloadAwareSessionHandler;
+import com.git.original.server.ISessionHandler;
+
+/**
+ * 业务处理线程池的饱和策略
+ * <p>
+ * 线程池中等待处理的事件数或者近期的平均排队耗时超过阈值时, 新到达的消息在网络I/O线程中被直接拒绝,
+ * 避免排队延迟无限增长
+ *
+ * @author linaoxiang
+ */
+public class ExecutorSaturationPolicy {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(ExecutorSaturationPolicy.class);
+
+	/**
+	 * 拒绝消息的方式
+	 */
+	public enum Action {
+		/** 由会话以协议方式响应(不支持时关闭连接) */
+		REJECT,
+		/** 直接关闭连接 */
+		CLOSE,
+	}
+
+	/**
+	 * 线程池状态(null=不检查等待处理的事件数)
+	 */
+	private final IExecutorStatistics statistics;
+
+	/**
+	 * 等待处理的事件数上限(0=不限制)
+	 */
+	private final int maxPendingEvents;
+
+	/**
+	 * 平均排队耗时上限(单位:ns, 0=不限制)
+	 */
+	private final long maxWaitNanos;
+
+	/**
+	 * 拒绝消息的方式
+	 */
+	private final Action action;
+
+	/**
+	 * 近期的平均排队耗时(单位:ns, 指数加权移动平均, 允许并发更新时的少量误差)
+	 */
+	private volatile long averageWaitNanos = 0;
+
+	/**
+	 * 被拒绝的消息总数
+	 */
+	private final AtomicLong rejectedCount = new AtomicLong(0);
+
+	/**
+	 * 构造函数
+	 *
+	 * @param statistics
+	 *            线程池状态(null=不检查等待处理的事件数)
+	 * @param maxPendingEvents
+	 *            等待处理的事件数上限(0=不限制)
+	 * @param maxWaitMillis
+	 *            平均排队耗时上限(单位:ms, 0=不限制)
+	 * @param action
+	 *            拒绝消息的方式(null={@link Action#REJECT})
+	 */
+	public ExecutorSaturationPolicy(IExecutorStatistics statistics,
+			int maxPendingEvents, long maxWaitMillis, Action action) {
+		this.statistics = statistics;
+		this.maxPendingEvents = Math.max(0, maxPendingEvents);
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+				maxWaitMillis));
+		this.action = (action == null ? Action.REJECT : action);
+	}
+
+	/**
+	 * @return 拒绝消息的方式
+	 */
+	public Action getAction() {
+		return action;
+	}
+
+	/**
+	 * @return 被拒绝的消息总数
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return 近期的平均排队耗时(单位:ns)
+	 */
+	public long getAverageWaitNanos() {
+		return averageWaitNanos;
+	}
+
+	/**
+	 * 记录一个事件的排队耗时
+	 *
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	void recordWait(long nanos) {
+		long avg = this.averageWaitNanos;
+		this.averageWaitNanos = avg + ((nanos - avg) >> 3);
+	}
+
+	/**
+	 * 判断线程池当前是否已经饱和
+	 *
+	 * @return
+	 */
+	public boolean isSaturated() {
+		int pending = (statistics == null ? -1 : statistics
+				.getPendingEventCount());
+		if (maxPendingEvents > 0 && pending >= maxPendingEvents) {
+			return true;
+		}
+		// 队列已经清空时, 近期的排队耗时不再有效
+		return maxWaitNanos > 0 && averageWaitNanos >= maxWaitNanos
+				&& pending != 0;
+	}
+
+	/**
+	 * 拒绝一个消息(在网络I/O线程中执行)
+	 *
+	 * @param ctx
+	 *            线程池过滤层的处理器上下文
+	 * @param e
+	 *            被拒绝的消息事件
+	 * @param ordered
+	 *            该连接是否没有排队中的事件(false=以协议方式响应会打乱响应顺序, 只能关闭连接)
+	 */
+	public void reject(ChannelHandlerContext ctx, MessageEvent e,
+			boolean ordered) {
+		rejectedCount.incrementAndGet();
+		// 被拒绝的消息不会产生排队耗时样本, 逐步衰减以便重新放行部分消息
+		long avg = this.averageWaitNanos;
+		this.averageWaitNanos = avg - (avg >> 3);
+
+		// 流式数据块及合并帧不是完整的单个命令, 以协议方式响应会破坏协议状态, 只能关闭连接
+		Object message = e.getMessage();
+		if (action == Action.REJECT && ordered
+				&& !(message instanceof StreamChunk)
+				&& !(message instanceof FrameBatch)) {
+			ISessionHandler handler = NettyChannelHandler.getSessionHandler(ctx
+					.getPipeline());
+			if (handler instanceof IOverloadAwareSessionHandler) {
+				try {
+					if (((IOverloadAwareSessionHandler) handler)
+							.messageRejected(message)) {
+						return;
+					}
+				} catch (Throwable t) {
+					LOG.warn("reject message failed. channel_id="
+							+ e.getChannel().getId(), t);
+				}
+			}
+		}
+
+		LOG.debug("executor saturated, close channel. channel_id={}", e
+				.getChannel().getId());
+		e.getChannel().close();
+	}
+
+	@Override
+	public String toString() {
+		return "max_pending=" + maxPendingEvents + ", max_wait="
+				+ TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms, action="
+				+ action + ", avg_wait="
+				+ TimeUnit.NANOSECONDS.toMillis(averageWaitNanos)
+				+ "ms, rejected=" + rejectedCount.get();
+	}
+}
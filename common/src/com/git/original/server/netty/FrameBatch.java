@@ -0,0 +1,64 @@
+package com.git.original.server.netty;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 一次网络读取中解码得到的多个帧组成的批量消息
+ * <p>
+ * 由{@link CodecStreamHandler}在开启批量模式后产生, 使得客户端流水线方式(如SMTP PIPELINING)发送的多条命令
+ * 只需一次线程池调度; {@link NettyChannelHandler}按顺序将每个帧分别交给会话处理器, 期间产生的响应合并为一次写出
+ *
+ * @author linaoxiang
+ */
+public class FrameBatch implements Iterable<Object> {
+
+	/**
+	 * 按解码顺序排列的帧列表
+	 */
+	private final List<Object> frames;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param frames
+	 *            按解码顺序排列的帧列表
+	 */
+	public FrameBatch(List<Object> frames) {
+		if (frames == null) {
+			throw new IllegalArgumentException("frames");
+		}
+
+		this.frames = frames;
+	}
+
+	/**
+	 * @return 按解码顺序排列的帧列表(只读)
+	 */
+	public List<Object> getFrames() {
+		return Collections.unmodifiableList(frames);
+	}
+
+	/**
+	 * @return 帧数量
+	 */
+	public int size() {
+		return frames.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<Object> iterator() {
+		return this.getFrames().iterator();
+	}
+
+	@Override
+	public String toString() {
+		return "FrameBatch[size=" + frames.size() + "]";
+	}
+}
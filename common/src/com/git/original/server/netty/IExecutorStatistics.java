@@ -0,0 +1,43 @@
+package com.git.original.server.netty;
+
+/**
+ * 业务处理线程池的运行统计接口
+ * 
+ * @author linaoxiang
+ */
+public interface IExecutorStatistics {
+	/**
+	 * 获取当前等待处理的事件数
+	 * 
+	 * @return
+	 */
+	int getPendingEventCount();
+
+	/**
+	 * 获取已经处理完成的事件总数
+	 * 
+	 * @return
+	 */
+	long getCompletedEventCount();
+
+	/**
+	 * 获取被拒绝处理的事件总数
+	 * 
+	 * @return
+	 */
+	long getRejectedEventCount();
+
+	/**
+	 * 获取当前正在处理事件的线程数
+	 * 
+	 * @return
+	 */
+	int getActiveCount();
+
+	/**
+	 * 获取当前线程池中的线程数
+	 * 
+	 * @return
+	 */
+	int getPoolSize();
+}
@@ -0,0 +1,135 @@
+package com.git.original.server.netty;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
+
+import com.git.original.common.utils.BackgroundHelper;
+
+/**
+ * 用于触发连接IDLE事件的定时器组
+ * <p>
+ * 连接数很多时, 单个时间轮的每个槽位中会积累大量的定时任务, 定时器线程来不及处理将导致触发延迟;
+ * 此时可以使用多个独立的时间轮分担定时任务, 新建连接按顺序轮流分配到各个时间轮
+ * 
+ * @author linaoxiang
+ */
+public class IdleTimerGroup {
+
+	/**
+	 * 定时器列表
+	 */
+	private final MonitoredTimer[] timers;
+
+	/**
+	 * 定时器是否由本组创建(需要在{@link #stop()}时停止)
+	 */
+	private final boolean owned;
+
+	/**
+	 * 下一个分配的定时器序号
+	 */
+	private final AtomicInteger nextIndex = new AtomicInteger(0);
+
+	/**
+	 * 待触发的任务数
+	 */
+	private final AtomicLong pendingCount = new AtomicLong(0);
+
+	/**
+	 * 任务触发延迟的分布
+	 */
+	private final LatencyHistogram lagHistogram = new LatencyHistogram();
+
+	/**
+	 * 使用已有的定时器创建定时器组(停止定时器组时不会停止该定时器)
+	 * 
+	 * @param timer
+	 *            已有的定时器
+	 */
+	public IdleTimerGroup(Timer timer) {
+		this.timers = new MonitoredTimer[] { new MonitoredTimer(timer, false,
+				pendingCount, lagHistogram) };
+		this.owned = false;
+	}
+
+	/**
+	 * 创建由多个独立时间轮组成的定时器组
+	 * 
+	 * @param name
+	 *            定时器线程名称前缀
+	 * @param shards
+	 *            时间轮数量
+	 * @param tickDuration
+	 *            时间轮的刻度间隔(单位:ms)
+	 * @param wheelSize
+	 *            时间轮的槽位数量
+	 */
+	public IdleTimerGroup(String name, int shards, long tickDuration,
+			int wheelSize) {
+		if (shards <= 0) {
+			throw new IllegalArgumentException("shards: " + shards);
+		}
+
+		this.timers = new MonitoredTimer[shards];
+		for (int i = 0; i < shards; i++) {
+			HashedWheelTimer timer = new HashedWheelTimer(
+					new BackgroundHelper.DefaultDaemonThreadFactory(name
+							+ "-idle-timer-" + i), tickDuration,
+					TimeUnit.MILLISECONDS, wheelSize);
+			this.timers[i] = new MonitoredTimer(timer, true, pendingCount,
+					lagHistogram);
+		}
+		this.owned = true;
+	}
+
+	/**
+	 * 为新建的连接分配定时器
+	 * 
+	 * @return
+	 */
+	public Timer next() {
+		if (timers.length == 1) {
+			return timers[0];
+		}
+		return timers[(nextIndex.getAndIncrement() & Integer.MAX_VALUE)
+				% timers.length];
+	}
+
+	/**
+	 * @return 时间轮数量
+	 */
+	public int getShardCount() {
+		return timers.length;
+	}
+
+	/**
+	 * @return 待触发的任务数
+	 */
+	public long getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * @return 任务触发延迟的分布
+	 */
+	public LatencyHistogram getLagHistogram() {
+		return lagHistogram;
+	}
+
+	/**
+	 * 停止本组创建的全部定时器
+	 */
+	public void stop() {
+		if (!owned) {
+			return;
+		}
+
+		for (MonitoredTimer timer : timers) {
+			timer.stop();
+		}
+	}
+}
@@ -23,6 +23,11 @@ public abstract class IdleableNettyChannelHandler extends SimpleChannelHandler {
 	 */
 	private final ChannelGroup channelGroup;
 
+	/**
+	 * 写缓存超过高水位(即对端未能及时读取数据)时, 是否暂停读取该通道的数据
+	 */
+	private volatile boolean suspendReadOnUnwritable = false;
+
 	/** 普通日志记录 */
 	private static final Logger LOG = LoggerFactory
 			.getLogger(IdleableNettyChannelHandler.class);
@@ -37,6 +42,57 @@ public abstract class IdleableNettyChannelHandler extends SimpleChannelHandler {
 		this.channelGroup = channelGroup;
 	}
 
+	/**
+	 * @return the suspendReadOnUnwritable
+	 */
+	public boolean isSuspendReadOnUnwritable() {
+		return suspendReadOnUnwritable;
+	}
+
+	/**
+	 * 设置写缓存超过高水位时, 是否暂停读取该通道的数据
+	 * <p>
+	 * 注意: 只能限制继续读取新的请求, 单个请求产生大量响应数据时, 业务处理器需要自行检查
+	 * {@link Channel#isWritable()}
+	 * 
+	 * @param suspendReadOnUnwritable
+	 *            true=暂停读取, 直到写缓存低于低水位; false=不做限制(默认)
+	 */
+	public void setSuspendReadOnUnwritable(boolean suspendReadOnUnwritable) {
+		this.suspendReadOnUnwritable = suspendReadOnUnwritable;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.jboss.netty.channel.SimpleChannelHandler#channelInterestChanged(org
+	 * .jboss.netty.channel.ChannelHandlerContext,
+	 * org.jboss.netty.channel.ChannelStateEvent)
+	 */
+	@Override
+	public void channelInterestChanged(ChannelHandlerContext ctx,
+			ChannelStateEvent e) throws Exception {
+		if (this.suspendReadOnUnwritable) {
+			Channel channel = e.getChannel();
+			if (!channel.isWritable()) {
+				if (ChannelReadSuspender.suspend(channel,
+						ChannelReadSuspender.REASON_UNWRITABLE)) {
+					// 对端未能及时读取数据, 暂停读取新的请求
+					LOG.trace("suspend reading, channel is unwritable. channel_id={}",
+							channel.getId());
+				}
+			} else if (ChannelReadSuspender.resume(channel,
+					ChannelReadSuspender.REASON_UNWRITABLE)) {
+				// 写缓存已经低于低水位; 不存在其他暂停原因时恢复读取
+				LOG.trace("resume reading, channel is writable. channel_id={}",
+						channel.getId());
+			}
+		}
+
+		super.channelInterestChanged(ctx, e);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,133 @@
+package com.git.original.server.netty;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时分布直方图
+ * <p>
+ * 按微秒数的以2为底的对数分桶(第i个桶统计耗时小于2^i微秒的样本), 记录样本时只有原子计数操作, 不产生任何对象分配;
+ * 百分位数只能精确到所在桶的上界
+ * 
+ * @author linaoxiang
+ */
+public class LatencyHistogram {
+
+	/**
+	 * 分桶数量(最后一个桶统计全部超长的样本)
+	 */
+	private static final int BUCKET_COUNT = 32;
+
+	/**
+	 * 各桶的样本数
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * 样本总数
+	 */
+	private final AtomicLong count = new AtomicLong(0);
+
+	/**
+	 * 样本耗时总和(单位:us)
+	 */
+	private final AtomicLong totalMicros = new AtomicLong(0);
+
+	/**
+	 * 样本耗时最大值(单位:us)
+	 */
+	private final AtomicLong maxMicros = new AtomicLong(0);
+
+	/**
+	 * 记录一个样本
+	 * 
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	public void record(long nanos) {
+		long micros = nanos / 1000;
+		if (micros < 0) {
+			micros = 0;
+		}
+
+		int index = 64 - Long.numberOfLeadingZeros(micros);
+		if (index >= BUCKET_COUNT) {
+			index = BUCKET_COUNT - 1;
+		}
+
+		buckets.incrementAndGet(index);
+		count.incrementAndGet();
+		totalMicros.addAndGet(micros);
+
+		long max = maxMicros.get();
+		while (micros > max) {
+			if (maxMicros.compareAndSet(max, micros)) {
+				break;
+			}
+			max = maxMicros.get();
+		}
+	}
+
+	/**
+	 * @return 样本总数
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return 样本平均耗时(单位:us)
+	 */
+	public long getMeanMicros() {
+		long n = count.get();
+		return n == 0 ? 0 : totalMicros.get() / n;
+	}
+
+	/**
+	 * @return 样本耗时最大值(单位:us)
+	 */
+	public long getMaxMicros() {
+		return maxMicros.get();
+	}
+
+	/**
+	 * 获取耗时百分位数的估计值
+	 * 
+	 * @param percent
+	 *            百分比(0~100)
+	 * @return 所在桶的耗时上界(单位:us; 不超过最大值)
+	 */
+	public long getPercentileMicros(double percent) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+
+		long threshold = (long) Math.ceil(n * percent / 100);
+		long sum = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			sum += buckets.get(i);
+			if (sum >= threshold) {
+				return Math.min(i == 0 ? 0 : (1L << i) - 1, maxMicros.get());
+			}
+		}
+
+		return maxMicros.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("count=").append(this.getCount()).append(", mean=")
+				.append(this.getMeanMicros()).append("us, p50=")
+				.append(this.getPercentileMicros(50)).append("us, p99=")
+				.append(this.getPercentileMicros(99)).append("us, max=")
+				.append(this.getMaxMicros()).append("us");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,345 @@
+package com.git.original.server.netty;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.frame.CorruptedFrameException;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+
+import com.git.original.common.utils.CompressUtils;
+
+/**
+ * 长度前缀的二进制帧编解码器
+ * <p>
+ * 帧格式: [标记(1字节, 可选)] [数据长度(1/2/3/4/8字节)] [数据]
+ * <li>数据长度不包含帧头本身, 字节序可配置
+ * <li>标记字节中{@link #FLAG_COMPRESSED}表示数据经过Deflate压缩
+ * <p>
+ * 解码产生的消息为{@link ChannelBuffer}: 未压缩的数据直接引用接收缓存(只读), 不复制数据; 写出的消息可以是
+ * {@link ChannelBuffer}, {@link ByteBuffer}或byte[], 编码时帧头与数据以组合缓存的方式写出
+ * <p>
+ * 注意: 必须一个{@link Channel}对应一个实例
+ *
+ * @author linaoxiang
+ */
+public class LengthFieldFrameCodecHandler extends CodecStreamHandler {
+
+	/**
+	 * 帧标记: 数据经过Deflate压缩
+	 */
+	public static final int FLAG_COMPRESSED = 0x01;
+
+	/**
+	 * 数据长度上限(字节)
+	 */
+	private final int maxFrameLength;
+
+	/**
+	 * 长度字段的字节数
+	 */
+	private final int lengthFieldLength;
+
+	/**
+	 * 长度字段的字节序
+	 */
+	private final ByteOrder byteOrder;
+
+	/**
+	 * 帧头中是否包含标记字节
+	 */
+	private final boolean flagsField;
+
+	/**
+	 * 帧头长度
+	 */
+	private final int headerLength;
+
+	/**
+	 * 写出的数据达到该长度时进行压缩(0=不压缩; 只在包含标记字节时有效)
+	 */
+	private int compressThreshold = 0;
+
+	/**
+	 * 正在丢弃超长帧时剩余待丢弃的字节数
+	 */
+	private long bytesToDiscard = 0;
+
+	/**
+	 * 构造函数
+	 * <p>
+	 * 使用4字节大端序的长度字段, 不包含标记字节
+	 *
+	 * @param maxFrameLength
+	 *            数据长度上限(字节)
+	 */
+	public LengthFieldFrameCodecHandler(int maxFrameLength) {
+		this(maxFrameLength, 4, ByteOrder.BIG_ENDIAN, false);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param maxFrameLength
+	 *            数据长度上限(字节)
+	 * @param lengthFieldLength
+	 *            长度字段的字节数(1, 2, 3, 4或8)
+	 * @param byteOrder
+	 *            长度字段的字节序
+	 * @param flagsField
+	 *            帧头中是否包含标记字节(需要支持压缩时必须为true)
+	 */
+	public LengthFieldFrameCodecHandler(int maxFrameLength,
+			int lengthFieldLength, ByteOrder byteOrder, boolean flagsField) {
+		if (maxFrameLength <= 0) {
+			throw new IllegalArgumentException("maxFrameLength: "
+					+ maxFrameLength);
+		}
+		if (lengthFieldLength != 1 && lengthFieldLength != 2
+				&& lengthFieldLength != 3 && lengthFieldLength != 4
+				&& lengthFieldLength != 8) {
+			throw new IllegalArgumentException(
+					"lengthFieldLength must be either 1, 2, 3, 4, or 8: "
+							+ lengthFieldLength);
+		}
+		if (byteOrder == null) {
+			throw new NullPointerException("byteOrder is null");
+		}
+
+		this.maxFrameLength = maxFrameLength;
+		this.lengthFieldLength = lengthFieldLength;
+		this.byteOrder = byteOrder;
+		this.flagsField = flagsField;
+		this.headerLength = (flagsField ? 1 : 0) + lengthFieldLength;
+	}
+
+	/**
+	 * @return 数据长度上限(字节)
+	 */
+	public int getMaxFrameLength() {
+		return maxFrameLength;
+	}
+
+	/**
+	 * @return 长度字段的字节数
+	 */
+	public int getLengthFieldLength() {
+		return lengthFieldLength;
+	}
+
+	/**
+	 * @return 长度字段的字节序
+	 */
+	public ByteOrder getByteOrder() {
+		return byteOrder;
+	}
+
+	/**
+	 * @return 帧头中是否包含标记字节
+	 */
+	public boolean isFlagsField() {
+		return flagsField;
+	}
+
+	/**
+	 * @return 写出的数据达到该长度时进行压缩(0=不压缩)
+	 */
+	public int getCompressThreshold() {
+		return compressThreshold;
+	}
+
+	/**
+	 * 设置写出的数据达到指定长度时进行压缩
+	 *
+	 * @param threshold
+	 *            0=不压缩
+	 * @throws IllegalStateException
+	 *             帧头中不包含标记字节
+	 */
+	public void setCompressThreshold(int threshold) {
+		if (threshold > 0 && !this.flagsField) {
+			throw new IllegalStateException(
+					"compression requires the flags field");
+		}
+		this.compressThreshold = Math.max(0, threshold);
+	}
+
+	@Override
+	protected Object decode(ChannelHandlerContext ctx, Channel channel,
+			ChannelBuffer buffer) throws Exception {
+		if (this.bytesToDiscard > 0) {
+			// 继续丢弃超长帧的剩余数据
+			int skip = (int) Math.min(this.bytesToDiscard,
+					buffer.readableBytes());
+			buffer.skipBytes(skip);
+			this.bytesToDiscard -= skip;
+			return null;
+		}
+
+		if (buffer.readableBytes() < this.headerLength) {
+			return null;
+		}
+
+		int index = buffer.readerIndex();
+		int flags = (this.flagsField ? buffer.getUnsignedByte(index) : 0);
+		long frameLength = this.getFrameLength(buffer, index
+				+ (this.flagsField ? 1 : 0));
+
+		if (frameLength < 0) {
+			buffer.skipBytes(this.headerLength);
+			throw new CorruptedFrameException("negative frame length: "
+					+ frameLength);
+		}
+
+		if (frameLength > this.maxFrameLength) {
+			// 丢弃超长帧
+			long total = this.headerLength + frameLength;
+			int skip = (int) Math.min(total, buffer.readableBytes());
+			buffer.skipBytes(skip);
+			this.bytesToDiscard = total - skip;
+			throw new TooLongFrameException("frame length exceeds "
+					+ this.maxFrameLength + ": " + frameLength
+					+ " - discarded");
+		}
+
+		if (buffer.readableBytes() < this.headerLength + frameLength) {
+			return null;
+		}
+
+		buffer.skipBytes(this.headerLength);
+		ChannelBuffer frame;
+		if (frameLength == 0) {
+			frame = ChannelBuffers.EMPTY_BUFFER;
+		} else {
+			this.markCumulationShared();
+			frame = ChannelBuffers.unmodifiableBuffer(buffer
+					.readSlice((int) frameLength));
+		}
+
+		if ((flags & FLAG_COMPRESSED) != 0) {
+			// 解压输出受长度上限约束, 超出时立即中止, 避免少量数据解压后耗尽内存
+			ByteBuffer data = CompressUtils.uncompressDefalte(
+					frame.toByteBuffer(), true, this.maxFrameLength);
+			if (data == null) {
+				throw new TooLongFrameException(
+						"uncompressed frame length exceeds "
+								+ this.maxFrameLength + " - discarded");
+			}
+			frame = ChannelBuffers.wrappedBuffer(data);
+		}
+		return frame;
+	}
+
+	/**
+	 * 读取长度字段
+	 *
+	 * @param buffer
+	 *            接收缓存
+	 * @param index
+	 *            长度字段的偏移量
+	 * @return
+	 */
+	private long getFrameLength(ChannelBuffer buffer, int index) {
+		boolean swap = (buffer.order() != this.byteOrder);
+		switch (this.lengthFieldLength) {
+		case 1:
+			return buffer.getUnsignedByte(index);
+		case 2: {
+			short v = buffer.getShort(index);
+			return (swap ? ChannelBuffers.swapShort(v) : v) & 0xFFFF;
+		}
+		case 3: {
+			int v = buffer.getUnsignedMedium(index);
+			return (swap ? ChannelBuffers.swapMedium(v) : v) & 0xFFFFFF;
+		}
+		case 4: {
+			int v = buffer.getInt(index);
+			return (swap ? ChannelBuffers.swapInt(v) : v) & 0xFFFFFFFFL;
+		}
+		default: {
+			long v = buffer.getLong(index);
+			return (swap ? ChannelBuffers.swapLong(v) : v);
+		}
+		}
+	}
+
+	@Override
+	protected boolean isEncodeRequired(Object msg) {
+		// 所有写出的数据都需要附加帧头
+		return true;
+	}
+
+	@Override
+	protected ChannelBuffer encode(ChannelHandlerContext ctx, Channel channel,
+			Object msg) throws Exception {
+		if (msg == null) {
+			throw new NullPointerException("message");
+		}
+
+		ChannelBuffer payload;
+		if (msg instanceof ChannelBuffer) {
+			payload = (ChannelBuffer) msg;
+		} else if (msg instanceof ByteBuffer) {
+			payload = ChannelBuffers.wrappedBuffer((ByteBuffer) msg);
+		} else if (msg instanceof byte[]) {
+			payload = ChannelBuffers.wrappedBuffer((byte[]) msg);
+		} else {
+			throw new ClassCastException(
+					"msg is not instance of ChannelBuffer, ByteBuffer or byte[]");
+		}
+
+		int flags = 0;
+		int length = payload.readableBytes();
+		if (this.compressThreshold > 0 && length >= this.compressThreshold) {
+			ByteBuffer compressed = CompressUtils
+					.compressFastestDefalte(payload.toByteBuffer());
+			if (compressed.remaining() < length) {
+				payload = ChannelBuffers.wrappedBuffer(compressed);
+				length = compressed.remaining();
+				flags |= FLAG_COMPRESSED;
+			}
+		}
+
+		if (this.lengthFieldLength < 8
+				&& length >= (1L << (this.lengthFieldLength * 8))) {
+			throw new IllegalArgumentException("frame length " + length
+					+ " does not fit into a " + this.lengthFieldLength
+					+ "-byte length field");
+		}
+
+		// 组合缓存要求各部分的字节序一致, 帧头统一使用数据的字节序, 长度字段按需转换
+		ChannelBuffer header = ChannelBuffers.buffer(payload.order(),
+				this.headerLength);
+		boolean swap = (payload.order() != this.byteOrder);
+		if (this.flagsField) {
+			header.writeByte(flags);
+		}
+		switch (this.lengthFieldLength) {
+		case 1:
+			header.writeByte(length);
+			break;
+		case 2:
+			header.writeShort(swap ? ChannelBuffers.swapShort((short) length)
+					: length);
+			break;
+		case 3:
+			header.writeMedium(swap ? ChannelBuffers.swapMedium(length)
+					: length);
+			break;
+		case 4:
+			header.writeInt(swap ? ChannelBuffers.swapInt(length) : length);
+			break;
+		default:
+			header.writeLong(swap ? ChannelBuffers.swapLong(length) : length);
+			break;
+		}
+
+		if (length == 0) {
+			return header;
+		}
+		return ChannelBuffers.wrappedBuffer(true, header, payload);
+	}
+}
@@ -0,0 +1,96 @@
+package com.git.original.server.netty;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.WriteCompletionEvent;
+
+/**
+ * 运行统计处理器
+ * <p>
+ * 位于管道的前端, 统计连接的建立与关闭, 以及读写的字节数; 所有连接共享同一个实例
+ * <p>
+ * 每个连接的读写字节数保存在处理器上下文附件({@link SessionStatistics})中
+ * 
+ * @author linaoxiang
+ */
+public class MetricsChannelHandler implements ChannelUpstreamHandler {
+
+	/**
+	 * 服务器运行统计
+	 */
+	private final NettyServerMetrics metrics;
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param metrics
+	 *            服务器运行统计
+	 */
+	public MetricsChannelHandler(NettyServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.jboss.netty.channel.ChannelUpstreamHandler#handleUpstream(org.jboss
+	 * .netty.channel.ChannelHandlerContext,
+	 * org.jboss.netty.channel.ChannelEvent)
+	 */
+	@Override
+	public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e)
+			throws Exception {
+		if (e instanceof MessageEvent) {
+			Object msg = ((MessageEvent) e).getMessage();
+			if (msg instanceof ChannelBuffer) {
+				int bytes = ((ChannelBuffer) msg).readableBytes();
+				metrics.bytesRead(bytes);
+				SessionStatistics stat = (SessionStatistics) ctx.getAttachment();
+				if (stat != null) {
+					stat.bytesRead(bytes);
+				}
+			}
+		} else if (e instanceof WriteCompletionEvent) {
+			long bytes = ((WriteCompletionEvent) e).getWrittenAmount();
+			metrics.bytesWritten(bytes);
+			SessionStatistics stat = (SessionStatistics) ctx.getAttachment();
+			if (stat != null) {
+				stat.bytesWritten(bytes);
+			}
+		} else if (e instanceof ChannelStateEvent) {
+			ChannelStateEvent evt = (ChannelStateEvent) e;
+			if (evt.getState() == ChannelState.OPEN
+					&& evt.getChannel().getParent() != null) {
+				if (Boolean.TRUE.equals(evt.getValue())) {
+					ctx.setAttachment(new SessionStatistics());
+					metrics.connectionOpened();
+				} else {
+					metrics.connectionClosed();
+				}
+			}
+		}
+
+		ctx.sendUpstream(e);
+	}
+
+	/**
+	 * 获取连接的运行统计
+	 * 
+	 * @param pipeline
+	 *            通道处理器链
+	 * @return null=管道中不存在运行统计处理器或者尚未建立连接
+	 */
+	public static SessionStatistics getSessionStatistics(
+			ChannelPipeline pipeline) {
+		ChannelHandlerContext ctx = pipeline
+				.getContext(MetricsChannelHandler.class);
+		return (ctx == null ? null : (SessionStatistics) ctx.getAttachment());
+	}
+}
@@ -0,0 +1,175 @@
+package com.git.original.server.netty;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+/**
+ * 统计待触发任务数及触发延迟的定时器
+ * <p>
+ * 触发延迟即任务实际执行时间与预期到期时间的差值, 可用于判断定时器线程是否已经处理不过来
+ * 
+ * @author linaoxiang
+ */
+public class MonitoredTimer implements Timer {
+
+	/**
+	 * 实际使用的定时器
+	 */
+	private final Timer timer;
+
+	/**
+	 * 是否允许通过{@link #stop()}停止实际使用的定时器
+	 */
+	private final boolean stoppable;
+
+	/**
+	 * 待触发的任务数
+	 */
+	private final AtomicLong pendingCount;
+
+	/**
+	 * 任务触发延迟的分布
+	 */
+	private final LatencyHistogram lagHistogram;
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param timer
+	 *            实际使用的定时器
+	 * @param stoppable
+	 *            是否允许通过{@link #stop()}停止实际使用的定时器
+	 * @param pendingCount
+	 *            待触发的任务数(可以在多个定时器之间共享)
+	 * @param lagHistogram
+	 *            任务触发延迟的分布(可以在多个定时器之间共享)
+	 */
+	public MonitoredTimer(Timer timer, boolean stoppable,
+			AtomicLong pendingCount, LatencyHistogram lagHistogram) {
+		this.timer = timer;
+		this.stoppable = stoppable;
+		this.pendingCount = pendingCount;
+		this.lagHistogram = lagHistogram;
+	}
+
+	@Override
+	public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+		MonitoredTimeout timeout = new MonitoredTimeout(task, System.nanoTime()
+				+ unit.toNanos(delay));
+		pendingCount.incrementAndGet();
+		try {
+			timeout.delegate = timer.newTimeout(timeout, delay, unit);
+		} catch (RuntimeException ex) {
+			pendingCount.decrementAndGet();
+			throw ex;
+		}
+		return timeout;
+	}
+
+	@Override
+	public Set<Timeout> stop() {
+		if (!stoppable) {
+			return null;
+		}
+		return timer.stop();
+	}
+
+	/**
+	 * @return 待触发的任务数
+	 */
+	public long getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * @return 任务触发延迟的分布
+	 */
+	public LatencyHistogram getLagHistogram() {
+		return lagHistogram;
+	}
+
+	/**
+	 * 统计状态的定时任务
+	 */
+	private class MonitoredTimeout implements Timeout, TimerTask {
+		/** 状态: 等待触发 */
+		private static final int ST_PENDING = 0;
+
+		/** 状态: 已经触发或取消 */
+		private static final int ST_DONE = 1;
+
+		/**
+		 * 实际的任务
+		 */
+		private final TimerTask task;
+
+		/**
+		 * 预期到期时间(单位:ns)
+		 */
+		private final long deadline;
+
+		/**
+		 * 任务状态
+		 */
+		private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+
+		/**
+		 * 实际定时器返回的定时任务
+		 */
+		volatile Timeout delegate;
+
+		MonitoredTimeout(TimerTask task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public void run(Timeout timeout) throws Exception {
+			if (state.compareAndSet(ST_PENDING, ST_DONE)) {
+				pendingCount.decrementAndGet();
+			}
+			lagHistogram.record(System.nanoTime() - deadline);
+			task.run(this);
+		}
+
+		@Override
+		public Timer getTimer() {
+			return MonitoredTimer.this;
+		}
+
+		@Override
+		public TimerTask getTask() {
+			return task;
+		}
+
+		@Override
+		public boolean isExpired() {
+			Timeout t = delegate;
+			return t != null && t.isExpired();
+		}
+
+		@Override
+		public boolean isCancelled() {
+			Timeout t = delegate;
+			return t != null && t.isCancelled();
+		}
+
+		@Override
+		public void cancel() {
+			if (state.compareAndSet(ST_PENDING, ST_DONE)) {
+				pendingCount.decrementAndGet();
+			}
+
+			Timeout t = delegate;
+			if (t != null) {
+				t.cancel();
+			}
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.git.original.server.netty;
 
+import java.util.List;
 import java.util.Map.Entry;
 
 import org.jboss.netty.channel.Channel;
@@ -13,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import com.git.original.common.logging.LoggerHelper;
 import com.git.original.server.AdminCmdExecutor;
 import com.git.original.server.AdminCmdExecutor.CommandEntry;
+import com.git.original.server.ServerConfig;
 import com.git.original.server.annotation.AdminCmdDescription;
 
 /**
@@ -340,6 +342,233 @@ public class NettyAdminChannelHandler extends IdleableNettyChannelHandler {
 		return "reload config failed";
 	}
 
+	/**
+	 * 执行连接清退相关指令
+	 * 
+	 * @param argStr
+	 * @return
+	 */
+	@AdminCmdDescription(cmd = "drain", usage = "drain <start [timeout_seconds] | status>")
+	protected String doDrain(String argStr) {
+		String[] args = (argStr == null ? "status" : argStr.trim()).split(
+				"\\s+", 2);
+
+		if ("start".equalsIgnoreCase(args[0])) {
+			long timeout;
+			try {
+				if (args.length > 1) {
+					timeout = Long.parseLong(args[1]);
+				} else {
+					timeout = parentServer.getConfig()
+							.getServerShutdownDrainTimeout();
+				}
+			} catch (Exception ex) {
+				return "illegal drain timeout: " + args[1];
+			}
+
+			NettyServer.DrainStatus status = parentServer
+					.startDrain(timeout * 1000);
+			if (status == null) {
+				return "server is not running";
+			}
+			return "[start] " + status;
+		} else if ("status".equalsIgnoreCase(args[0])
+				|| args[0].isEmpty()) {
+			NettyServer.DrainStatus status = parentServer.getDrainStatus();
+			if (status == null) {
+				return "[status] not draining";
+			}
+			return "[status] " + status;
+		} else {
+			return "not implement DRAIN [" + args[0] + "]";
+		}
+	}
+
+	/**
+	 * 输出服务器运行统计
+	 * 
+	 * @param argStr
+	 *            参数(忽略)
+	 * @return 响应内容
+	 */
+	@AdminCmdDescription(cmd = "stat", usage = "stat: show connections, traffic, executor and handler latency statistics")
+	protected String doStat(String argStr) {
+		NettyServerMetrics metrics = parentServer.getMetrics();
+		if (metrics == null) {
+			return "server metrics not available";
+		}
+		return metrics.dump();
+	}
+
+	/**
+	 * 输出业务处理线程池的运行统计
+	 * 
+	 * @param argStr
+	 *            参数(忽略)
+	 * @return 响应内容
+	 */
+	@AdminCmdDescription(cmd = "executor", usage = "executor: show statistics of the handle thread pool")
+	protected String doExecutor(String argStr) {
+		IExecutorStatistics stat = parentServer.getExecutorStatistics();
+		if (stat == null) {
+			return "executor statistics not supported";
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("[executor] ").append(stat.getClass().getSimpleName())
+				.append(": pool_size=").append(stat.getPoolSize())
+				.append(", active=").append(stat.getActiveCount())
+				.append(", pending=").append(stat.getPendingEventCount())
+				.append(", completed=").append(stat.getCompletedEventCount())
+				.append(", rejected=").append(stat.getRejectedEventCount());
+		if (stat instanceof StripedChannelExecutor) {
+			sb.append(", max_lane_pending=").append(
+					((StripedChannelExecutor) stat).getMaxLaneQueueSize());
+		}
+		ExecutorSaturationPolicy policy = parentServer.getSaturationPolicy();
+		if (policy != null) {
+			sb.append("\r\n[saturation] ").append(policy);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 执行会话查询及清退相关指令
+	 * 
+	 * @param argStr
+	 * @return
+	 */
+	@AdminCmdDescription(cmd = "session", usage = "session <count | list [max_count] | find <uid | session_id> | kill <uid | session_id>>")
+	protected String doSession(String argStr) {
+		String[] args = (argStr == null ? "count" : argStr.trim()).split(
+				"\\s+", 2);
+		SessionRegistry registry = parentServer.getSessionRegistry();
+
+		StringBuilder sb = new StringBuilder();
+		sb.append('[').append(args[0]).append("] ");
+
+		if ("count".equalsIgnoreCase(args[0]) || args[0].isEmpty()) {
+			return sb.append("sessions = ").append(registry.size())
+					.toString();
+		} else if ("list".equalsIgnoreCase(args[0])) {
+			int max = 100;
+			if (args.length > 1) {
+				try {
+					max = Integer.parseInt(args[1]);
+				} catch (Exception ex) {
+					return sb.append("illegal max count: ").append(args[1])
+							.toString();
+				}
+			}
+
+			List<SessionRegistry.Session> sessions = registry.list();
+			sb.append("sessions = ").append(sessions.size());
+			for (int i = 0; i < sessions.size() && i < max; i++) {
+				sb.append("\r\n").append(sessions.get(i));
+			}
+			return sb.toString();
+		} else if ("find".equalsIgnoreCase(args[0])
+				|| "kill".equalsIgnoreCase(args[0])) {
+			if (args.length < 2) {
+				return sb.append("missing uid or session_id").toString();
+			}
+
+			SessionRegistry.Session session = findSession(registry, args[1]);
+			if (session == null) {
+				return sb.append("session not found: ").append(args[1])
+						.toString();
+			}
+
+			if ("kill".equalsIgnoreCase(args[0])) {
+				registry.kill(session.getChannelUid());
+				return sb.append("close ").append(session).toString();
+			}
+			return sb.append(session).append("\r\n")
+					.append(session.getStatistics()).toString();
+		} else {
+			return sb.append("not implement SESSION [").append(args[0])
+					.append(']').toString();
+		}
+	}
+
+	/**
+	 * 根据连接唯一ID或者会话全局唯一标记查找会话
+	 * 
+	 * @param registry
+	 * @param key
+	 * @return null=不存在
+	 */
+	private static SessionRegistry.Session findSession(
+			SessionRegistry registry, String key) {
+		if (key.length() >= 14) {
+			// 会话全局唯一标记至少14个字符
+			return registry.findBySessionId(key);
+		}
+
+		try {
+			return registry.get(Long.parseLong(key));
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * 执行运行统计排行相关指令
+	 * 
+	 * @param argStr
+	 * @return
+	 */
+	@AdminCmdDescription(cmd = "top", usage = "top [sessions | commands | reset] [max_count]: list sessions or commands by handle time")
+	protected String doTop(String argStr) {
+		String[] args = (argStr == null ? "sessions" : argStr.trim()).split(
+				"\\s+", 2);
+		String type = (args[0].isEmpty() ? "sessions" : args[0]);
+
+		StringBuilder sb = new StringBuilder();
+		sb.append('[').append(type).append("] ");
+
+		int max = 20;
+		if (args.length > 1) {
+			try {
+				max = Integer.parseInt(args[1]);
+			} catch (Exception ex) {
+				return sb.append("illegal max count: ").append(args[1])
+						.toString();
+			}
+		}
+
+		if ("sessions".equalsIgnoreCase(type)) {
+			List<SessionRegistry.Session> sessions = parentServer
+					.getSessionRegistry().listByHandlerTime();
+			sb.append("sessions = ").append(sessions.size());
+			for (int i = 0; i < sessions.size() && i < max; i++) {
+				SessionRegistry.Session session = sessions.get(i);
+				sb.append("\r\n").append(session).append(", ")
+						.append(session.getStatistics());
+			}
+			return sb.toString();
+		} else if ("commands".equalsIgnoreCase(type)) {
+			CommandStatistics stat = parentServer.getCommandStatistics();
+			if (!stat.isEnabled()) {
+				sb.append("command statistics disabled, set <")
+						.append(ServerConfig.CONF_SERVER_COMMAND_STATISTICS)
+						.append("> to enable\r\n");
+			}
+			List<CommandStatistics.Entry> commands = stat.list();
+			sb.append("commands = ").append(commands.size());
+			for (int i = 0; i < commands.size() && i < max; i++) {
+				sb.append("\r\n").append(commands.get(i));
+			}
+			return sb.toString();
+		} else if ("reset".equalsIgnoreCase(type)) {
+			parentServer.getCommandStatistics().clear();
+			return sb.append("command statistics cleared").toString();
+		} else {
+			return sb.append("not implement TOP [").append(type).append(']')
+					.toString();
+		}
+	}
+
 	/**
 	 * 执行JVM相关指令
 	 * 
@@ -1,12 +1,26 @@
 package com.git.original.server.netty;
 
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelLocal;
+import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.UpstreamMessageEvent;
+import org.jboss.netty.handler.execution.ChannelUpstreamEventRunnable;
+import org.jboss.netty.handler.execution.ExecutionHandler;
 import org.jboss.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.git.original.server.IAsyncSessionHandler;
+import com.git.original.server.ICommandCompletion;
 import com.git.original.server.ISessionHandler;
 
 /**
@@ -24,6 +38,39 @@ public class NettyChannelHandler extends IdleableNettyChannelHandler {
 	 */
 	protected final NettyServer server;
 
+	/**
+	 * 通道 --> 最后一次完成消息处理的时间(单位:ms)
+	 * <p>
+	 * 值为{@link #PROCESSING}表示该通道正在处理消息
+	 */
+	private static final ChannelLocal<Long> lastProcessedTimes = new ChannelLocal<Long>(
+			true);
+
+	/**
+	 * 标记通道正在处理消息
+	 */
+	private static final Long PROCESSING = Long.valueOf(-1);
+
+	/**
+	 * 通道 --> 已注册的会话
+	 * <p>
+	 * 处理器上下文附件仍然保存会话处理器本身, 兼容通过<code>(ISessionHandler) ctx.getAttachment()</code>
+	 * 获取会话处理器的代码
+	 */
+	private static final ChannelLocal<SessionRegistry.Session> sessions = new ChannelLocal<SessionRegistry.Session>(
+			true);
+
+	/**
+	 * 通道 --> 异步命令队列
+	 */
+	private static final ChannelLocal<AsyncCommandQueue> asyncQueues = new ChannelLocal<AsyncCommandQueue>(
+			true);
+
+	/**
+	 * 异步命令完成后, 提交到线程池继续处理暂存消息的标记
+	 */
+	private static final Object ASYNC_RESUME = new Object();
+
 	/**
 	 * 创建实例
 	 * 
@@ -46,11 +93,16 @@ public class NettyChannelHandler extends IdleableNettyChannelHandler {
 	@Override
 	public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e)
 			throws Exception {
-		ctx.setAttachment(server.createHandler(
-				NettyServer.channelIdGenerator.getAndIncrement(),
-				e.getChannel()));
+		long channelUid = NettyServer.channelIdGenerator.getAndIncrement();
+		Channel channel = e.getChannel();
+		ISessionHandler handler = server.createHandler(channelUid, channel);
+
+		// 注册表供其他模块按ID查找
+		sessions.set(channel, server.getSessionRegistry().register(
+				channelUid, channel, handler,
+				MetricsChannelHandler.getSessionStatistics(ctx.getPipeline())));
+		ctx.setAttachment(handler);
 
-		ISessionHandler handler = (ISessionHandler) ctx.getAttachment();
 		if (handler != null) {
 			handler.connectionOpened();
 		}
@@ -69,7 +121,11 @@ public class NettyChannelHandler extends IdleableNettyChannelHandler {
 	public void channelDisconnected(ChannelHandlerContext ctx,
 			ChannelStateEvent e) {
 		try {
-			ISessionHandler handler = (ISessionHandler) ctx.getAttachment();
+			SessionRegistry.Session session = session(ctx);
+			server.getSessionRegistry().unregister(session);
+
+			ISessionHandler handler = (session == null ? null : session
+					.getHandler());
 			if (handler != null) {
 				handler.connectionClosed();
 			}
@@ -90,12 +146,354 @@ public class NettyChannelHandler extends IdleableNettyChannelHandler {
 	@Override
 	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e)
 			throws Exception {
-		ISessionHandler handler = (ISessionHandler) ctx.getAttachment();
+		SessionRegistry.Session session = session(ctx);
+		ISessionHandler handler = (session == null ? null : session
+				.getHandler());
 		if (handler != null) {
-			handler.messageReceived(e.getMessage());
+			Channel channel = e.getChannel();
+			lastProcessedTimes.set(channel, PROCESSING);
+			try {
+				Object message = e.getMessage();
+				if (message == ASYNC_RESUME) {
+					AsyncCommandQueue queue = asyncQueue(channel);
+					this.runAsync(ctx, session, (IAsyncSessionHandler) handler,
+							queue, queue.poll(channel.isOpen()));
+				} else {
+					this.dispatch(ctx, session, handler, message);
+				}
+			} finally {
+				lastProcessedTimes.set(channel, System.currentTimeMillis());
+			}
+		}
+	}
+
+	/**
+	 * 获取通道对应的会话
+	 * 
+	 * @param ctx
+	 * @return null=尚未建立会话
+	 */
+	private static SessionRegistry.Session session(ChannelHandlerContext ctx) {
+		return sessions.get(ctx.getChannel());
+	}
+
+	/**
+	 * 获取通道对应的会话处理器(即本处理器的上下文附件)
+	 * 
+	 * @param ctx
+	 *            本处理器的上下文
+	 * @return null=尚未建立会话
+	 */
+	public static ISessionHandler getSessionHandler(ChannelHandlerContext ctx) {
+		Object attachment = ctx.getAttachment();
+		return (attachment instanceof ISessionHandler ? (ISessionHandler) attachment
+				: null);
+	}
+
+	/**
+	 * 获取通道对应的会话处理器
+	 * 
+	 * @param pipeline
+	 *            通道处理器链
+	 * @return null=尚未建立会话或者不存在业务处理器
+	 */
+	public static ISessionHandler getSessionHandler(ChannelPipeline pipeline) {
+		ChannelHandlerContext ctx = pipeline
+				.getContext(NettyChannelHandler.class);
+		return (ctx == null ? null : getSessionHandler(ctx));
+	}
+
+	/**
+	 * 将消息交给会话处理器处理
+	 * <p>
+	 * 批量消息中的每个帧按顺序分别处理; 处理批量消息或编解码处理器开启合并写出时, 处理期间产生的响应合并为一次写出
+	 * (异步会话处理器的响应可能在其他线程中写出, 不合并)
+	 * <p>
+	 * 每个帧的处理耗时同时计入会话及命令的运行统计
+	 * 
+	 * @param ctx
+	 * @param session
+	 *            会话
+	 * @param handler
+	 *            会话处理器
+	 * @param message
+	 *            消息
+	 * @throws Exception
+	 */
+	private void dispatch(ChannelHandlerContext ctx,
+			SessionRegistry.Session session, ISessionHandler handler,
+			Object message) throws Exception {
+		CodecStreamHandler codec = ctx.getPipeline().get(
+				CodecStreamHandler.class);
+		boolean aggregate = codec != null
+				&& !(handler instanceof IAsyncSessionHandler)
+				&& (message instanceof FrameBatch || codec.isAggregateWrites());
+		if (aggregate) {
+			codec.beginWriteBatch();
+		}
+
+		try {
+			if (message instanceof FrameBatch) {
+				for (Object frame : (FrameBatch) message) {
+					this.handle(ctx, session, handler, frame);
+				}
+			} else {
+				this.handle(ctx, session, handler, message);
+			}
+		} finally {
+			if (aggregate) {
+				codec.endWriteBatch();
+			}
+		}
+	}
+
+	/**
+	 * 处理单个消息并记录处理耗时
+	 * <p>
+	 * 异步会话处理器的前一个命令尚未完成时, 消息被暂存到异步命令队列中
+	 * 
+	 * @param ctx
+	 * @param session
+	 *            会话
+	 * @param handler
+	 *            会话处理器
+	 * @param message
+	 *            消息
+	 * @throws Exception
+	 */
+	private void handle(ChannelHandlerContext ctx,
+			SessionRegistry.Session session, ISessionHandler handler,
+			Object message) throws Exception {
+		if (handler instanceof IAsyncSessionHandler) {
+			Channel channel = ctx.getChannel();
+			AsyncCommandQueue queue = asyncQueue(channel);
+			if (queue.offer(message)) {
+				// 命令未完成期间暂停读取
+				UpstreamEventExecutionHandler.outstandingEvents(channel)
+						.incrementAndGet();
+				ChannelReadSuspender.suspend(channel,
+						ChannelReadSuspender.REASON_ASYNC_COMMAND);
+				this.runAsync(ctx, session, (IAsyncSessionHandler) handler,
+						queue, message);
+			}
+			return;
+		}
+
+		long start = System.nanoTime();
+		try {
+			handler.messageReceived(message);
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			session.getStatistics().messageHandled(elapsed);
+			this.recordCommand(message, elapsed);
+		}
+	}
+
+	/**
+	 * 依次处理异步命令, 直到某个命令未能在调用期间完成或者队列为空
+	 * <p>
+	 * 队列为空时恢复读取; 处理耗时只统计调用期间占用线程的时间
+	 * 
+	 * @param ctx
+	 * @param session
+	 *            会话
+	 * @param handler
+	 *            异步会话处理器
+	 * @param queue
+	 *            异步命令队列
+	 * @param message
+	 *            第一个需要处理的消息(null=队列已空闲)
+	 */
+	private void runAsync(ChannelHandlerContext ctx,
+			SessionRegistry.Session session, IAsyncSessionHandler handler,
+			AsyncCommandQueue queue, Object message) {
+		Channel channel = ctx.getChannel();
+		Object next = message;
+		while (next != null) {
+			AsyncCompletion completion = new AsyncCompletion(ctx, session,
+					handler, queue);
+			long start = System.nanoTime();
+			try {
+				handler.messageReceived(next, completion);
+			} catch (Throwable t) {
+				completion.failed(t);
+			} finally {
+				long elapsed = System.nanoTime() - start;
+				session.getStatistics().messageHandled(elapsed);
+				this.recordCommand(next, elapsed);
+			}
+
+			if (!completion.returned()) {
+				// 命令尚未完成, 由完成通知继续处理后续消息
+				return;
+			}
+			next = queue.poll(channel.isOpen() && !completion.isFailed());
+		}
+
+		resumeReads(channel);
+	}
+
+	/**
+	 * 异步命令在调用返回后才完成: 继续处理暂存的消息
+	 * <p>
+	 * 存在业务线程池时提交到线程池中处理(与该连接的其他事件保持顺序), 否则在当前线程中处理
+	 * 
+	 * @param ctx
+	 * @param session
+	 *            会话
+	 * @param handler
+	 *            异步会话处理器
+	 * @param queue
+	 *            异步命令队列
+	 * @param succeeded
+	 *            命令是否成功(false=丢弃所有暂存的消息)
+	 */
+	private void continueAsync(ChannelHandlerContext ctx,
+			SessionRegistry.Session session, IAsyncSessionHandler handler,
+			AsyncCommandQueue queue, boolean succeeded) {
+		Channel channel = ctx.getChannel();
+		if (!queue.hasNext(succeeded && channel.isOpen())) {
+			resumeReads(channel);
+			return;
+		}
+
+		ChannelHandlerContext executorCtx = ctx.getPipeline().getContext(
+				ExecutionHandler.class);
+		if (executorCtx == null) {
+			this.runAsync(ctx, session, handler, queue, queue.poll(true));
+			return;
+		}
+
+		Executor executor = ((ExecutionHandler) executorCtx.getHandler())
+				.getExecutor();
+		try {
+			executor.execute(new ChannelUpstreamEventRunnable(executorCtx,
+					new UpstreamMessageEvent(channel, ASYNC_RESUME, channel
+							.getRemoteAddress()), executor));
+		} catch (RejectedExecutionException ex) {
+			LOG.warn("resume async command failed, close channel. channel_id="
+					+ channel.getId(), ex);
+			channel.close();
+			queue.poll(false);
+			resumeReads(channel);
 		}
 	}
 
+	/**
+	 * 异步命令队列空闲, 恢复读取(不存在其他暂停原因时, 如写缓存超过高水位)
+	 * 
+	 * @param channel
+	 */
+	private static void resumeReads(Channel channel) {
+		UpstreamEventExecutionHandler.outstandingEvents(channel)
+				.decrementAndGet();
+		ChannelReadSuspender.resume(channel,
+				ChannelReadSuspender.REASON_ASYNC_COMMAND);
+	}
+
+	/**
+	 * 获取通道对应的异步命令队列
+	 * 
+	 * @param channel
+	 * @return
+	 */
+	private static AsyncCommandQueue asyncQueue(Channel channel) {
+		AsyncCommandQueue queue = asyncQueues.get(channel);
+		if (queue == null) {
+			queue = new AsyncCommandQueue();
+			AsyncCommandQueue old = asyncQueues.setIfAbsent(channel, queue);
+			if (old != null) {
+				queue = old;
+			}
+		}
+		return queue;
+	}
+
+	/**
+	 * 按命令汇总一个消息的处理耗时(未开启命令统计时忽略)
+	 * 
+	 * @param message
+	 *            消息
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	private void recordCommand(Object message, long nanos) {
+		CommandStatistics stat = server.getCommandStatistics();
+		if (!stat.isEnabled() || !this.isCommandMessage(message)) {
+			return;
+		}
+
+		String name = this.getCommandName(message);
+		if (name != null) {
+			stat.record(name, nanos);
+		} else if (message instanceof CharSequence
+				|| message instanceof ChannelBuffer) {
+			// 默认取文本消息的第一个单词, 已知命令不需要分配对象
+			stat.recordFirstWord(message, nanos);
+		} else if (message != null) {
+			stat.record(message.getClass().getSimpleName(), nanos);
+		}
+	}
+
+	/**
+	 * 判断消息是否为需要按命令统计的命令消息
+	 * <p>
+	 * 默认忽略流模式下的数据块; 以普通行传输数据的协议(如按行接收的SMTP DATA)可以覆盖本方法,
+	 * 在数据传输期间返回false, 避免数据内容被当作命令名称
+	 * 
+	 * @param message
+	 *            消息
+	 * @return
+	 */
+	protected boolean isCommandMessage(Object message) {
+		return !(message instanceof StreamChunk);
+	}
+
+	/**
+	 * 获取消息对应的命令名称, 用于按命令汇总处理耗时
+	 * <p>
+	 * 带有标签前缀的协议(如IMAP)可以覆盖本方法返回去掉标签后的命令名称
+	 * 
+	 * @param message
+	 *            消息
+	 * @return null=按默认规则: 文本消息取第一个单词(转为大写), 其他消息取类名
+	 */
+	protected String getCommandName(Object message) {
+		return null;
+	}
+
+	/**
+	 * 判断通道当前是否处于空闲状态
+	 * <p>
+	 * 即: 没有正在处理的消息, 且最近一次消息处理完成至今已经超过指定的时间
+	 * 
+	 * @param channel
+	 *            网络通道
+	 * @param quietMillis
+	 *            最近一次消息处理完成至今至少需要经过的时间(单位:ms)
+	 * @return
+	 */
+	public static boolean isChannelQuiet(Channel channel, long quietMillis) {
+		Long time = lastProcessedTimes.get(channel);
+		if (time == null) {
+			// 尚未收到过任何消息
+			return true;
+		}
+
+		if (time.longValue() < 0) {
+			// 正在处理消息
+			return false;
+		}
+
+		AsyncCommandQueue queue = asyncQueues.get(channel);
+		if (queue != null && queue.isBusy()) {
+			// 异步命令尚未完成
+			return false;
+		}
+
+		return System.currentTimeMillis() - time.longValue() >= quietMillis;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -107,10 +505,159 @@ public class NettyChannelHandler extends IdleableNettyChannelHandler {
 	@Override
 	public void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e)
 			throws Exception {
-		ISessionHandler handler = (ISessionHandler) ctx.getAttachment();
+		ISessionHandler handler = getSessionHandler(ctx);
 		if (handler != null) {
 			handler.connectionIdle();
 		}
 	}
 
+	/**
+	 * 异步命令队列
+	 * <p>
+	 * 同一连接同时最多只有一个未完成的异步命令, 其间到达的消息按顺序暂存
+	 */
+	private static final class AsyncCommandQueue {
+		/**
+		 * 暂存的消息
+		 */
+		private final LinkedList<Object> pending = new LinkedList<Object>();
+
+		/**
+		 * 是否存在未完成的命令
+		 */
+		private boolean busy = false;
+
+		/**
+		 * 提交消息
+		 * 
+		 * @param message
+		 * @return true=队列空闲, 由调用者立即处理该消息; false=已暂存
+		 */
+		synchronized boolean offer(Object message) {
+			if (busy) {
+				pending.add(message);
+				return false;
+			}
+			busy = true;
+			return true;
+		}
+
+		/**
+		 * 取出下一个暂存的消息
+		 * 
+		 * @param open
+		 *            连接是否仍然打开(false=丢弃所有暂存的消息)
+		 * @return null=队列为空, 已转为空闲状态
+		 */
+		synchronized Object poll(boolean open) {
+			Object next = (open ? pending.poll() : null);
+			if (next == null) {
+				pending.clear();
+				busy = false;
+			}
+			return next;
+		}
+
+		/**
+		 * 判断是否存在暂存的消息
+		 * 
+		 * @param open
+		 *            连接是否仍然打开(false=丢弃所有暂存的消息)
+		 * @return false=队列为空, 已转为空闲状态
+		 */
+		synchronized boolean hasNext(boolean open) {
+			if (open && !pending.isEmpty()) {
+				return true;
+			}
+			pending.clear();
+			busy = false;
+			return false;
+		}
+
+		synchronized boolean isBusy() {
+			return busy;
+		}
+	}
+
+	/**
+	 * 单个异步命令的完成通知
+	 */
+	private final class AsyncCompletion implements ICommandCompletion {
+		private final ChannelHandlerContext ctx;
+
+		private final SessionRegistry.Session session;
+
+		private final IAsyncSessionHandler handler;
+
+		private final AsyncCommandQueue queue;
+
+		/**
+		 * 命令是否已经完成
+		 */
+		private boolean done = false;
+
+		/**
+		 * 命令是否失败
+		 */
+		private boolean failure = false;
+
+		/**
+		 * 处理方法是否已经返回
+		 */
+		private boolean returned = false;
+
+		AsyncCompletion(ChannelHandlerContext ctx,
+				SessionRegistry.Session session, IAsyncSessionHandler handler,
+				AsyncCommandQueue queue) {
+			this.ctx = ctx;
+			this.session = session;
+			this.handler = handler;
+			this.queue = queue;
+		}
+
+		/**
+		 * 标记处理方法已经返回
+		 * 
+		 * @return true=命令已在调用期间完成, 由调用者继续处理后续消息
+		 */
+		synchronized boolean returned() {
+			this.returned = true;
+			return this.done;
+		}
+
+		synchronized boolean isFailed() {
+			return this.failure;
+		}
+
+		@Override
+		public void completed() {
+			this.finish(null);
+		}
+
+		@Override
+		public void failed(Throwable cause) {
+			this.finish(cause == null ? new IllegalStateException(
+					"async command failed") : cause);
+		}
+
+		private void finish(Throwable cause) {
+			boolean resume;
+			synchronized (this) {
+				if (this.done) {
+					return;
+				}
+				this.done = true;
+				this.failure = (cause != null);
+				resume = this.returned;
+			}
+
+			if (cause != null) {
+				Channels.fireExceptionCaughtLater(ctx.getChannel(), cause);
+			}
+			if (resume) {
+				continueAsync(ctx, session, handler, queue, cause == null);
+			}
+		}
+	}
+
 }
@@ -3,17 +3,25 @@ package com.git.original.server.netty;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.URI;
 import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -22,7 +30,10 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
@@ -31,6 +42,7 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 
 import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.AdaptiveReceiveBufferSizePredictorFactory;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFactory;
 import org.jboss.netty.channel.ChannelFuture;
@@ -39,14 +51,18 @@ import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.FixedReceiveBufferSizePredictorFactory;
+import org.jboss.netty.channel.ReceiveBufferSizePredictorFactory;
 import org.jboss.netty.channel.group.ChannelGroup;
 import org.jboss.netty.channel.group.ChannelGroupFuture;
 import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.netty.channel.socket.oio.OioServerSocketChannelFactory;
 import org.jboss.netty.handler.execution.ExecutionHandler;
-import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.jboss.netty.handler.execution.MemoryAwareThreadPoolExecutor;
 import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.timeout.DefaultIdleStateEvent;
+import org.jboss.netty.handler.timeout.IdleState;
 import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.jboss.netty.util.CharsetUtil;
 import org.jboss.netty.util.HashedWheelTimer;
@@ -95,6 +111,16 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	 */
 	public static final String NETTY_HANDLER_NAME_THREAD_POOL_FILTER = "threadpoolFilter";
 
+	/**
+	 * Netty处理器名称: 连接数限制过滤层
+	 */
+	public static final String NETTY_HANDLER_NAME_CONNECTION_LIMIT_FILTER = "connectionLimitFilter";
+
+	/**
+	 * Netty处理器名称: 运行统计过滤层
+	 */
+	public static final String NETTY_HANDLER_NAME_METRICS_FILTER = "metricsFilter";
+
 	/**
 	 * Netty处理器名称: SSL端口检测过滤层
 	 */
@@ -105,6 +131,11 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	 */
 	public static final String NETTY_HANDLER_NAME_SSL_FILTER = "sslFilter";
 
+	/**
+	 * Netty处理器名称: 数据流压缩过滤层
+	 */
+	public static final String NETTY_HANDLER_NAME_COMPRESS_FILTER = "compressFilter";
+
 	/**
 	 * Netty处理器名称: 空闲状态触发过滤层
 	 */
@@ -120,6 +151,13 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	 */
 	private final Set<Channel> sslServerChannelSet;
 
+	/**
+	 * 侦听地址标识 --> 侦听通道 映射表
+	 * <p>
+	 * 用于配置变更时比对侦听地址的增减
+	 */
+	private final Map<String, Channel> address2ServerChannel = new LinkedHashMap<String, Channel>();
+
 	/**
 	 * 服务器默认网络IO类型
 	 */
@@ -130,6 +168,22 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	 */
 	private final Map<NettyIoType, ServerBootstrap> ioType2Bootstrap = new HashMap<NettyServer.NettyIoType, ServerBootstrap>();
 
+	/**
+	 * 侦听通道 --> 按侦听地址单独创建的ServerBootstrap(独占IO线程池或者单独指定了Socket选项)
+	 */
+	private final Map<Channel, ServerBootstrap> addressBootstraps = new ConcurrentHashMap<Channel, ServerBootstrap>();
+
+	/**
+	 * 独占IO线程池的侦听通道(侦听地址被删除且连接清退完成后, 释放其ServerBootstrap)
+	 */
+	private final Set<Channel> dedicatedIoServerChannels = Collections
+			.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+
+	/**
+	 * 当前服务独占的Netty框架NIO工厂(null=使用JVM全局的NIO工厂)
+	 */
+	private ChannelFactory serverNioChannelFactory;
+
 	/**
 	 * true=只允许开启管理端口(即该服务器端不提供对外服务);false=允许开启服务端口
 	 */
@@ -150,10 +204,46 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	 */
 	private ChannelGroup allAdminChannels;
 
+	/**
+	 * 业务处理线程池饱和策略(null=不拒绝)
+	 */
+	private ExecutorSaturationPolicy saturationPolicy;
+
+	/**
+	 * 对外服务的所有会话
+	 */
+	private final SessionRegistry sessionRegistry = new SessionRegistry();
+
+	/**
+	 * 按命令名称汇总的消息处理统计
+	 */
+	private final CommandStatistics commandStatistics = new CommandStatistics(
+			256);
+
 	/**
 	 * 事件调用处理的线程池
 	 */
-	protected ThreadPoolExecutor serverExeutor;
+	protected ExecutorService serverExeutor;
+
+	/**
+	 * 连接数限制过滤层(null=不限制连接数)
+	 */
+	private ConnectionLimitChannelHandler connectionLimiter;
+
+	/**
+	 * 服务连接用于触发IDLE事件的定时器组
+	 */
+	private IdleTimerGroup idleTimerGroup;
+
+	/**
+	 * 服务器运行统计
+	 */
+	private NettyServerMetrics metrics;
+
+	/**
+	 * 已经注册的JMX对象名称(null=未注册)
+	 */
+	private ObjectName metricsMBeanName;
 
 	/**
 	 * SSL环境对象
@@ -192,6 +282,28 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	/** 服务被关闭 */
 	private static final int SERVER_STATUS_CLOSED = 10;
 
+	/**
+	 * 连接清退时扫描现有连接的时间间隔(单位:ms)
+	 * <p>
+	 * 同时也是判定连接空闲的最短静默时间
+	 */
+	private static final long DRAIN_SWEEP_INTERVAL = 500;
+
+	/**
+	 * Netty默认的写缓存高水位(单位:字节)
+	 */
+	private static final int DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 64 * 1024;
+
+	/**
+	 * Netty默认的写缓存低水位(单位:字节)
+	 */
+	private static final int DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 32 * 1024;
+
+	/**
+	 * 当前(或最近一次)连接清退的执行状态(null=未执行过清退)
+	 */
+	private volatile DrainStatus drainStatus;
+
 	/**
 	 * JVM全局的Netty框架IO线程池
 	 */
@@ -257,7 +369,8 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 			this.defaultIoType = NettyIoType.NON_BLOCK_IO;
 		}
 
-		this.sslServerChannelSet = new HashSet<Channel>();
+		this.sslServerChannelSet = Collections
+				.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
 	}
 
 	/**
@@ -276,7 +389,8 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 		}
 		this.defaultIoType = ioType;
 
-		this.sslServerChannelSet = new HashSet<Channel>();
+		this.sslServerChannelSet = Collections
+				.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
 	}
 
 	/**
@@ -313,6 +427,61 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 		return NettyServer.globalNioChannelFactory;
 	}
 
+	/**
+	 * 获取当前服务使用的Netty框架NIO工厂
+	 * <p>
+	 * 根据配置{@link ServerConfig#CONF_SERVER_IO_THREAD_MODE}决定使用JVM全局的NIO工厂,
+	 * 还是当前服务独占的NIO工厂
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	protected synchronized ChannelFactory getServiceNioChannelFactory()
+			throws Exception {
+		ServerConfig conf = this.getConfig();
+		if (!ServerConfig.IO_THREAD_MODE_DEDICATED.equalsIgnoreCase(conf
+				.getServerIoThreadMode())) {
+			return getGlobalNioChannelFactory();
+		}
+
+		if (this.serverNioChannelFactory == null) {
+			this.serverNioChannelFactory = createNioChannelFactory(this
+					.getClass().getSimpleName(), conf.getServerIoWorkerCount());
+			logger.info("configuration <{}>={}",
+					ServerConfig.CONF_SERVER_IO_WORKER_COUNT,
+					conf.getServerIoWorkerCount());
+		}
+
+		return this.serverNioChannelFactory;
+	}
+
+	/**
+	 * 创建一个独占IO线程池的Netty框架NIO工厂
+	 * 
+	 * @param name
+	 *            IO线程名称前缀
+	 * @param workerCount
+	 *            IO工作线程数(小于等于0时使用CPU核数*2)
+	 * @return
+	 */
+	protected ChannelFactory createNioChannelFactory(String name,
+			int workerCount) {
+		if (workerCount <= 0) {
+			// Default to number of cores * 2
+			workerCount = Runtime.getRuntime().availableProcessors() * 2;
+		}
+
+		ExecutorService bossPool = Executors
+				.newCachedThreadPool(new BackgroundHelper.DefaultNamedThreadFactory(
+						name + "-io-boss-threads", false));
+		ExecutorService workerPool = Executors
+				.newCachedThreadPool(new BackgroundHelper.DefaultNamedThreadFactory(
+						name + "-io-worker-threads", false));
+
+		return new NioServerSocketChannelFactory(bossPool, workerPool,
+				workerCount);
+	}
+
 	@Override
 	public boolean isRunning() {
 		return (this.status.get() == SERVER_STATUS_RUNNING);
@@ -339,6 +508,27 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 		return allServiceChannels;
 	}
 
+	/**
+	 * @return 对外服务的所有会话
+	 */
+	public SessionRegistry getSessionRegistry() {
+		return sessionRegistry;
+	}
+
+	/**
+	 * @return 按命令名称汇总的消息处理统计
+	 */
+	public CommandStatistics getCommandStatistics() {
+		return commandStatistics;
+	}
+
+	/**
+	 * @return 连接数限制过滤层(null=不限制连接数)
+	 */
+	public ConnectionLimitChannelHandler getConnectionLimiter() {
+		return connectionLimiter;
+	}
+
 	/**
 	 * @return the allAdminChannels
 	 */
@@ -359,48 +549,294 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 			throw new NullPointerException("ioType is null");
 		}
 
-		if (this.allServiceChannels == null) {
-			this.allServiceChannels = new DefaultChannelGroup(this.getClass()
-					.getSimpleName() + ".service-group");
-		}
-
 		ServerBootstrap bootstrap = this.ioType2Bootstrap.get(ioType);
 		if (bootstrap != null)
 			return bootstrap; // 已经初始化了
 
+		bootstrap = createServiceBootStrap(createServiceChannelFactory(ioType),
+				null);
+
+		// bootstrap 不为null
+		this.ioType2Bootstrap.put(ioType, bootstrap);
+
+		return bootstrap;
+	}
+
+	/**
+	 * 创建指定IO类型的服务通道工厂
+	 * 
+	 * @param ioType
+	 *            服务IO类型
+	 * @return
+	 * @throws Exception
+	 */
+	private ChannelFactory createServiceChannelFactory(NettyIoType ioType)
+			throws Exception {
 		switch (ioType) {
 		case BLOCK_IO:
-			bootstrap = new ServerBootstrap(new OioServerSocketChannelFactory(
+			return new OioServerSocketChannelFactory(
 					NettyServer.getGlobalThreadPool(),
-					NettyServer.getGlobalThreadPool()));
-
-			// Options for a parent channel
-			bootstrap.setOption("reuseAddress", true);
-			bootstrap.setOption("child.trafficClass", 0x10);
-			break;
+					NettyServer.getGlobalThreadPool());
 
 		default:
-			bootstrap = new ServerBootstrap(getGlobalNioChannelFactory());
+			return getServiceNioChannelFactory();
+		}
+	}
 
-			// Options for a parent channel
-			bootstrap.setOption("reuseAddress", true);
-			bootstrap.setOption("child.trafficClass", 0x10);
-			break;
+	/**
+	 * 使用指定的通道工厂创建服务侦听实例
+	 * 
+	 * @param factory
+	 *            通道工厂
+	 * @param addrNode
+	 *            侦听地址配置节点(null=只使用服务器默认的Socket选项)
+	 * @return
+	 * @throws Exception
+	 */
+	private ServerBootstrap createServiceBootStrap(ChannelFactory factory,
+			ConfigNode addrNode) throws Exception {
+		if (this.allServiceChannels == null) {
+			this.allServiceChannels = new DefaultChannelGroup(this.getClass()
+					.getSimpleName() + ".service-group");
 		}
 
-		// Options for its children
-		bootstrap.setOption("child.tcpNoDelay", true);
-		bootstrap.setOption("child.receiveBufferSize", 32 * 1024);
-		bootstrap.setOption("child.sendBufferSize", 32 * 1024);
+		ServerBootstrap bootstrap = new ServerBootstrap(factory);
+		applySocketOptions(bootstrap, addrNode);
 
 		bootstrap.setPipelineFactory(createPipelineFactory(this.getConfig()));
 
-		// bootstrap 不为null
-		this.ioType2Bootstrap.put(ioType, bootstrap);
-
 		return bootstrap;
 	}
 
+	/**
+	 * 根据配置设置服务侦听实例的Socket选项, 同时作用于侦听通道和连接通道
+	 * 
+	 * @param bootstrap
+	 *            服务侦听实例
+	 * @param addrNode
+	 *            侦听地址配置节点(null=只使用服务器默认的Socket选项)
+	 * @throws Exception
+	 */
+	protected void applySocketOptions(ServerBootstrap bootstrap,
+			ConfigNode addrNode) throws Exception {
+		ServerConfig conf = this.getConfig();
+
+		boolean reuseAddress = parseBooleanOption(addrNode,
+				ServerConfig.SOCKET_OPTION_REUSE_ADDRESS,
+				conf.getSocketOption(addrNode,
+						ServerConfig.SOCKET_OPTION_REUSE_ADDRESS), true);
+		int backlog = (int) parseSizeOption(addrNode,
+				ServerConfig.SOCKET_OPTION_BACKLOG,
+				conf.getSocketOption(addrNode,
+						ServerConfig.SOCKET_OPTION_BACKLOG), 0);
+		int receiveBufferSize = (int) parseSizeOption(addrNode,
+				ServerConfig.SOCKET_OPTION_RECEIVE_BUFFER_SIZE,
+				conf.getSocketOption(addrNode,
+						ServerConfig.SOCKET_OPTION_RECEIVE_BUFFER_SIZE),
+				32 * 1024);
+		int sendBufferSize = (int) parseSizeOption(addrNode,
+				ServerConfig.SOCKET_OPTION_SEND_BUFFER_SIZE,
+				conf.getSocketOption(addrNode,
+						ServerConfig.SOCKET_OPTION_SEND_BUFFER_SIZE),
+				32 * 1024);
+		boolean tcpNoDelay = parseBooleanOption(addrNode,
+				ServerConfig.SOCKET_OPTION_TCP_NO_DELAY,
+				conf.getSocketOption(addrNode,
+						ServerConfig.SOCKET_OPTION_TCP_NO_DELAY), true);
+		String keepAlive = conf.getSocketOption(addrNode,
+				ServerConfig.SOCKET_OPTION_KEEP_ALIVE);
+		String soLinger = conf.getSocketOption(addrNode,
+				ServerConfig.SOCKET_OPTION_SO_LINGER);
+
+		// Options for a parent channel
+		bootstrap.setOption("reuseAddress", reuseAddress);
+		if (backlog > 0) {
+			bootstrap.setOption("backlog", backlog);
+		}
+		if (receiveBufferSize > 0) {
+			// 大于64K的接收窗口必须在侦听Socket上预先设置
+			bootstrap.setOption("receiveBufferSize", receiveBufferSize);
+		}
+		bootstrap.setOption("child.trafficClass", 0x10);
+
+		// Options for its children
+		bootstrap.setOption("child.reuseAddress", reuseAddress);
+		bootstrap.setOption("child.tcpNoDelay", tcpNoDelay);
+		if (receiveBufferSize > 0) {
+			bootstrap.setOption("child.receiveBufferSize", receiveBufferSize);
+		}
+		if (sendBufferSize > 0) {
+			bootstrap.setOption("child.sendBufferSize", sendBufferSize);
+		}
+		if (keepAlive != null) {
+			bootstrap.setOption("child.keepAlive",
+					parseBooleanOption(addrNode,
+							ServerConfig.SOCKET_OPTION_KEEP_ALIVE, keepAlive,
+							false));
+		}
+		if (soLinger != null) {
+			bootstrap.setOption("child.soLinger", (int) parseSizeOption(
+					addrNode, ServerConfig.SOCKET_OPTION_SO_LINGER, soLinger,
+					-1));
+		}
+
+		// 写缓存水位(只对非阻塞式网络IO有效)
+		int highWaterMark = (int) parseSizeOption(addrNode,
+				ServerConfig.BIND_ADDRESS_ATTRIBUTE_WRITE_BUFFER_HIGH_WATER_MARK,
+				conf.getWriteBufferHighWaterMark(addrNode), 0);
+		int lowWaterMark = (int) parseSizeOption(addrNode,
+				ServerConfig.BIND_ADDRESS_ATTRIBUTE_WRITE_BUFFER_LOW_WATER_MARK,
+				conf.getWriteBufferLowWaterMark(addrNode), 0);
+
+		// 低水位不能高于高水位(未配置的一方按Netty默认值比较), 否则Netty会在每个连接上修正并告警
+		int effectiveHigh = (highWaterMark > 0 ? highWaterMark
+				: DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK);
+		int effectiveLow = (lowWaterMark > 0 ? lowWaterMark
+				: DEFAULT_WRITE_BUFFER_LOW_WATER_MARK);
+		boolean clampLowWaterMark = (effectiveLow > effectiveHigh);
+		if (clampLowWaterMark) {
+			logger.warn(
+					"write buffer low water mark {} exceeds high water mark {}, use {} instead. address={}",
+					new Object[] { effectiveLow, effectiveHigh,
+							effectiveHigh >>> 1, addrNode });
+			lowWaterMark = effectiveHigh >>> 1;
+		}
+
+		if (highWaterMark > 0) {
+			bootstrap.setOption("child.writeBufferHighWaterMark",
+					highWaterMark);
+		}
+		if (lowWaterMark > 0 || clampLowWaterMark) {
+			bootstrap.setOption("child.writeBufferLowWaterMark", lowWaterMark);
+		}
+
+		// 读缓存大小预测(每个连接独立, 只对非阻塞式网络IO有效)
+		ReceiveBufferSizePredictorFactory predictorFactory = parseReadBufferSizeOption(
+				addrNode, conf.getReadBufferSize(addrNode));
+		if (predictorFactory != null) {
+			bootstrap.setOption("child.receiveBufferSizePredictorFactory",
+					predictorFactory);
+		}
+	}
+
+	/**
+	 * 解析读缓存大小选项值
+	 * 
+	 * @param addrNode
+	 *            侦听地址配置节点
+	 * @param value
+	 *            选项值, 格式: "最小,初始,最大"(自适应)或单个容量值(固定大小)
+	 * @return null=未配置或者格式错误, 使用Netty默认值
+	 */
+	private ReceiveBufferSizePredictorFactory parseReadBufferSizeOption(
+			ConfigNode addrNode, String value) {
+		if (value == null) {
+			return null;
+		}
+
+		String name = ServerConfig.BIND_ADDRESS_ATTRIBUTE_READ_BUFFER_SIZE;
+		String[] parts = value.split(",");
+		try {
+			if (parts.length == 1) {
+				int size = (int) parseSizeOption(addrNode, name,
+						parts[0].trim(), -1);
+				if (size > 0) {
+					return new FixedReceiveBufferSizePredictorFactory(size);
+				}
+			} else if (parts.length == 3) {
+				int min = (int) parseSizeOption(addrNode, name,
+						parts[0].trim(), -1);
+				int initial = (int) parseSizeOption(addrNode, name,
+						parts[1].trim(), -1);
+				int max = (int) parseSizeOption(addrNode, name,
+						parts[2].trim(), -1);
+				if (min > 0 && initial > 0 && max > 0) {
+					return new AdaptiveReceiveBufferSizePredictorFactory(min,
+							initial, max);
+				}
+			}
+		} catch (IllegalArgumentException ex) {
+			// 最小,初始,最大值的大小关系错误
+		}
+
+		logger.warn("ignore illegal option {}=\"{}\" of {}", new Object[] {
+				name, value, addrNode });
+		return null;
+	}
+
+	/**
+	 * 解析布尔类型的侦听地址选项值
+	 * 
+	 * @param addrNode
+	 *            侦听地址配置节点
+	 * @param name
+	 *            选项名称
+	 * @param value
+	 *            选项值
+	 * @param defaultValue
+	 *            选项不存在或者格式错误时的默认值
+	 * @return
+	 */
+	private boolean parseBooleanOption(ConfigNode addrNode, String name,
+			String value, boolean defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+
+		if ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value)
+				|| "on".equalsIgnoreCase(value)) {
+			return true;
+		} else if ("false".equalsIgnoreCase(value)
+				|| "no".equalsIgnoreCase(value) || "off".equalsIgnoreCase(value)) {
+			return false;
+		}
+
+		logger.warn("ignore illegal option {}=\"{}\" of {}", new Object[] {
+				name, value, addrNode });
+		return defaultValue;
+	}
+
+	/**
+	 * 解析容量类型的侦听地址选项值(允许使用容量单位后缀, 如: 64k)
+	 * 
+	 * @param addrNode
+	 *            侦听地址配置节点
+	 * @param name
+	 *            选项名称
+	 * @param value
+	 *            选项值
+	 * @param defaultValue
+	 *            选项不存在或者格式错误时的默认值
+	 * @return
+	 */
+	private long parseSizeOption(ConfigNode addrNode, String name,
+			String value, long defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+
+		try {
+			if (value.startsWith("-")) {
+				return Long.parseLong(value);
+			}
+			return ConfigNode.textToNumericByteSize(value);
+		} catch (RuntimeException ex) {
+			logger.warn("ignore illegal option {}=\"{}\" of {}",
+					new Object[] { name, value, addrNode });
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * 是否已经创建了对外服务的侦听实例
+	 * 
+	 * @return
+	 */
+	private boolean hasServiceBootStrap() {
+		return !this.ioType2Bootstrap.isEmpty()
+				|| !this.addressBootstraps.isEmpty();
+	}
+
 	@Override
 	public void prepare() throws Exception {
 		if (this.status.get() >= SERVER_STATUS_PREPARED) {
@@ -427,6 +863,42 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 		// 生成默认的服务器执行线程池
 		this.serverExeutor = createExecutor();
 
+		// IDLE检测定时器
+		int timerShards = conf.getServerIdleTimerShards();
+		if (timerShards > 0) {
+			this.idleTimerGroup = new IdleTimerGroup(this.getClass()
+					.getSimpleName(), timerShards,
+					Math.max(1, conf.getServerIdleTimerTickDuration()),
+					Math.max(1, conf.getServerIdleTimerWheelSize()));
+		} else {
+			this.idleTimerGroup = new IdleTimerGroup(idleTimer);
+		}
+
+		// 业务处理线程池饱和策略
+		int maxPending = conf.getServerSaturationMaxPending();
+		int maxWait = conf.getServerSaturationMaxWait();
+		if (maxPending > 0 || maxWait > 0) {
+			this.saturationPolicy = new ExecutorSaturationPolicy(
+					this.getExecutorStatistics(), maxPending, maxWait,
+					ServerConfig.SATURATION_ACTION_CLOSE.equalsIgnoreCase(conf
+							.getServerSaturationAction()) ? ExecutorSaturationPolicy.Action.CLOSE
+							: ExecutorSaturationPolicy.Action.REJECT);
+		} else {
+			this.saturationPolicy = null;
+		}
+
+		// 运行统计
+		this.metrics = new NettyServerMetrics();
+		this.metrics.setExecutorStatistics(this.getExecutorStatistics());
+		this.metrics.setIdleTimerGroup(this.idleTimerGroup);
+
+		// 连接数限制
+		if (ConnectionLimitChannelHandler.isLimitEnabled(conf)) {
+			this.connectionLimiter = new ConnectionLimitChannelHandler(conf);
+		} else {
+			this.connectionLimiter = null;
+		}
+
 		/*
 		 * 创建SSL上下文
 		 */
@@ -434,6 +906,8 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 
 		if (!this.onlyAdminAcceptor) {
 			this.ioType2Bootstrap.clear();
+			this.addressBootstraps.clear();
+			this.dedicatedIoServerChannels.clear();
 			this.allServiceChannels = null;
 		}
 
@@ -454,23 +928,57 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	protected ChannelPipelineFactory createPipelineFactory(ServerConfig conf)
 			throws Exception {
 
+		// 连接数限制Filter
+		final ConnectionLimitChannelHandler limitFilter = this.connectionLimiter;
 		// ssl端口探测Filter
 		final DetectSslChannelHandler detectFilter = new DetectSslChannelHandler(
 				NettyServer.this);
 		// 业务处理线程池Filter
 		final ChannelHandler executorFilter = this
 				.createExecutorFilter(serverExeutor);
+		if (executorFilter instanceof UpstreamEventExecutionHandler) {
+			((UpstreamEventExecutionHandler) executorFilter)
+					.setMetrics(this.metrics);
+			((UpstreamEventExecutionHandler) executorFilter)
+					.setInlineNonBlocking(conf.isServerInlineNonBlocking());
+			((UpstreamEventExecutionHandler) executorFilter)
+					.setSaturationPolicy(this.saturationPolicy);
+		}
+		// 运行统计Filter
+		final MetricsChannelHandler metricsFilter = new MetricsChannelHandler(
+				this.metrics);
+		// IDLE检测定时器
+		final IdleTimerGroup timerGroup = this.idleTimerGroup;
+		// 编解码处理器的帧数据缓存累积策略
+		final boolean compositeCumulation = ServerConfig.CODEC_CUMULATION_COMPOSITE
+				.equalsIgnoreCase(conf.getServerCodecCumulation());
+		final int maxComponents = conf.getServerCodecMaxComponents();
+		final boolean batchFrames = conf.isServerCodecBatchFrames();
+		final boolean aggregateWrites = conf.isServerWriteAggregation();
+		final int writeFlushThreshold = conf.getServerWriteFlushThreshold();
+		final int minShrinkCapacity = conf.getServerCodecMinShrinkCapacity();
 		// 业务处理器
 		final IdleableNettyChannelHandler businessHandler = createIoHandler();
+		businessHandler.setSuspendReadOnUnwritable(conf
+				.isServerWriteBackpressure());
 
 		return new ConfigableChannelPipelineFactory(conf) {
 			public ChannelPipeline getPipeline() {
 				ChannelPipeline pipeline = Channels.pipeline();
 
+				if (limitFilter != null) {
+					// 必须位于最前端, 尽早拒绝超限的连接
+					pipeline.addLast(NETTY_HANDLER_NAME_CONNECTION_LIMIT_FILTER,
+							limitFilter);
+				}
+
+				pipeline.addLast(NETTY_HANDLER_NAME_METRICS_FILTER,
+						metricsFilter);
+
 				pipeline.addLast(
 						NETTY_HANDLER_NAME_IDLE_TRIGGER_FILTER,
-						new IdleStateHandler(idleTimer, 0, 0, this.config
-								.getServerIdleTimeout()));
+						new IdleStateHandler(timerGroup.next(), 0, 0,
+								this.config.getServerIdleTimeout()));
 
 				pipeline.addLast(NETTY_HANDLER_NAME_DETECT_SSL_PORT_FILTER,
 						detectFilter);
@@ -478,6 +986,15 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 				// 处理字节流的Filter(在Netty的IO主线程中执行, 注意执行效率)
 				CodecStreamHandler codecFilter = createCodecFilter();
 				if (codecFilter != null) {
+					if (compositeCumulation) {
+						codecFilter
+								.setCumulationStrategy(CodecStreamHandler.CumulationStrategy.COMPOSITE);
+						codecFilter.setMaxCumulationComponents(maxComponents);
+					}
+					codecFilter.setBatchFrames(batchFrames);
+					codecFilter.setAggregateWrites(aggregateWrites);
+					codecFilter.setWriteFlushThreshold(writeFlushThreshold);
+					codecFilter.setMinShrinkCapacity(minShrinkCapacity);
 					pipeline.addLast(NETTY_HANDLER_NAME_CODEC_FILTER,
 							codecFilter);
 				}
@@ -510,25 +1027,199 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 
 		doStart();
 
-		logger.info("Server is running.");
+		logger.info("Server is running.");
+
+		// 设置启动标记
+		this.status.set(SERVER_STATUS_RUNNING);
+	}
+
+	@Override
+	public final synchronized void shutdown() {
+		if (this.isClosed()) {
+			// 已经被关闭
+			return;
+		}
+
+		logger.info("Server is Closing.");
+
+		int drainTimeout = 0;
+		try {
+			drainTimeout = this.getConfig().getServerShutdownDrainTimeout();
+		} catch (Exception ex) {
+			logger.warn("get server config failed:", ex);
+		}
+
+		if (drainTimeout > 0 || this.drainStatus != null) {
+			// 等待现有连接完成处理
+			DrainStatus ds = this.startDrain(drainTimeout * 1000L);
+			if (ds != null) {
+				ds.await();
+			}
+		}
+
+		doShutdown();
+		logger.info("Server is Closed.");
+
+		// 标记已经被关闭
+		this.status.set(SERVER_STATUS_CLOSED);
+	}
+
+	/**
+	 * 开始清退现有连接
+	 * <p>
+	 * 首先关闭所有服务侦听端口, 不再接受新的连接; 然后通过{@link ISessionHandler#connectionIdle()}
+	 * 逐个关闭已经空闲的连接, 正在处理中的连接将在空闲后被关闭; 超过最长等待时间后仍未关闭的连接将被强制关闭
+	 * <p>
+	 * 清退在后台线程中执行, 已经开始清退时直接返回当前的清退状态
+	 * 
+	 * @param timeoutMillis
+	 *            最长等待时间(单位:ms)
+	 * @return 清退状态(null=服务器尚未启动)
+	 */
+	public DrainStatus startDrain(long timeoutMillis) {
+		synchronized (this.status) {
+			if (this.drainStatus != null) {
+				return this.drainStatus;
+			}
+
+			if (this.status.get() != SERVER_STATUS_RUNNING) {
+				return null;
+			}
+
+			DrainStatus ds = new DrainStatus(Math.max(0, timeoutMillis));
+			this.drainStatus = ds;
+			this.startDrainThread(ds, null);
+			return ds;
+		}
+	}
+
+	/**
+	 * 启动后台线程执行连接清退
+	 * 
+	 * @param ds
+	 *            清退状态
+	 * @param serverChannels
+	 *            需要清退的侦听通道集合(null=清退全部侦听通道); 清退完成后释放这些侦听通道独占的IO线程池
+	 */
+	private void startDrainThread(final DrainStatus ds,
+			final Set<Channel> serverChannels) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					doDrain(ds, serverChannels);
+				} catch (Throwable th) {
+					logger.warn("drain connections failed", th);
+				} finally {
+					if (serverChannels != null) {
+						releaseAddressBootstraps(serverChannels);
+					}
+					ds.finish();
+				}
+			}
+		}, this.getClass().getSimpleName() + "-drain");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return 当前(或最近一次)连接清退的执行状态(null=未执行过清退)
+	 */
+	public DrainStatus getDrainStatus() {
+		return drainStatus;
+	}
+
+	/**
+	 * 执行连接清退
+	 * 
+	 * @param ds
+	 *            清退状态
+	 * @param serverChannels
+	 *            需要清退的侦听通道集合(null=清退全部侦听通道)
+	 * @throws InterruptedException
+	 */
+	private void doDrain(DrainStatus ds, Set<Channel> serverChannels)
+			throws InterruptedException {
+		ChannelGroup channels = this.allServiceChannels;
+		if (channels == null) {
+			return;
+		}
+
+		// 关闭侦听端口, 阻止新的连接产生
+		for (Channel channel : channels) {
+			if (channel.getParent() == null
+					&& (serverChannels == null || serverChannels
+							.contains(channel))) {
+				channel.unbind().awaitUninterruptibly(5 * 1000);
+				channel.close();
+			}
+		}
+		logger.info("Server stops accepting, begins to drain connections. timeout={}ms, listeners={}",
+				ds.getTimeoutMillis(), serverChannels == null ? "all"
+						: serverChannels);
+
+		List<Channel> drained = new ArrayList<Channel>();
+
+		// 已经通知过空闲的连接
+		Set<Integer> notified = new HashSet<Integer>();
+
+		while (true) {
+			int remaining = 0;
+			drained.clear();
+			for (final Channel channel : channels) {
+				if (channel.getParent() == null
+						|| (serverChannels != null && !serverChannels
+								.contains(channel.getParent()))) {
+					continue;
+				}
+
+				remaining++;
+				drained.add(channel);
+				if (notified.contains(channel.getId())
+						|| !NettyChannelHandler.isChannelQuiet(channel,
+								DRAIN_SWEEP_INTERVAL)) {
+					continue;
+				}
+
+				// 通过IDLE事件通知会话处理器自行结束会话
+				notified.add(channel.getId());
+				ds.idleNotified.incrementAndGet();
+				channel.getPipeline().execute(new Runnable() {
+					@Override
+					public void run() {
+						channel.getPipeline().sendUpstream(
+								new DefaultIdleStateEvent(channel,
+										IdleState.ALL_IDLE, System
+												.currentTimeMillis()));
+					}
+				});
+			}
+
+			ds.remainingSessions = remaining;
+			if (ds.initialSessions < 0) {
+				ds.initialSessions = remaining;
+			}
+
+			if (remaining == 0) {
+				logger.info("Server drained all connections. elapsed={}ms",
+						ds.getElapsedMillis());
+				return;
+			}
 
-		// 设置启动标记
-		this.status.set(SERVER_STATUS_RUNNING);
-	}
+			long wait = ds.getRemainingMillis();
+			if (wait <= 0) {
+				break;
+			}
 
-	@Override
-	public final synchronized void shutdown() {
-		if (this.isClosed()) {
-			// 已经被关闭
-			return;
+			Thread.sleep(Math.min(wait, DRAIN_SWEEP_INTERVAL));
 		}
 
-		logger.info("Server is Closing.");
-		doShutdown();
-		logger.info("Server is Closed.");
-
-		// 标记已经被关闭
-		this.status.set(SERVER_STATUS_CLOSED);
+		// 超时, 强制关闭剩余的连接
+		logger.warn("Server drain timeout, force close {} connection(s)",
+				ds.remainingSessions);
+		for (Channel channel : drained) {
+			channel.close();
+		}
 	}
 
 	/**
@@ -586,10 +1277,12 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 
 		if (this.ioType2Bootstrap != null) {
 
-			if (!this.ioType2Bootstrap.isEmpty()) {
+			if (this.hasServiceBootStrap()) {
 				throw new IOException("oops has already bind address?");
 			}
 
+			this.address2ServerChannel.clear();
+
 			/*
 			 * 打开侦听普通端口
 			 */
@@ -600,6 +1293,8 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 				for (ConfigNode cn : addrNodes) {
 					Channel channel = doBindAddress(cn);
 					if (channel != null) {
+						this.address2ServerChannel.put(
+								getBindAddressKey(cn, false), channel);
 						logger.info("Listened on: {}[actual={}]",
 								cn.toString(), channel.getLocalAddress());
 					}
@@ -615,6 +1310,8 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 				for (ConfigNode cn : sslAddrNodes) {
 					Channel channel = doBindAddress(cn);
 					if (channel != null) {
+						this.address2ServerChannel.put(
+								getBindAddressKey(cn, true), channel);
 						sslServerChannelSet.add(channel);
 						logger.info("SSL Listened on: {}[actual={}]",
 								cn.toString(), channel.getLocalAddress());
@@ -671,6 +1368,12 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 			logger.info("Admin Listened on: 127.0.0.1:" + adminPort);
 		}
 
+		// 注册运行统计的JMX对象
+		if (conf.isServerMetricsJmxEnabled()) {
+			this.registerMetricsMBean();
+		}
+		this.commandStatistics.setEnabled(conf.isCommandStatisticsEnabled());
+
 		// 打开配置变更监控
 		this.serverConfigDoc = conf.getConfiguration();
 		RefreshHelper.registerConfig(this.serverConfigDoc);
@@ -704,17 +1407,219 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 		if (addr == null)
 			return null;
 
-		ServerBootstrap bootstrap = prepareServiceBootStrap(ioType);
+		ServerBootstrap bootstrap;
+		boolean perAddress = true;
+		int workerCount = parseIntAttribute(addrNode,
+				ServerConfig.BIND_ADDRESS_ATTRIBUTE_IO_WORKER_COUNT, 0);
+		boolean dedicatedIo = (workerCount > 0 && ioType == NettyIoType.NON_BLOCK_IO);
+		if (dedicatedIo) {
+			// 该侦听地址独占IO线程池
+			bootstrap = createServiceBootStrap(createNioChannelFactory(this
+					.getClass().getSimpleName() + "-" + addr.getPort(),
+					workerCount), addrNode);
+		} else if (this.getConfig().hasCustomSocketOption(addrNode)) {
+			// 该侦听地址单独指定了Socket选项
+			bootstrap = createServiceBootStrap(
+					createServiceChannelFactory(ioType), addrNode);
+		} else {
+			bootstrap = prepareServiceBootStrap(ioType);
+			perAddress = false;
+		}
+
 		if (bootstrap == null) {
 			throw new IOException("create bootstrap failed. net_io_type="
 					+ ioType);
 		}
 
-		Channel channel = bootstrap.bind(addr);
+		Channel channel;
+		try {
+			channel = bootstrap.bind(addr);
+		} catch (Exception ex) {
+			if (dedicatedIo) {
+				bootstrap.releaseExternalResources();
+			}
+			throw ex;
+		}
+
+		if (perAddress) {
+			this.addressBootstraps.put(channel, bootstrap);
+			if (dedicatedIo) {
+				this.dedicatedIoServerChannels.add(channel);
+			}
+		}
 		this.allServiceChannels.add(channel);
 		return channel;
 	}
 
+	/**
+	 * 释放已经解除侦听的地址单独创建的ServerBootstrap
+	 * <p>
+	 * 只有独占IO线程池的bootstrap需要释放资源, 其他bootstrap与服务器共享通道工厂, 仅移除引用
+	 * 
+	 * @param serverChannels
+	 *            已经解除侦听且连接清退完成的侦听通道
+	 */
+	private void releaseAddressBootstraps(Set<Channel> serverChannels) {
+		for (Channel channel : serverChannels) {
+			ServerBootstrap bootstrap = this.addressBootstraps.remove(channel);
+			if (bootstrap != null
+					&& this.dedicatedIoServerChannels.remove(channel)) {
+				try {
+					bootstrap.releaseExternalResources();
+				} catch (Throwable th) {
+					logger.warn("release bootstrap failed: "
+							+ channel.getLocalAddress(), th);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 生成侦听地址标识
+	 * <p>
+	 * 地址值或任何属性发生变化时, 均视为不同的侦听地址
+	 * 
+	 * @param addrNode
+	 *            侦听地址配置节点
+	 * @param ssl
+	 *            是否为SSL侦听地址
+	 * @return
+	 */
+	private static String getBindAddressKey(ConfigNode addrNode, boolean ssl) {
+		return (ssl ? "ssl:" : "plain:") + addrNode.toString();
+	}
+
+	/**
+	 * 根据新的配置比对侦听地址, 绑定新增的地址, 解除已被删除的地址
+	 * <p>
+	 * 未发生变化的侦听地址及其已经建立的连接不受任何影响; 被删除地址上已经建立的连接将被清退
+	 * 
+	 * @param conf
+	 *            新的服务器配置
+	 */
+	protected synchronized void rebindAddresses(ServerConfig conf) {
+		if (this.status.get() != SERVER_STATUS_RUNNING
+				|| this.drainStatus != null || this.onlyAdminAcceptor) {
+			return;
+		}
+
+		// 新配置中的侦听地址
+		Map<String, ConfigNode> newAddrs = new LinkedHashMap<String, ConfigNode>();
+		Set<String> sslKeys = new HashSet<String>();
+		List<ConfigNode> addrNodes = conf.getServerBindAddressNodes();
+		if (addrNodes != null) {
+			for (ConfigNode cn : addrNodes) {
+				newAddrs.put(getBindAddressKey(cn, false), cn);
+			}
+		}
+		List<ConfigNode> sslAddrNodes = conf.getServerBindSslAddressNodes();
+		if (sslAddrNodes != null) {
+			for (ConfigNode cn : sslAddrNodes) {
+				String key = getBindAddressKey(cn, true);
+				newAddrs.put(key, cn);
+				sslKeys.add(key);
+			}
+		}
+
+		// 解除已被删除的侦听地址
+		Set<Channel> removed = new HashSet<Channel>();
+		Iterator<Entry<String, Channel>> it = this.address2ServerChannel
+				.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<String, Channel> entry = it.next();
+			if (!newAddrs.containsKey(entry.getKey())) {
+				removed.add(entry.getValue());
+				it.remove();
+				logger.info("Unbind removed address: {}[actual={}]",
+						entry.getKey(), entry.getValue().getLocalAddress());
+			}
+		}
+
+		if (!removed.isEmpty()) {
+			// 同步解除侦听, 保证相同端口的新侦听地址(如仅属性发生变化)可以立即绑定; 已经建立的连接在后台清退
+			for (Channel channel : removed) {
+				channel.unbind().awaitUninterruptibly(5 * 1000);
+				channel.close().awaitUninterruptibly(5 * 1000);
+			}
+
+			int timeout = conf.getServerShutdownDrainTimeout();
+			if (timeout <= 0) {
+				timeout = conf.getServerIdleTimeout();
+			}
+			this.startDrainThread(new DrainStatus(timeout * 1000L), removed);
+			this.sslServerChannelSet.removeAll(removed);
+		}
+
+		// 绑定新增的侦听地址
+		for (Entry<String, ConfigNode> entry : newAddrs.entrySet()) {
+			if (this.address2ServerChannel.containsKey(entry.getKey())) {
+				continue;
+			}
+
+			try {
+				Channel channel = doBindAddress(entry.getValue());
+				if (channel == null) {
+					continue;
+				}
+
+				this.address2ServerChannel.put(entry.getKey(), channel);
+				if (sslKeys.contains(entry.getKey())) {
+					sslServerChannelSet.add(channel);
+				}
+				logger.info("Bind new address: {}[actual={}]", entry.getKey(),
+						channel.getLocalAddress());
+			} catch (Exception ex) {
+				logger.warn("bind new address failed: " + entry.getKey(), ex);
+			}
+		}
+	}
+
+	/**
+	 * 解析配置节点的整型属性值
+	 * 
+	 * @param node
+	 *            配置节点
+	 * @param name
+	 *            属性名称
+	 * @param defaultValue
+	 *            属性不存在或者格式错误时的默认值
+	 * @return
+	 */
+	private int parseIntAttribute(ConfigNode node, String name,
+			int defaultValue) {
+		String value = node.getAttribute(name, null);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException ex) {
+			logger.warn("ignore illegal attribute {}=\"{}\" of {}",
+					new Object[] { name, value, node });
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * 注册运行统计的JMX对象
+	 */
+	private void registerMetricsMBean() {
+		try {
+			ObjectName name = new ObjectName(
+					"com.git.original.server:type=NettyServerMetrics,name="
+							+ ObjectName.quote(this.getClass().getSimpleName()));
+			MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+			if (mbs.isRegistered(name)) {
+				mbs.unregisterMBean(name);
+			}
+			mbs.registerMBean(this.metrics, name);
+			this.metricsMBeanName = name;
+		} catch (Exception ex) {
+			logger.warn("register metrics mbean failed", ex);
+		}
+	}
+
 	/**
 	 * 服务器具体的关闭操作
 	 */
@@ -724,6 +1629,16 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 			RefreshHelper.unregisterConfig(this.serverConfigDoc);
 		}
 
+		if (this.metricsMBeanName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+						this.metricsMBeanName);
+			} catch (Exception ex) {
+				// 忽略异常
+			}
+			this.metricsMBeanName = null;
+		}
+
 		// 首先关闭Channel服务器监听实例, 阻止新的连接或者消息产生
 		if (this.allServiceChannels != null) {
 			try {
@@ -741,6 +1656,20 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 			}
 
 			this.ioType2Bootstrap.clear();
+
+			// 关闭所有按侦听地址单独创建的bootstrap
+			for (ServerBootstrap bootstrap : this.addressBootstraps.values()) {
+				try {
+					bootstrap.releaseExternalResources();
+				} catch (Throwable th) {
+				}
+			}
+
+			this.addressBootstraps.clear();
+			this.dedicatedIoServerChannels.clear();
+			this.address2ServerChannel.clear();
+			// 已经随bootstrap一同释放
+			this.serverNioChannelFactory = null;
 		}
 
 		// 关闭管理端口监听实例
@@ -757,12 +1686,22 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 			}
 		}
 
+		// 停止服务独占的IDLE检测定时器
+		if (this.idleTimerGroup != null) {
+			this.idleTimerGroup.stop();
+		}
+
 		/*
 		 * 等待线程, 线程池正常关闭
 		 */
 		try {
 			// 首先发送线程池关闭信号
 			if (this.serverExeutor != null) {
+				if (this.drainStatus != null) {
+					// 连接已经清退, 等待线程池中剩余的事件(如连接断开)处理完成
+					this.serverExeutor.shutdown();
+					this.serverExeutor.awaitTermination(30, TimeUnit.SECONDS);
+				}
 				this.serverExeutor.shutdownNow();
 				this.serverExeutor.awaitTermination(30, TimeUnit.SECONDS);
 			}
@@ -774,20 +1713,59 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	/**
 	 * 创建默认线程池
 	 * <p>
-	 * OrderedMemoryAwareThreadPoolExecutor
+	 * 根据配置的调度策略创建:
+	 * <li>{@link ServerConfig#EXECUTOR_STRATEGY_ORDERED}: {@link OrderedChannelExecutor}
+	 * <li>{@link ServerConfig#EXECUTOR_STRATEGY_STRIPED}: {@link StripedChannelExecutor}
+	 * <li>{@link ServerConfig#EXECUTOR_STRATEGY_UNORDERED}: {@link UnorderedChannelExecutor}
+	 * <li>{@link ServerConfig#EXECUTOR_STRATEGY_VIRTUAL}: {@link VirtualThreadChannelExecutor}
+	 * (JDK不支持虚拟线程时使用{@link OrderedChannelExecutor})
 	 * 
 	 * @return
 	 * @throws Exception
 	 */
-	protected ThreadPoolExecutor createExecutor() throws Exception {
-		int threadCount = this.getConfig().getServerHandleThreadCount();
+	protected ExecutorService createExecutor() throws Exception {
+		ServerConfig conf = this.getConfig();
+		int threadCount = conf.getServerHandleThreadCount();
 		int corePoolSize = 1;
 		if (threadCount > 1) {
 			corePoolSize = threadCount / 2;
 		}
 
-		ThreadPoolExecutor executor = new OrderedMemoryAwareThreadPoolExecutor(
-				corePoolSize, 0, 0);
+		String strategy = conf.getServerExecutorStrategy();
+		ThreadFactory threadFactory = new BackgroundHelper.DefaultNamedThreadFactory(
+				this.getClass().getSimpleName() + "-handle-threads", false);
+
+		if (ServerConfig.EXECUTOR_STRATEGY_STRIPED.equalsIgnoreCase(strategy)) {
+			return new StripedChannelExecutor(Math.max(1, threadCount),
+					conf.getServerExecutorQueueCapacity(), threadFactory);
+		}
+
+		if (ServerConfig.EXECUTOR_STRATEGY_VIRTUAL.equalsIgnoreCase(strategy)) {
+			if (VirtualThreadChannelExecutor.isSupported()) {
+				return new VirtualThreadChannelExecutor();
+			}
+
+			logger.warn("virtual thread is not supported by jdk {}, use {}",
+					System.getProperty("java.version"),
+					ServerConfig.EXECUTOR_STRATEGY_ORDERED);
+			strategy = ServerConfig.EXECUTOR_STRATEGY_ORDERED;
+		}
+
+		ThreadPoolExecutor executor;
+		if (ServerConfig.EXECUTOR_STRATEGY_UNORDERED.equalsIgnoreCase(strategy)) {
+			executor = new UnorderedChannelExecutor(corePoolSize,
+					conf.getServerExecutorChannelMemoryLimit(),
+					conf.getServerExecutorTotalMemoryLimit(), threadFactory);
+		} else {
+			if (!ServerConfig.EXECUTOR_STRATEGY_ORDERED
+					.equalsIgnoreCase(strategy)) {
+				logger.warn("unknown executor strategy: {}, use {}", strategy,
+						ServerConfig.EXECUTOR_STRATEGY_ORDERED);
+			}
+			executor = new OrderedChannelExecutor(corePoolSize,
+					conf.getServerExecutorChannelMemoryLimit(),
+					conf.getServerExecutorTotalMemoryLimit(), threadFactory);
+		}
 		executor.setMaximumPoolSize(threadCount);
 
 		return executor;
@@ -801,9 +1779,52 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 			corePoolSize = threadCount / 2;
 		}
 
-		serverExeutor.setCorePoolSize(corePoolSize);
-		serverExeutor.setMaximumPoolSize(threadCount);
+		if (serverExeutor instanceof ThreadPoolExecutor) {
+			ThreadPoolExecutor executor = (ThreadPoolExecutor) serverExeutor;
+			if (threadCount < executor.getCorePoolSize()) {
+				executor.setCorePoolSize(corePoolSize);
+				executor.setMaximumPoolSize(threadCount);
+			} else {
+				executor.setMaximumPoolSize(threadCount);
+				executor.setCorePoolSize(corePoolSize);
+			}
+		} else if (serverExeutor instanceof StripedChannelExecutor
+				&& ((StripedChannelExecutor) serverExeutor).getLaneCount() != threadCount) {
+			logger.warn("striped executor thread count can not be changed without restart");
+		}
+
+		if (serverExeutor instanceof MemoryAwareThreadPoolExecutor) {
+			// 总内存上限在线程池开始工作后不允许修改
+			((MemoryAwareThreadPoolExecutor) serverExeutor)
+					.setMaxChannelMemorySize(config
+							.getServerExecutorChannelMemoryLimit());
+		}
+	}
+
+	/**
+	 * @return 服务器运行统计
+	 */
+	public NettyServerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return 业务处理线程池饱和策略(null=不拒绝)
+	 */
+	public ExecutorSaturationPolicy getSaturationPolicy() {
+		return saturationPolicy;
+	}
 
+	/**
+	 * 获取业务处理线程池的运行统计
+	 * 
+	 * @return null=当前线程池不支持运行统计
+	 */
+	public IExecutorStatistics getExecutorStatistics() {
+		if (serverExeutor instanceof IExecutorStatistics) {
+			return (IExecutorStatistics) serverExeutor;
+		}
+		return null;
 	}
 
 	/**
@@ -906,6 +1927,13 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 		if (config != null) {
 			config.loadFromConfigNode();
 			updateExecutor(config);
+			rebindAddresses(config);
+
+			if (this.connectionLimiter != null) {
+				this.connectionLimiter.updateConfig(config);
+			} else if (ConnectionLimitChannelHandler.isLimitEnabled(config)) {
+				logger.warn("connection limit can not be enabled without restart");
+			}
 		}
 
 	}
@@ -980,7 +2008,7 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 	 *            true=下一次数据发送请求忽略SSL加密;false=随后的所有发送请求都将进行SSL加密
 	 */
 	public final void startTLS(Channel channel, boolean disableEncryptOnce) {
-		if (this.ioType2Bootstrap == null || this.ioType2Bootstrap.isEmpty()) {
+		if (!this.hasServiceBootStrap()) {
 			logger.warn("please create client acceptor before call startTLS");
 			return;
 		}
@@ -1018,6 +2046,76 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 		return (handler != null);
 	}
 
+	/**
+	 * 为指定网络会话开启数据流压缩(如IMAP COMPRESS=DEFLATE)
+	 * <p>
+	 * 压缩过滤层位于SSL过滤层之后, 即先解密再解压, 先压缩再加密
+	 * 
+	 * @param channel
+	 *            网络通道
+	 * @param disableCompressOnce
+	 *            true=下一次数据发送请求不进行压缩;false=随后的所有发送请求都将进行压缩
+	 * @return true=已开启压缩; false=当前运行环境不支持
+	 */
+	public final boolean startCompression(Channel channel,
+			boolean disableCompressOnce) {
+		return this.startCompression(channel, Deflater.DEFAULT_COMPRESSION,
+				disableCompressOnce);
+	}
+
+	/**
+	 * 为指定网络会话开启数据流压缩(如IMAP COMPRESS=DEFLATE)
+	 * 
+	 * @param channel
+	 *            网络通道
+	 * @param level
+	 *            压缩级别(0-9, 或{@link Deflater#DEFAULT_COMPRESSION})
+	 * @param disableCompressOnce
+	 *            true=下一次数据发送请求不进行压缩;false=随后的所有发送请求都将进行压缩
+	 * @return true=已开启压缩; false=当前运行环境不支持
+	 */
+	public final boolean startCompression(Channel channel, int level,
+			boolean disableCompressOnce) {
+		if (!DeflateChannelHandler.isSupported()) {
+			logger.warn("deflate compression requires Java 7 or later");
+			return false;
+		}
+
+		ChannelPipeline pipeline = channel.getPipeline();
+		synchronized (pipeline) {
+			if (pipeline.get(NETTY_HANDLER_NAME_COMPRESS_FILTER) != null) {
+				// 已经开启了压缩, ignore
+				return true;
+			}
+
+			DeflateChannelHandler handler = new DeflateChannelHandler(level,
+					disableCompressOnce);
+			if (pipeline.get(NETTY_HANDLER_NAME_SSL_FILTER) != null) {
+				pipeline.addAfter(NETTY_HANDLER_NAME_SSL_FILTER,
+						NETTY_HANDLER_NAME_COMPRESS_FILTER, handler);
+			} else {
+				pipeline.addAfter(NETTY_HANDLER_NAME_DETECT_SSL_PORT_FILTER,
+						NETTY_HANDLER_NAME_COMPRESS_FILTER, handler);
+			}
+		}
+		logger.debug("compression start. channel_id={}", channel.getId());
+		return true;
+	}
+
+	/**
+	 * 当前通道是否已经开启了数据流压缩
+	 * 
+	 * @param channel
+	 * @return
+	 */
+	public final boolean isCompressionTriggered(Channel channel) {
+		if (channel == null || channel.getPipeline() == null) {
+			return false;
+		}
+
+		return (channel.getPipeline().get(NETTY_HANDLER_NAME_COMPRESS_FILTER) != null);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1088,6 +2186,148 @@ public abstract class NettyServer implements IService, ConfigUpdateWatcher {
 
 	// ----------------------------------------------------------------
 
+	/**
+	 * 连接清退的执行状态
+	 * 
+	 * @author linaoxiang
+	 */
+	public static class DrainStatus {
+		/**
+		 * 清退开始时间(单位:ms)
+		 */
+		private final long startTime;
+
+		/**
+		 * 最长等待时间(单位:ms)
+		 */
+		private final long timeoutMillis;
+
+		/**
+		 * 清退开始时的连接数(-1=尚未统计)
+		 */
+		private volatile int initialSessions = -1;
+
+		/**
+		 * 当前剩余的连接数
+		 */
+		private volatile int remainingSessions = 0;
+
+		/**
+		 * 已经通知空闲的连接数
+		 */
+		private final AtomicInteger idleNotified = new AtomicInteger(0);
+
+		/**
+		 * 清退完成时间(单位:ms; 0=尚未完成)
+		 */
+		private volatile long finishTime = 0;
+
+		/**
+		 * 清退完成信号
+		 */
+		private final CountDownLatch finishLatch = new CountDownLatch(1);
+
+		/**
+		 * 构造函数
+		 * 
+		 * @param timeoutMillis
+		 *            最长等待时间(单位:ms)
+		 */
+		DrainStatus(long timeoutMillis) {
+			this.startTime = System.currentTimeMillis();
+			this.timeoutMillis = timeoutMillis;
+		}
+
+		/**
+		 * 标记清退完成
+		 */
+		void finish() {
+			this.finishTime = System.currentTimeMillis();
+			this.finishLatch.countDown();
+		}
+
+		/**
+		 * 等待清退完成
+		 */
+		public void await() {
+			try {
+				this.finishLatch.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * @return 清退是否已经完成
+		 */
+		public boolean isFinished() {
+			return finishTime > 0;
+		}
+
+		/**
+		 * @return 最长等待时间(单位:ms)
+		 */
+		public long getTimeoutMillis() {
+			return timeoutMillis;
+		}
+
+		/**
+		 * @return 清退已经执行的时间(单位:ms)
+		 */
+		public long getElapsedMillis() {
+			long end = this.finishTime;
+			if (end <= 0) {
+				end = System.currentTimeMillis();
+			}
+			return end - this.startTime;
+		}
+
+		/**
+		 * @return 距离强制关闭剩余的时间(单位:ms)
+		 */
+		public long getRemainingMillis() {
+			return Math.max(0, this.timeoutMillis - this.getElapsedMillis());
+		}
+
+		/**
+		 * @return 清退开始时的连接数(-1=尚未统计)
+		 */
+		public int getInitialSessions() {
+			return initialSessions;
+		}
+
+		/**
+		 * @return 当前剩余的连接数
+		 */
+		public int getRemainingSessions() {
+			return remainingSessions;
+		}
+
+		/**
+		 * @return 已经通知空闲的连接数
+		 */
+		public int getIdleNotified() {
+			return idleNotified.get();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(this.isFinished() ? "finished" : "draining")
+					.append(": elapsed=").append(this.getElapsedMillis())
+					.append("ms, timeout=").append(this.timeoutMillis)
+					.append("ms, initial=").append(this.initialSessions)
+					.append(", remaining=").append(this.remainingSessions)
+					.append(", idle_notified=").append(this.getIdleNotified());
+			return sb.toString();
+		}
+	}
+
 	/**
 	 * timeout 检查器
 	 * @author linaoxiang
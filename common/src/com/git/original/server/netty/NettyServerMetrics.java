@@ -0,0 +1,304 @@
+package com.git.original.server.netty;
+
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.git.original.server.netty.UpstreamEventExecutionHandler.UpstreamEventType;
+
+/**
+ * 服务器运行统计
+ * <p>
+ * 记录统计数据时只有原子计数操作, 不产生任何对象分配
+ * 
+ * @author linaoxiang
+ */
+public class NettyServerMetrics implements NettyServerMetricsMBean {
+
+	/**
+	 * 计算每秒消息数的最短采样间隔(单位:ns)
+	 */
+	private static final long RATE_SAMPLE_INTERVAL = TimeUnit.SECONDS
+			.toNanos(1);
+
+	/**
+	 * 累计建立的连接数
+	 */
+	private final AtomicLong connectionsOpened = new AtomicLong(0);
+
+	/**
+	 * 累计关闭的连接数
+	 */
+	private final AtomicLong connectionsClosed = new AtomicLong(0);
+
+	/**
+	 * 累计读取的字节数
+	 */
+	private final AtomicLong bytesIn = new AtomicLong(0);
+
+	/**
+	 * 累计写出的字节数
+	 */
+	private final AtomicLong bytesOut = new AtomicLong(0);
+
+	/**
+	 * 累计解码完成的消息数
+	 */
+	private final AtomicLong framesDecoded = new AtomicLong(0);
+
+	/**
+	 * 事件在业务线程池中的排队耗时分布
+	 */
+	private final LatencyHistogram executorWaitTime = new LatencyHistogram();
+
+	/**
+	 * 事件类型 --> 处理耗时分布
+	 */
+	private final EnumMap<UpstreamEventType, LatencyHistogram> handlerLatencies = new EnumMap<UpstreamEventType, LatencyHistogram>(
+			UpstreamEventType.class);
+
+	/**
+	 * 业务线程池的运行统计(null=不支持统计)
+	 */
+	private volatile IExecutorStatistics executorStatistics;
+
+	/**
+	 * IDLE检测定时器组(null=不统计)
+	 */
+	private volatile IdleTimerGroup idleTimerGroup;
+
+	/**
+	 * 最近一次计算每秒消息数的时间(单位:ns)
+	 */
+	private long rateSampleTime = System.nanoTime();
+
+	/**
+	 * 最近一次计算每秒消息数时的累计消息数
+	 */
+	private long rateSampleFrames = 0;
+
+	/**
+	 * 最近一次计算得到的每秒消息数
+	 */
+	private double framesPerSecond = 0;
+
+	/**
+	 * 构造函数
+	 */
+	public NettyServerMetrics() {
+		for (UpstreamEventType type : UpstreamEventType.values()) {
+			handlerLatencies.put(type, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * 设置业务线程池的运行统计
+	 * 
+	 * @param executorStatistics
+	 *            null=不支持统计
+	 */
+	public void setExecutorStatistics(IExecutorStatistics executorStatistics) {
+		this.executorStatistics = executorStatistics;
+	}
+
+	/**
+	 * 设置IDLE检测定时器组
+	 * 
+	 * @param idleTimerGroup
+	 *            null=不统计
+	 */
+	public void setIdleTimerGroup(IdleTimerGroup idleTimerGroup) {
+		this.idleTimerGroup = idleTimerGroup;
+	}
+
+	/**
+	 * 记录连接建立
+	 */
+	public void connectionOpened() {
+		connectionsOpened.incrementAndGet();
+	}
+
+	/**
+	 * 记录连接关闭
+	 */
+	public void connectionClosed() {
+		connectionsClosed.incrementAndGet();
+	}
+
+	/**
+	 * 记录读取的字节数
+	 * 
+	 * @param bytes
+	 */
+	public void bytesRead(long bytes) {
+		bytesIn.addAndGet(bytes);
+	}
+
+	/**
+	 * 记录写出的字节数
+	 * 
+	 * @param bytes
+	 */
+	public void bytesWritten(long bytes) {
+		bytesOut.addAndGet(bytes);
+	}
+
+	/**
+	 * 记录一个解码完成的消息
+	 */
+	public void frameDecoded() {
+		framesDecoded.incrementAndGet();
+	}
+
+	/**
+	 * 记录事件在业务线程池中的排队耗时
+	 * 
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	public void executorWaited(long nanos) {
+		executorWaitTime.record(nanos);
+	}
+
+	/**
+	 * 记录事件的处理耗时
+	 * 
+	 * @param type
+	 *            事件类型
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	public void eventHandled(UpstreamEventType type, long nanos) {
+		handlerLatencies.get(type).record(nanos);
+	}
+
+	/**
+	 * 获取指定事件类型的处理耗时分布
+	 * 
+	 * @param type
+	 *            事件类型
+	 * @return
+	 */
+	public LatencyHistogram getHandlerLatency(UpstreamEventType type) {
+		return handlerLatencies.get(type);
+	}
+
+	@Override
+	public long getConnectionsOpened() {
+		return connectionsOpened.get();
+	}
+
+	@Override
+	public long getConnectionsClosed() {
+		return connectionsClosed.get();
+	}
+
+	@Override
+	public long getConnectionsActive() {
+		return connectionsOpened.get() - connectionsClosed.get();
+	}
+
+	@Override
+	public long getBytesIn() {
+		return bytesIn.get();
+	}
+
+	@Override
+	public long getBytesOut() {
+		return bytesOut.get();
+	}
+
+	@Override
+	public long getFramesDecoded() {
+		return framesDecoded.get();
+	}
+
+	@Override
+	public synchronized double getFramesPerSecond() {
+		long now = System.nanoTime();
+		long elapsed = now - rateSampleTime;
+		if (elapsed >= RATE_SAMPLE_INTERVAL) {
+			long frames = framesDecoded.get();
+			framesPerSecond = (frames - rateSampleFrames)
+					* (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+			rateSampleFrames = frames;
+			rateSampleTime = now;
+		}
+		return framesPerSecond;
+	}
+
+	@Override
+	public int getExecutorPendingEvents() {
+		IExecutorStatistics stat = this.executorStatistics;
+		return stat == null ? -1 : stat.getPendingEventCount();
+	}
+
+	@Override
+	public long getExecutorRejectedEvents() {
+		IExecutorStatistics stat = this.executorStatistics;
+		return stat == null ? -1 : stat.getRejectedEventCount();
+	}
+
+	@Override
+	public String getExecutorWaitTime() {
+		return executorWaitTime.toString();
+	}
+
+	@Override
+	public long getIdleTimerPendingTimeouts() {
+		IdleTimerGroup group = this.idleTimerGroup;
+		return group == null ? -1 : group.getPendingCount();
+	}
+
+	@Override
+	public String getIdleTimerLag() {
+		IdleTimerGroup group = this.idleTimerGroup;
+		return group == null ? "" : group.getLagHistogram().toString();
+	}
+
+	@Override
+	public String getHandlerLatency(String eventType) {
+		try {
+			return handlerLatencies.get(
+					UpstreamEventType.valueOf(eventType.trim().toUpperCase()))
+					.toString();
+		} catch (Exception ex) {
+			return "unknown event type: " + eventType;
+		}
+	}
+
+	@Override
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("connections: opened=").append(this.getConnectionsOpened())
+				.append(", closed=").append(this.getConnectionsClosed())
+				.append(", active=").append(this.getConnectionsActive())
+				.append("\r\n");
+		sb.append("bytes: in=").append(this.getBytesIn()).append(", out=")
+				.append(this.getBytesOut()).append("\r\n");
+		sb.append("frames: decoded=").append(this.getFramesDecoded())
+				.append(", per_second=")
+				.append(String.format("%.1f", this.getFramesPerSecond()))
+				.append("\r\n");
+		sb.append("executor: pending=").append(this.getExecutorPendingEvents())
+				.append(", rejected=").append(this.getExecutorRejectedEvents())
+				.append(", wait_time={").append(this.getExecutorWaitTime())
+				.append("}\r\n");
+		IdleTimerGroup group = this.idleTimerGroup;
+		if (group != null) {
+			sb.append("idle_timer: shards=").append(group.getShardCount())
+					.append(", pending=").append(group.getPendingCount())
+					.append(", lag={").append(group.getLagHistogram())
+					.append("}\r\n");
+		}
+		for (UpstreamEventType type : UpstreamEventType.values()) {
+			LatencyHistogram histogram = handlerLatencies.get(type);
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			sb.append("latency[").append(type.name().toLowerCase())
+					.append("]: ").append(histogram).append("\r\n");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,83 @@
+package com.git.original.server.netty;
+
+/**
+ * 服务器运行统计的JMX接口
+ * 
+ * @author linaoxiang
+ */
+public interface NettyServerMetricsMBean {
+	/**
+	 * @return 累计建立的连接数
+	 */
+	long getConnectionsOpened();
+
+	/**
+	 * @return 累计关闭的连接数
+	 */
+	long getConnectionsClosed();
+
+	/**
+	 * @return 当前活跃的连接数
+	 */
+	long getConnectionsActive();
+
+	/**
+	 * @return 累计读取的字节数
+	 */
+	long getBytesIn();
+
+	/**
+	 * @return 累计写出的字节数
+	 */
+	long getBytesOut();
+
+	/**
+	 * @return 累计解码完成的消息数
+	 */
+	long getFramesDecoded();
+
+	/**
+	 * @return 最近一段时间内每秒解码完成的消息数
+	 */
+	double getFramesPerSecond();
+
+	/**
+	 * @return 业务线程池中等待处理的事件数(-1=不支持统计)
+	 */
+	int getExecutorPendingEvents();
+
+	/**
+	 * @return 业务线程池被拒绝处理的事件总数(-1=不支持统计)
+	 */
+	long getExecutorRejectedEvents();
+
+	/**
+	 * @return 事件在业务线程池中的排队耗时分布
+	 */
+	String getExecutorWaitTime();
+
+	/**
+	 * @return IDLE检测定时器中待触发的任务数(-1=不支持统计)
+	 */
+	long getIdleTimerPendingTimeouts();
+
+	/**
+	 * @return IDLE检测定时器的任务触发延迟分布
+	 */
+	String getIdleTimerLag();
+
+	/**
+	 * 获取指定事件类型的处理耗时分布
+	 * 
+	 * @param eventType
+	 *            事件类型名称, 参见
+	 *            {@link UpstreamEventExecutionHandler.UpstreamEventType}
+	 * @return
+	 */
+	String getHandlerLatency(String eventType);
+
+	/**
+	 * @return 全部运行统计的文本描述
+	 */
+	String dump();
+}
@@ -0,0 +1,79 @@
+package com.git.original.server.netty;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+
+/**
+ * 按连接顺序处理事件的业务线程池
+ * <p>
+ * 在{@link OrderedMemoryAwareThreadPoolExecutor}的基础上增加运行统计
+ * 
+ * @author linaoxiang
+ */
+public class OrderedChannelExecutor extends
+		OrderedMemoryAwareThreadPoolExecutor implements IExecutorStatistics {
+
+	/**
+	 * 事件计数器
+	 */
+	private final ExecutorEventCounter counter = new ExecutorEventCounter();
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param corePoolSize
+	 *            核心线程数
+	 * @param maxChannelMemorySize
+	 *            单个连接等待处理的事件占用内存上限(0=不限制)
+	 * @param maxTotalMemorySize
+	 *            全部等待处理的事件占用内存上限(0=不限制)
+	 * @param threadFactory
+	 *            线程工厂
+	 */
+	public OrderedChannelExecutor(int corePoolSize, long maxChannelMemorySize,
+			long maxTotalMemorySize, ThreadFactory threadFactory) {
+		super(corePoolSize, maxChannelMemorySize, maxTotalMemorySize, 30,
+				TimeUnit.SECONDS, threadFactory);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		counter.onSubmit(command);
+		try {
+			super.execute(command);
+		} catch (RejectedExecutionException ex) {
+			counter.onRejected(command);
+			throw ex;
+		}
+	}
+
+	@Override
+	protected void beforeExecute(Thread t, Runnable r) {
+		super.beforeExecute(t, r);
+		counter.beforeExecute(r);
+	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		super.afterExecute(r, t);
+		counter.afterExecute(r);
+	}
+
+	@Override
+	public int getPendingEventCount() {
+		return counter.getPending();
+	}
+
+	@Override
+	public long getCompletedEventCount() {
+		return counter.getCompleted();
+	}
+
+	@Override
+	public long getRejectedEventCount() {
+		return counter.getRejected();
+	}
+}
@@ -0,0 +1,240 @@
+package com.git.original.server.netty;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jboss.netty.channel.Channel;
+
+import com.git.original.common.collections.ConcurrentLongHashMap;
+import com.git.original.server.ISessionHandler;
+
+/**
+ * 服务器当前所有会话的注册表
+ * <p>
+ * 以连接唯一ID(channelUid)为键, 支持O(1)的查找及清退, 不需要遍历所有连接通道
+ *
+ * @author linaoxiang
+ */
+public class SessionRegistry {
+
+	/**
+	 * 连接唯一ID --> 会话
+	 */
+	private final ConcurrentLongHashMap<Session> sessions = new ConcurrentLongHashMap<Session>(
+			1024, 64);
+
+	/**
+	 * 注册会话
+	 *
+	 * @param channelUid
+	 *            连接唯一ID
+	 * @param channel
+	 *            网络通道
+	 * @param handler
+	 *            会话处理器(允许为null)
+	 * @param statistics
+	 *            会话的运行统计(null=新建)
+	 * @return 会话
+	 */
+	public Session register(long channelUid, Channel channel,
+			ISessionHandler handler, SessionStatistics statistics) {
+		Session session = new Session(channelUid, channel, handler,
+				statistics == null ? new SessionStatistics() : statistics);
+		sessions.put(channelUid, session);
+		return session;
+	}
+
+	/**
+	 * 注销会话
+	 *
+	 * @param session
+	 */
+	public void unregister(Session session) {
+		if (session != null) {
+			sessions.remove(session.getChannelUid(), session);
+		}
+	}
+
+	/**
+	 * 查找会话
+	 *
+	 * @param channelUid
+	 *            连接唯一ID
+	 * @return null=不存在
+	 */
+	public Session get(long channelUid) {
+		return sessions.get(channelUid);
+	}
+
+	/**
+	 * 根据全局唯一会话ID查找会话
+	 *
+	 * @param uniqueSessionId
+	 *            参见{@link AbstractNettySessionHandler#getUniqueSessionId()}
+	 * @return null=不存在或格式错误
+	 */
+	public Session findBySessionId(String uniqueSessionId) {
+		long uid = AbstractNettySessionHandler
+				.parseChannelUid(uniqueSessionId);
+		if (uid < 0) {
+			return null;
+		}
+
+		Session session = sessions.get(uid);
+		if (session != null
+				&& session.getHandler() instanceof AbstractNettySessionHandler
+				&& !uniqueSessionId
+						.equals(((AbstractNettySessionHandler) session
+								.getHandler()).getUniqueSessionId())) {
+			// 连接ID相同但属于其他服务器或进程
+			return null;
+		}
+		return session;
+	}
+
+	/**
+	 * 关闭指定会话的连接
+	 *
+	 * @param channelUid
+	 *            连接唯一ID
+	 * @return false=会话不存在
+	 */
+	public boolean kill(long channelUid) {
+		Session session = sessions.get(channelUid);
+		if (session == null) {
+			return false;
+		}
+		session.getChannel().close();
+		return true;
+	}
+
+	/**
+	 * @return 当前会话数量
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * 获取当前所有会话的快照(按连接唯一ID排序)
+	 *
+	 * @return
+	 */
+	public List<Session> list() {
+		List<Session> list = sessions.values();
+		Collections.sort(list, new Comparator<Session>() {
+			@Override
+			public int compare(Session o1, Session o2) {
+				return (o1.channelUid < o2.channelUid ? -1
+						: (o1.channelUid == o2.channelUid ? 0 : 1));
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * 获取当前所有会话的快照(按消息处理的累计耗时倒序排列)
+	 *
+	 * @return
+	 */
+	public List<Session> listByHandlerTime() {
+		List<Session> list = sessions.values();
+		long[] nanos = new long[list.size()];
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i] = list.get(i).statistics.getHandlerNanos();
+		}
+		return SortSnapshot.sortDescending(list, nanos);
+	}
+
+	/**
+	 * 一个已注册的会话
+	 */
+	public static final class Session {
+		/**
+		 * 连接唯一ID
+		 */
+		private final long channelUid;
+
+		/**
+		 * 网络通道
+		 */
+		private final Channel channel;
+
+		/**
+		 * 会话处理器
+		 */
+		private final ISessionHandler handler;
+
+		/**
+		 * 连接建立的时间(单位:ms)
+		 */
+		private final long connectTime;
+
+		/**
+		 * 运行统计
+		 */
+		private final SessionStatistics statistics;
+
+		Session(long channelUid, Channel channel, ISessionHandler handler,
+				SessionStatistics statistics) {
+			this.channelUid = channelUid;
+			this.channel = channel;
+			this.handler = handler;
+			this.statistics = statistics;
+			this.connectTime = System.currentTimeMillis();
+		}
+
+		/**
+		 * @return 连接唯一ID
+		 */
+		public long getChannelUid() {
+			return channelUid;
+		}
+
+		/**
+		 * @return 网络通道
+		 */
+		public Channel getChannel() {
+			return channel;
+		}
+
+		/**
+		 * @return 会话处理器(可能为null)
+		 */
+		public ISessionHandler getHandler() {
+			return handler;
+		}
+
+		/**
+		 * @return 连接建立的时间(单位:ms)
+		 */
+		public long getConnectTime() {
+			return connectTime;
+		}
+
+		/**
+		 * @return 运行统计
+		 */
+		public SessionStatistics getStatistics() {
+			return statistics;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("uid=").append(channelUid);
+			if (handler instanceof AbstractNettySessionHandler) {
+				sb.append(", session_id=").append(
+						((AbstractNettySessionHandler) handler)
+								.getUniqueSessionId());
+			}
+			sb.append(", remote=").append(channel.getRemoteAddress())
+					.append(", local=").append(channel.getLocalAddress())
+					.append(", age=")
+					.append((System.currentTimeMillis() - connectTime) / 1000)
+					.append("s");
+			return sb.toString();
+		}
+	}
+}
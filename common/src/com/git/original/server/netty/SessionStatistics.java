@@ -0,0 +1,158 @@
+package com.git.original.server.netty;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 单个会话的运行统计
+ * <p>
+ * 只使用基本类型字段, 通过{@link AtomicLongFieldUpdater}原子更新: 无序的业务线程池或异步命令的完成线程
+ * 可能同时更新同一个会话的统计; 读取时允许存在少量延迟
+ *
+ * @author linaoxiang
+ */
+public class SessionStatistics {
+
+	private static final AtomicLongFieldUpdater<SessionStatistics> BYTES_READ = AtomicLongFieldUpdater
+			.newUpdater(SessionStatistics.class, "bytesRead");
+
+	private static final AtomicLongFieldUpdater<SessionStatistics> BYTES_WRITTEN = AtomicLongFieldUpdater
+			.newUpdater(SessionStatistics.class, "bytesWritten");
+
+	private static final AtomicLongFieldUpdater<SessionStatistics> MESSAGES = AtomicLongFieldUpdater
+			.newUpdater(SessionStatistics.class, "messages");
+
+	private static final AtomicLongFieldUpdater<SessionStatistics> HANDLER_NANOS = AtomicLongFieldUpdater
+			.newUpdater(SessionStatistics.class, "handlerNanos");
+
+	private static final AtomicLongFieldUpdater<SessionStatistics> MAX_HANDLER_NANOS = AtomicLongFieldUpdater
+			.newUpdater(SessionStatistics.class, "maxHandlerNanos");
+
+	private static final AtomicLongFieldUpdater<SessionStatistics> WAIT_NANOS = AtomicLongFieldUpdater
+			.newUpdater(SessionStatistics.class, "waitNanos");
+
+	/**
+	 * 读取的字节数
+	 */
+	private volatile long bytesRead;
+
+	/**
+	 * 写出的字节数
+	 */
+	private volatile long bytesWritten;
+
+	/**
+	 * 处理的消息数
+	 */
+	private volatile long messages;
+
+	/**
+	 * 消息处理的累计耗时(单位:ns)
+	 */
+	private volatile long handlerNanos;
+
+	/**
+	 * 单个消息处理的最长耗时(单位:ns)
+	 */
+	private volatile long maxHandlerNanos;
+
+	/**
+	 * 事件在业务线程池中的累计排队耗时(单位:ns)
+	 */
+	private volatile long waitNanos;
+
+	/**
+	 * 记录读取的字节数(网络I/O线程)
+	 *
+	 * @param bytes
+	 */
+	void bytesRead(long bytes) {
+		BYTES_READ.addAndGet(this, bytes);
+	}
+
+	/**
+	 * 记录写出的字节数(网络I/O线程)
+	 *
+	 * @param bytes
+	 */
+	void bytesWritten(long bytes) {
+		BYTES_WRITTEN.addAndGet(this, bytes);
+	}
+
+	/**
+	 * 记录一个消息的处理耗时
+	 *
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	void messageHandled(long nanos) {
+		MESSAGES.incrementAndGet(this);
+		HANDLER_NANOS.addAndGet(this, nanos);
+		for (;;) {
+			long max = this.maxHandlerNanos;
+			if (nanos <= max
+					|| MAX_HANDLER_NANOS.compareAndSet(this, max, nanos)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 记录一个事件在业务线程池中的排队耗时
+	 *
+	 * @param nanos
+	 *            耗时(单位:ns)
+	 */
+	void executorWaited(long nanos) {
+		WAIT_NANOS.addAndGet(this, nanos);
+	}
+
+	/**
+	 * @return 读取的字节数
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * @return 写出的字节数
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return 处理的消息数
+	 */
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return 消息处理的累计耗时(单位:ns)
+	 */
+	public long getHandlerNanos() {
+		return handlerNanos;
+	}
+
+	/**
+	 * @return 单个消息处理的最长耗时(单位:ns)
+	 */
+	public long getMaxHandlerNanos() {
+		return maxHandlerNanos;
+	}
+
+	/**
+	 * @return 事件在业务线程池中的累计排队耗时(单位:ns)
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "messages=" + messages + ", handle_time=" + handlerNanos
+				/ 1000000 + "ms, max_handle_time=" + maxHandlerNanos / 1000000
+				+ "ms, wait_time=" + waitNanos / 1000000 + "ms, read="
+				+ bytesRead + ", written=" + bytesWritten;
+	}
+}
@@ -0,0 +1,51 @@
+package com.git.original.server.netty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按统计值对快照排序
+ * <p>
+ * 统计值在排序期间可能被业务线程持续更新, 直接在比较器中读取会违反比较器的约定(TimSort可能抛出异常),
+ * 因此先复制统计值, 再按复制的值排序
+ *
+ * @author linaoxiang
+ */
+final class SortSnapshot {
+
+	private SortSnapshot() {
+	}
+
+	/**
+	 * 按统计值倒序排列
+	 *
+	 * @param items
+	 *            快照
+	 * @param values
+	 *            与快照一一对应的统计值(排序前复制)
+	 * @return 排序后的新列表
+	 */
+	static <T> List<T> sortDescending(List<T> items, final long[] values) {
+		int size = items.size();
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				long t1 = values[o1];
+				long t2 = values[o2];
+				return (t1 > t2 ? -1 : (t1 == t2 ? 0 : 1));
+			}
+		});
+
+		List<T> sorted = new ArrayList<T>(size);
+		for (Integer index : order) {
+			sorted.add(items.get(index));
+		}
+		return sorted;
+	}
+}
@@ -0,0 +1,108 @@
+package com.git.original.server.netty;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.util.EstimatableObjectWrapper;
+
+import com.git.original.common.buffer.Buffer;
+
+/**
+ * 流模式下解码产生的原始数据块消息
+ * <p>
+ * 由{@link TextLineMessageCodecHandler}在流模式下产生, 内容为未经任何转换的原始字节数据(不包含结束符),
+ * 同一段流数据的最后一个数据块{@link #isLast()}为true, 此后编解码处理器自动恢复为按行解码
+ * <p>
+ * 注意: 数据块直接引用接收缓存中的数据, 不可修改
+ *
+ * @author linaoxiang
+ */
+public class StreamChunk implements EstimatableObjectWrapper {
+
+	/**
+	 * 数据内容(对外只提供只读视图)
+	 */
+	private final ChannelBuffer content;
+
+	/**
+	 * 是否为本段流数据的最后一个数据块
+	 */
+	private final boolean last;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param content
+	 *            数据内容
+	 * @param last
+	 *            是否为本段流数据的最后一个数据块
+	 */
+	public StreamChunk(ChannelBuffer content, boolean last) {
+		if (content == null) {
+			throw new IllegalArgumentException("content");
+		}
+
+		this.content = content;
+		this.last = last;
+	}
+
+	/**
+	 * @return 数据内容的只读视图
+	 */
+	public ChannelBuffer getContent() {
+		return ChannelBuffers.unmodifiableBuffer(content);
+	}
+
+	/**
+	 * @return 是否为本段流数据的最后一个数据块
+	 */
+	public boolean isLast() {
+		return last;
+	}
+
+	/**
+	 * @return 数据长度
+	 */
+	public int length() {
+		return content.readableBytes();
+	}
+
+	/**
+	 * 将数据内容写入指定的缓存(内存或磁盘), 不改变本数据块的读取位置
+	 *
+	 * @param dst
+	 *            目标缓存
+	 * @return 写入的字节数
+	 */
+	public int writeTo(Buffer dst) {
+		int length = content.readableBytes();
+		if (length == 0) {
+			return 0;
+		}
+
+		if (content.hasArray()) {
+			dst.writeBytes(content.array(),
+					content.arrayOffset() + content.readerIndex(), length);
+		} else {
+			byte[] bytes = new byte[length];
+			content.getBytes(content.readerIndex(), bytes);
+			dst.writeBytes(bytes, 0, length);
+		}
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.jboss.netty.util.EstimatableObjectWrapper#unwrap()
+	 */
+	@Override
+	public Object unwrap() {
+		return content;
+	}
+
+	@Override
+	public String toString() {
+		return "StreamChunk[length=" + content.readableBytes() + ", last="
+				+ last + "]";
+	}
+}
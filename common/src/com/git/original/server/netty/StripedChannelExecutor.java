@@ -0,0 +1,220 @@
+package com.git.original.server.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.handler.execution.ChannelEventRunnable;
+
+/**
+ * 按连接ID散列到固定单线程队列的业务线程池
+ * <p>
+ * 同一连接的事件总是由同一线程按顺序处理; 各线程拥有独立的等待队列, 线程之间不存在任何共享锁, 因此没有
+ * {@link OrderedChannelExecutor}中每个事件都需要的连接级同步开销
+ * <p>
+ * 注意: 处理耗时较长的连接会阻塞散列到同一线程的其他连接
+ * 
+ * @author linaoxiang
+ */
+public class StripedChannelExecutor extends AbstractExecutorService implements
+		IExecutorStatistics {
+
+	/**
+	 * 单线程执行队列
+	 */
+	private final ThreadPoolExecutor[] lanes;
+
+	/**
+	 * 非通道事件任务的轮询序号
+	 */
+	private final AtomicInteger nextLane = new AtomicInteger(0);
+
+	/**
+	 * 事件计数器
+	 */
+	private final ExecutorEventCounter counter = new ExecutorEventCounter();
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param laneCount
+	 *            线程数(即执行队列数)
+	 * @param queueCapacity
+	 *            每个线程的等待队列容量(0=不限制)
+	 * @param threadFactory
+	 *            线程工厂
+	 */
+	public StripedChannelExecutor(int laneCount, int queueCapacity,
+			ThreadFactory threadFactory) {
+		if (laneCount <= 0) {
+			throw new IllegalArgumentException("laneCount: " + laneCount);
+		}
+
+		this.lanes = new ThreadPoolExecutor[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			BlockingQueue<Runnable> queue;
+			if (queueCapacity > 0) {
+				queue = new ArrayBlockingQueue<Runnable>(queueCapacity);
+			} else {
+				queue = new LinkedBlockingQueue<Runnable>();
+			}
+
+			ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 30,
+					TimeUnit.SECONDS, queue, threadFactory) {
+				@Override
+				protected void beforeExecute(Thread t, Runnable r) {
+					super.beforeExecute(t, r);
+					counter.beforeExecute(r);
+				}
+
+				@Override
+				protected void afterExecute(Runnable r, Throwable t) {
+					super.afterExecute(r, t);
+					counter.afterExecute(r);
+				}
+			};
+			// 空闲的执行队列不占用线程
+			lane.allowCoreThreadTimeOut(true);
+			this.lanes[i] = lane;
+		}
+	}
+
+	/**
+	 * @return 线程数(即执行队列数)
+	 */
+	public int getLaneCount() {
+		return lanes.length;
+	}
+
+	/**
+	 * 选择任务所属的执行队列
+	 * 
+	 * @param command
+	 *            任务
+	 * @return
+	 */
+	private ThreadPoolExecutor selectLane(Runnable command) {
+		int hash;
+		if (command instanceof ChannelEventRunnable) {
+			hash = ((ChannelEventRunnable) command).getEvent().getChannel()
+					.getId().intValue();
+		} else {
+			hash = nextLane.getAndIncrement();
+		}
+
+		return lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		counter.onSubmit(command);
+		try {
+			selectLane(command).execute(command);
+		} catch (RejectedExecutionException ex) {
+			counter.onRejected(command);
+			throw ex;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		for (ThreadPoolExecutor lane : lanes) {
+			lane.shutdown();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		List<Runnable> list = new ArrayList<Runnable>();
+		for (ThreadPoolExecutor lane : lanes) {
+			list.addAll(lane.shutdownNow());
+		}
+		return list;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		for (ThreadPoolExecutor lane : lanes) {
+			if (!lane.isShutdown()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		for (ThreadPoolExecutor lane : lanes) {
+			if (!lane.isTerminated()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (ThreadPoolExecutor lane : lanes) {
+			long remain = deadline - System.nanoTime();
+			if (!lane.awaitTermination(Math.max(0, remain),
+					TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int getPendingEventCount() {
+		return counter.getPending();
+	}
+
+	@Override
+	public long getCompletedEventCount() {
+		return counter.getCompleted();
+	}
+
+	@Override
+	public long getRejectedEventCount() {
+		return counter.getRejected();
+	}
+
+	@Override
+	public int getActiveCount() {
+		int count = 0;
+		for (ThreadPoolExecutor lane : lanes) {
+			count += lane.getActiveCount();
+		}
+		return count;
+	}
+
+	@Override
+	public int getPoolSize() {
+		int count = 0;
+		for (ThreadPoolExecutor lane : lanes) {
+			count += lane.getPoolSize();
+		}
+		return count;
+	}
+
+	/**
+	 * @return 各执行队列中等待处理的最大任务数
+	 */
+	public int getMaxLaneQueueSize() {
+		int max = 0;
+		for (ThreadPoolExecutor lane : lanes) {
+			max = Math.max(max, lane.getQueue().size());
+		}
+		return max;
+	}
+}
@@ -1,6 +1,7 @@
 package com.git.original.server.netty;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
@@ -10,12 +11,15 @@ import java.nio.charset.CoderResult;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
 import org.jboss.netty.handler.codec.frame.TooLongFrameException;
-import org.jboss.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.git.original.common.utils.CharsetUtil;
+
 /**
  * 文本行消息编解码器
  * <p>
@@ -40,6 +44,20 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 		FORCE_SPLIT
 	}
 
+	/**
+	 * 解码产生的消息类型枚举类
+	 * 
+	 * @author linaoxiang
+	 */
+	public enum FrameType {
+		/** 字符串{@link String} */
+		STRING,
+		/** 与接收缓存共享数据的只读字节缓存{@link ChannelBuffer}, 不复制数据 */
+		BUFFER,
+		/** 与接收缓存共享数据的字符序列{@link ChannelBufferCharSequence}, 不复制数据 */
+		CHAR_SEQUENCE
+	}
+
 	/** 行结束符CRLF: \r\n */
 	public static final String LINE_DELIMITER_CRLF = "\r\n";
 
@@ -52,6 +70,9 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 	/** 字符集 */
 	private final Charset charset;
 
+	/** 字符集是否存在快速编解码方式(见{@link CharsetUtil#hasFastPath(Charset)}) */
+	private final boolean fastCharset;
+
 	/** 行结束符按指定字符集编码后的字节数组 */
 	private final byte[] delimiter;
 
@@ -105,6 +126,47 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 	 */
 	protected boolean forceSplitted = false;
 
+	/**
+	 * 解码产生的消息类型
+	 */
+	private FrameType frameType = FrameType.STRING;
+
+	/**
+	 * 正在{@link #decode(ChannelHandlerContext, Channel, ChannelBuffer)}
+	 * 中解码字符串, 帧数据使用后立即丢弃, 可以直接引用接收缓存
+	 */
+	private boolean decodingString = false;
+
+	/**
+	 * 流模式下剩余待接收的字节数(-1=不处于按长度接收的流模式)
+	 */
+	private long streamRemaining = -1;
+
+	/**
+	 * 流模式下的数据结束符(null=不处于按结束符接收的流模式)
+	 */
+	private byte[] streamTerminator = null;
+
+	/**
+	 * 按结束符接收的流数据是否紧跟在行结束符之后, 且尚未检查流数据的起始部分
+	 */
+	private boolean streamAtLineStart = false;
+
+	/**
+	 * 线程内复用的编码缓存的容量上限(单位:字节)
+	 */
+	private static final int MAX_POOLED_ENCODE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * 线程内复用的编码缓存
+	 */
+	private static final ThreadLocal<ByteBuffer> encodeBuffers = new ThreadLocal<ByteBuffer>();
+
+	/**
+	 * 线程内复用的编码缓存(字符集存在快速编码方式时使用)
+	 */
+	private static final ThreadLocal<byte[]> encodeArrays = new ThreadLocal<byte[]>();
+
 	/** 日志记录 */
 	private static final Logger LOG = LoggerFactory
 			.getLogger(TextLineMessageCodecHandler.class);
@@ -157,6 +219,7 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 			throw new NullPointerException("charset is null");
 		}
 		this.charset = cs;
+		this.fastCharset = CharsetUtil.hasFastPath(cs);
 
 		if (lineDelimiter == null || lineDelimiter.isEmpty()) {
 			throw new NullPointerException("lineDelimiter is null or empty");
@@ -189,6 +252,7 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 			throw new NullPointerException("charset is null");
 		}
 		this.charset = cs;
+		this.fastCharset = CharsetUtil.hasFastPath(cs);
 
 		this.convertLF2CRLF = convertLF2CRLF;
 		if (this.convertLF2CRLF) {
@@ -233,16 +297,336 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 		return policy;
 	}
 
+	/**
+	 * @return 解码产生的消息类型
+	 */
+	public FrameType getFrameType() {
+		return frameType;
+	}
+
+	/**
+	 * 设置解码产生的消息类型
+	 * <p>
+	 * {@link FrameType#BUFFER}及{@link FrameType#CHAR_SEQUENCE}类型的消息直接引用接收缓存中的数据,
+	 * 每行数据可以减少两次复制及对象分配
+	 * 
+	 * @param frameType
+	 *            null=默认使用{@link FrameType#STRING}
+	 */
+	public void setFrameType(FrameType frameType) {
+		this.frameType = (frameType == null ? FrameType.STRING : frameType);
+	}
+
+	/**
+	 * 切换为流模式, 接收指定长度的原始数据
+	 * <p>
+	 * 后续数据不再按行解码, 而是以{@link StreamChunk}消息的形式逐块产生, 接收完毕后自动恢复为按行解码
+	 * <p>
+	 * 注意: 必须在IO线程中调用(如{@link #lineDecoded(Channel, ChannelBuffer)}中),
+	 * 其他线程请使用{@link #requestStreaming(Channel, long)}
+	 * 
+	 * @param length
+	 *            原始数据长度(字节), 必须大于0; 长度为0时没有数据块产生, 调用者应直接按空数据处理,
+	 *            不切换为流模式
+	 * @throws IllegalArgumentException
+	 *             长度不大于0
+	 */
+	public void startStreaming(long length) {
+		checkStreamLength(length);
+
+		this.resetLineState();
+		this.streamTerminator = null;
+		this.streamRemaining = length;
+	}
+
+	/**
+	 * 切换为流模式, 接收原始数据直至出现指定的结束符(如SMTP DATA的"\r\n.\r\n")
+	 * <p>
+	 * 结束符本身不包含在产生的{@link StreamChunk}中, 且被丢弃; 若结束符以行结束符开始,
+	 * 则流数据的起始部分与结束符去掉行结束符后的部分相同时也视为结束(如"DATA\r\n.\r\n"的空邮件)
+	 * <p>
+	 * 注意: 必须在IO线程中调用(如{@link #lineDecoded(Channel, ChannelBuffer)}中),
+	 * 其他线程请使用{@link #requestStreaming(Channel, byte[])}
+	 * 
+	 * @param terminator
+	 *            数据结束符
+	 */
+	public void startStreaming(byte[] terminator) {
+		if (terminator == null || terminator.length == 0) {
+			throw new IllegalArgumentException("terminator");
+		}
+
+		this.resetLineState();
+		this.streamRemaining = -1;
+		this.streamTerminator = terminator.clone();
+		this.streamAtLineStart = startsWith(terminator, this.delimiter)
+				&& terminator.length > this.delimiter.length;
+	}
+
+	/**
+	 * 结束流模式, 恢复为按行解码
+	 */
+	public void stopStreaming() {
+		this.streamRemaining = -1;
+		this.streamTerminator = null;
+		this.streamAtLineStart = false;
+	}
+
+	/**
+	 * @return 当前是否处于流模式
+	 */
+	public boolean isStreaming() {
+		return this.streamRemaining > 0 || this.streamTerminator != null;
+	}
+
+	/**
+	 * 在非IO线程中请求切换为流模式, 接收指定长度的原始数据
+	 * <p>
+	 * 切换操作在IO线程中执行, 在返回的future完成之前已经到达的数据仍然按行解码,
+	 * 因此只适用于对端等待服务端响应后才发送原始数据的场景(如在future完成后再发送SMTP的354响应)
+	 * 
+	 * @param channel
+	 *            网络通道
+	 * @param length
+	 *            原始数据长度(字节), 必须大于0
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             长度不大于0
+	 */
+	public static ChannelFuture requestStreaming(Channel channel,
+			final long length) {
+		checkStreamLength(length);
+		return requestStreaming(channel, length, null);
+	}
+
+	/**
+	 * 在非IO线程中请求切换为流模式, 接收原始数据直至出现指定的结束符
+	 * 
+	 * @param channel
+	 *            网络通道
+	 * @param terminator
+	 *            数据结束符
+	 * @return
+	 * @see #requestStreaming(Channel, long)
+	 */
+	public static ChannelFuture requestStreaming(Channel channel,
+			final byte[] terminator) {
+		if (terminator == null || terminator.length == 0) {
+			throw new IllegalArgumentException("terminator");
+		}
+		return requestStreaming(channel, -1, terminator);
+	}
+
+	private static void checkStreamLength(long length) {
+		if (length <= 0) {
+			throw new IllegalArgumentException("length: " + length);
+		}
+	}
+
+	private static ChannelFuture requestStreaming(Channel channel,
+			final long length, final byte[] terminator) {
+		final TextLineMessageCodecHandler codec = channel.getPipeline().get(
+				TextLineMessageCodecHandler.class);
+		if (codec == null) {
+			return Channels.failedFuture(channel, new IllegalStateException(
+					"no text line codec in pipeline"));
+		}
+
+		return channel.getPipeline().execute(new Runnable() {
+			@Override
+			public void run() {
+				if (terminator != null) {
+					codec.startStreaming(terminator);
+				} else {
+					codec.startStreaming(length);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 在IO线程中对解码得到的每一行数据进行检查
+	 * <p>
+	 * 子类可覆盖本方法, 在对端不等待服务端响应就发送原始数据时(如IMAP的LITERAL+)及时调用
+	 * {@link #startStreaming(long)}或{@link #startStreaming(byte[])}切换为流模式
+	 * 
+	 * @param channel
+	 *            网络通道
+	 * @param line
+	 *            行数据(只在本方法内有效, 不能被保存)
+	 */
+	protected void lineDecoded(Channel channel, ChannelBuffer line) {
+	}
+
 	@Override
 	public Object decode(ChannelHandlerContext ctx, Channel channel,
 			ChannelBuffer buffer) throws Exception {
 
-		ChannelBuffer frame = this.decodeFrameBuffer(channel, buffer);
+		if (this.isStreaming()) {
+			return this.decodeStream(buffer);
+		}
+
+		ChannelBuffer frame;
+		if (this.frameType == FrameType.STRING) {
+			this.decodingString = true;
+			try {
+				frame = this.decodeFrameBuffer(channel, buffer);
+			} finally {
+				this.decodingString = false;
+			}
+		} else {
+			frame = this.decodeFrameBuffer(channel, buffer);
+		}
+
 		if (frame == null) {
 			return null;
 		}
 
-		return frame.toString(charset);
+		this.lineDecoded(channel, frame);
+
+		switch (this.frameType) {
+		case BUFFER:
+			return frame;
+		case CHAR_SEQUENCE:
+			return new ChannelBufferCharSequence(frame, charset);
+		default:
+			if (this.fastCharset && frame.hasArray()) {
+				return CharsetUtil.decode(frame.array(), frame.arrayOffset()
+						+ frame.readerIndex(), frame.readableBytes(), charset);
+			}
+			return frame.toString(charset);
+		}
+	}
+
+	/**
+	 * 流模式下解码出一个原始数据块
+	 * 
+	 * @param buffer
+	 *            接收缓存
+	 * @return null=需要更多的数据
+	 */
+	private StreamChunk decodeStream(ChannelBuffer buffer) {
+		int readable = buffer.readableBytes();
+		if (readable == 0) {
+			return null;
+		}
+
+		if (this.streamTerminator == null) {
+			// 按长度接收
+			int length = (int) Math.min(readable, this.streamRemaining);
+			this.streamRemaining -= length;
+
+			boolean last = (this.streamRemaining == 0);
+			if (last) {
+				this.stopStreaming();
+			}
+			return new StreamChunk(this.readStreamSlice(buffer, length), last);
+		}
+
+		byte[] terminator = this.streamTerminator;
+		if (this.streamAtLineStart) {
+			// 比对去掉行结束符之后的结束符
+			int skip = this.delimiter.length;
+			int rest = terminator.length - skip;
+			for (int i = 0; i < rest; i++) {
+				if (i == readable) {
+					// 数据不足, 等待更多的数据
+					return null;
+				}
+				if (buffer.getByte(buffer.readerIndex() + i) != terminator[skip
+						+ i]) {
+					rest = -1;
+					break;
+				}
+			}
+
+			this.streamAtLineStart = false;
+			if (rest > 0) {
+				buffer.skipBytes(rest);
+				this.stopStreaming();
+				return new StreamChunk(ChannelBuffers.EMPTY_BUFFER, true);
+			}
+		}
+
+		int start = buffer.readerIndex();
+		int length = indexOf(buffer, terminator);
+		// 此前的数据一定不属于结束符
+		int detectedIndex = buffer.readerIndex();
+		buffer.readerIndex(start);
+
+		if (length >= 0) {
+			ChannelBuffer chunk = this.readStreamSlice(buffer, length);
+			buffer.skipBytes(terminator.length);
+			this.stopStreaming();
+			return new StreamChunk(chunk, true);
+		}
+
+		length = detectedIndex - start;
+		if (length == 0) {
+			// 剩余数据可能是结束符的起始部分, 等待更多的数据
+			return null;
+		}
+		return new StreamChunk(this.readStreamSlice(buffer, length), false);
+	}
+
+	/**
+	 * 以共享接收缓存的方式读取流数据
+	 */
+	private ChannelBuffer readStreamSlice(ChannelBuffer buffer, int length) {
+		if (length == 0) {
+			return ChannelBuffers.EMPTY_BUFFER;
+		}
+
+		this.markCumulationShared();
+		return buffer.readSlice(length);
+	}
+
+	/**
+	 * 重置按行解码的中间状态
+	 */
+	private void resetLineState() {
+		this.lastDetectedLength = 0;
+		this.discardingTooLongFrame = false;
+		this.tooLongFrameLength = 0;
+	}
+
+	/**
+	 * 判断字节数组是否以指定的前缀开始
+	 */
+	private static boolean startsWith(byte[] array, byte[] prefix) {
+		if (array.length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (array[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 从缓存中读取一帧数据
+	 * <p>
+	 * 消息类型为{@link FrameType#STRING}时, 仍然复制数据, 以保证子类通过
+	 * {@link #decodeFrameBuffer(Channel, ChannelBuffer)}获取的帧数据可以被长期持有
+	 * 
+	 * @param buffer
+	 *            接收缓存
+	 * @param length
+	 *            帧长度
+	 * @return
+	 */
+	private ChannelBuffer readFrame(ChannelBuffer buffer, int length) {
+		if (this.decodingString) {
+			// 帧数据将被立即转换为字符串
+			return buffer.readSlice(length);
+		} else if (this.frameType != FrameType.STRING) {
+			this.markCumulationShared();
+			return ChannelBuffers.unmodifiableBuffer(buffer.readSlice(length));
+		} else {
+			return buffer.readBytes(length);
+		}
 	}
 
 	/**
@@ -322,7 +706,7 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 			if (frameLength > this.maxLineLength) {
 				if (policy == OverLengthPolicy.FORCE_SPLIT) {
 					this.forceSplitted = true;
-					frame = buffer.readBytes(maxLineLength);
+					frame = readFrame(buffer, maxLineLength);
 					return frame;
 				} else {
 					// Discard read frame.
@@ -333,9 +717,9 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 			}
 
 			if (this.includeDelimiter) {
-				frame = buffer.readBytes(frameLength + delimLength);
+				frame = readFrame(buffer, frameLength + delimLength);
 			} else {
-				frame = buffer.readBytes(frameLength);
+				frame = readFrame(buffer, frameLength);
 				buffer.skipBytes(delimLength);
 			}
 
@@ -349,7 +733,7 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 
 					if (policy == OverLengthPolicy.FORCE_SPLIT) {
 						this.forceSplitted = true;
-						ChannelBuffer frame = buffer.readBytes(maxLineLength);
+						ChannelBuffer frame = readFrame(buffer, maxLineLength);
 						this.lastDetectedLength = 0;
 						return frame;
 					} else {
@@ -407,23 +791,35 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 	 * haystack中第一个符合needle串的起始偏移量(即needle[0]对应在haystack中的数据偏移量)
 	 * <li>如果haystack长度不足, 但结尾部分的数据吻合needle串的起始字节数据顺序, 则新的readerIndex =
 	 * haystack尾部吻合needle起始部分数据串的起始偏移量
+	 * <p>
+	 * 有底层字节数组的缓存使用{@link #indexOfArray(ChannelBuffer, byte[])}, 其他缓存使用
+	 * {@link ChannelBuffer#indexOf(int, int, byte)}查找needle首字节后再逐字节比对
 	 */
-	private static int indexOf(ChannelBuffer haystack, byte[] needle) {
-		for (int i = haystack.readerIndex(); i < haystack.writerIndex(); i++) {
-			int haystackIndex = i;
-			int needleIndex;
+	static int indexOf(ChannelBuffer haystack, byte[] needle) {
+		if (haystack.hasArray()) {
+			return indexOfArray(haystack, needle);
+		}
+
+		final int writerIndex = haystack.writerIndex();
+		final byte first = needle[0];
+
+		int i = haystack.readerIndex();
+		while (i < writerIndex) {
+			i = haystack.indexOf(i, writerIndex, first);
+			if (i < 0) {
+				break;
+			}
 
-			for (needleIndex = 0; needleIndex < needle.length; needleIndex++) {
+			int needleIndex = 1;
+			int haystackIndex = i + 1;
+			for (; needleIndex < needle.length; needleIndex++, haystackIndex++) {
+				if (haystackIndex == writerIndex) {
+					// 尾部数据吻合needle的起始部分
+					haystack.readerIndex(i);
+					return -1;
+				}
 				if (haystack.getByte(haystackIndex) != needle[needleIndex]) {
 					break;
-				} else {
-					haystackIndex++;
-					if (haystackIndex == haystack.writerIndex()
-							&& needleIndex != needle.length - 1) {
-
-						haystack.readerIndex(i);
-						return -1;
-					}
 				}
 			}
 
@@ -433,6 +829,81 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 				haystack.readerIndex(i);
 				return length;
 			}
+
+			i++;
+		}
+
+		haystack.readerIndex(writerIndex);
+		return -1;
+	}
+
+	/**
+	 * SWAR常量: 每个字节均为0x01
+	 */
+	private static final long SWAR_ONES = 0x0101010101010101L;
+
+	/**
+	 * SWAR常量: 每个字节均为0x80
+	 */
+	private static final long SWAR_HIGHS = 0x8080808080808080L;
+
+	/**
+	 * 直接扫描底层字节数组的{@link #indexOf(ChannelBuffer, byte[])}实现
+	 * <p>
+	 * 查找needle首字节时按8字节一组读取为long, 使用SWAR(寄存器内并行)方式同时比对8个字节, 避免逐字节的虚方法调用
+	 */
+	private static int indexOfArray(ChannelBuffer haystack, byte[] needle) {
+		final byte[] array = haystack.array();
+		final int offset = haystack.arrayOffset();
+		final int readerIndex = haystack.readerIndex();
+		final int end = offset + haystack.writerIndex();
+		final byte first = needle[0];
+
+		// 小端序读取时, 数组中靠前的字节位于long的低位
+		final ByteBuffer words = ByteBuffer.wrap(array).order(
+				ByteOrder.LITTLE_ENDIAN);
+		final long pattern = SWAR_ONES * (first & 0xFF);
+
+		int i = offset + readerIndex;
+		while (i < end) {
+			// 查找needle首字节
+			while (i + 8 <= end) {
+				long word = words.getLong(i) ^ pattern;
+				long found = (word - SWAR_ONES) & ~word & SWAR_HIGHS;
+				if (found != 0) {
+					i += Long.numberOfTrailingZeros(found) >>> 3;
+					break;
+				}
+				i += 8;
+			}
+			while (i < end && array[i] != first) {
+				i++;
+			}
+			if (i >= end) {
+				break;
+			}
+
+			// 比对needle的剩余部分
+			int needleIndex = 1;
+			int arrayIndex = i + 1;
+			for (; needleIndex < needle.length; needleIndex++, arrayIndex++) {
+				if (arrayIndex == end) {
+					// 尾部数据吻合needle的起始部分
+					haystack.readerIndex(i - offset);
+					return -1;
+				}
+				if (array[arrayIndex] != needle[needleIndex]) {
+					break;
+				}
+			}
+
+			if (needleIndex == needle.length) {
+				// Found the needle from the haystack!
+				haystack.readerIndex(i - offset);
+				return i - offset - readerIndex;
+			}
+
+			i++;
 		}
 
 		haystack.readerIndex(haystack.writerIndex());
@@ -450,10 +921,55 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 			throw new ClassCastException("msg is not instance of charsequence");
 		}
 
-		return ChannelBuffers.wrappedBuffer(encodeString(CharBuffer
-				.wrap((CharSequence) msg),
-				(this.convertLF2CRLF ? this.crlfBytes : this.delimiter),
-				this.charset));
+		CharSequence src = (CharSequence) msg;
+		byte[] additional = (this.convertLF2CRLF ? this.crlfBytes
+				: this.delimiter);
+
+		if (this.fastCharset) {
+			// 精确计算编码长度, 不经过CharsetEncoder
+			int length = CharsetUtil.encodedLength(src, charset)
+					+ additional.length;
+			byte[] dst;
+			if (this.isWriteBatching() && length <= MAX_POOLED_ENCODE_BUFFER_SIZE) {
+				// 合并写出时会被立即复制
+				dst = encodeArrays.get();
+				if (dst == null || dst.length < length) {
+					dst = new byte[Math.max(length, 256)];
+					encodeArrays.set(dst);
+				}
+			} else {
+				dst = new byte[length];
+			}
+
+			int pos = CharsetUtil.encode(src, charset, dst, 0);
+			System.arraycopy(additional, 0, dst, pos, additional.length);
+			return ChannelBuffers.wrappedBuffer(dst, 0, length);
+		}
+
+		final CharsetEncoder encoder = CharsetUtil.getEncoder(charset);
+		int maxLength = (int) ((double) src.length() * encoder
+				.maxBytesPerChar()) + additional.length;
+		if (maxLength > MAX_POOLED_ENCODE_BUFFER_SIZE) {
+			return ChannelBuffers.wrappedBuffer(encodeString(
+					CharBuffer.wrap(src), additional, this.charset));
+		}
+
+		// 使用线程内复用的编码缓存, 避免每行数据分配按最大字节数估算的缓存
+		ByteBuffer dst = encodeBuffers.get();
+		if (dst == null || dst.capacity() < maxLength) {
+			dst = ByteBuffer.allocate(Math.max(maxLength, 256));
+			encodeBuffers.set(dst);
+		}
+		dst.clear();
+		encodeString(encoder, CharBuffer.wrap(src), dst);
+		dst.put(additional);
+		dst.flip();
+
+		if (this.isWriteBatching()) {
+			// 合并写出时会被立即复制
+			return ChannelBuffers.wrappedBuffer(dst);
+		}
+		return ChannelBuffers.copiedBuffer(dst);
 	}
 
 	/**
@@ -469,9 +985,42 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 	 */
 	public static ByteBuffer encodeString(CharBuffer src, byte[] additional,
 			Charset charset) {
+		if (CharsetUtil.hasFastPath(charset)) {
+			// 精确计算编码长度
+			final ByteBuffer dst = ByteBuffer.allocate(CharsetUtil
+					.encodedLength(src, charset) + additional.length);
+			int pos = CharsetUtil.encode(src, charset, dst.array(),
+					dst.arrayOffset());
+			src.position(src.limit());
+			dst.position(pos);
+			dst.put(additional);
+			dst.flip();
+			return dst;
+		}
+
 		final CharsetEncoder encoder = CharsetUtil.getEncoder(charset);
 		final ByteBuffer dst = ByteBuffer.allocate((int) ((double) src
 				.remaining() * encoder.maxBytesPerChar()) + additional.length);
+		encodeString(encoder, src, dst);
+
+		dst.put(additional);
+		dst.flip();
+		return dst;
+	}
+
+	/**
+	 * 使用指定的编码器将字符串编码至目标缓存
+	 * 
+	 * @param encoder
+	 *            编码器
+	 * @param src
+	 *            字符串
+	 * @param dst
+	 *            目标缓存(剩余空间必须足够)
+	 */
+	private static void encodeString(CharsetEncoder encoder, CharBuffer src,
+			ByteBuffer dst) {
+		encoder.reset();
 		try {
 			CoderResult cr = encoder.encode(src, dst, true);
 			if (!cr.isUnderflow()) {
@@ -484,10 +1033,6 @@ public class TextLineMessageCodecHandler extends CodecStreamHandler {
 		} catch (CharacterCodingException x) {
 			throw new IllegalStateException(x);
 		}
-
-		dst.put(additional);
-		dst.flip();
-		return dst;
 	}
 
 }
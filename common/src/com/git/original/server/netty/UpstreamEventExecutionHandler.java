@@ -1,18 +1,28 @@
 package com.git.original.server.netty;
 
-import java.util.EnumSet;
+import java.util.Arrays;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelLocal;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.execution.ChannelUpstreamEventRunnable;
 import org.jboss.netty.handler.execution.ExecutionHandler;
 import org.jboss.netty.handler.timeout.IdleStateEvent;
 
+import com.git.original.server.INonBlockingMessage;
+
 /**
  * 扩展{@link ExecutionHandler}功能, 可以指定只对具体事件才会启用线程池处理
+ * <p>
+ * 开启内联处理后, {@link INonBlockingMessage}消息在该连接没有正在排队或处理中的事件时直接在I/O线程中处理,
+ * 省去线程切换的延迟
  * 
  * @author linaoxiang
  */
@@ -49,9 +59,37 @@ public class UpstreamEventExecutionHandler extends ExecutionHandler {
 			UpstreamEventType.CHANNEL_DISCONNECTED };
 
 	/**
-	 * 当前处理器允许启用线程池处理的事件类型集合
+	 * 事件类型序号 --> 是否启用线程池处理
+	 */
+	private final boolean[] offloadTable;
+
+	/**
+	 * 不属于{@link UpstreamEventType}的事件是否启用线程池处理
+	 */
+	private final boolean offloadOthers;
+
+	/**
+	 * 是否在I/O线程中直接处理非阻塞消息
+	 */
+	private volatile boolean inlineNonBlocking = false;
+
+	/**
+	 * 线程池饱和策略(null=不拒绝)
+	 */
+	private volatile ExecutorSaturationPolicy saturationPolicy;
+
+	/**
+	 * 通道 --> 已提交到线程池但尚未处理完成的事件数
+	 * <p>
+	 * 注意: 处理器上下文的附件已被{@link ExecutionHandler}用于暂停读取的标记, 不能使用
+	 */
+	private static final ChannelLocal<AtomicInteger> outstandingEvents = new ChannelLocal<AtomicInteger>(
+			true);
+
+	/**
+	 * 服务器运行统计(null=不统计)
 	 */
-	private final EnumSet<UpstreamEventType> eventTypeSet;
+	private volatile NettyServerMetrics metrics;
 
 	/**
 	 * 构造函数
@@ -66,73 +104,304 @@ public class UpstreamEventExecutionHandler extends ExecutionHandler {
 			UpstreamEventType... eventTypes) {
 		super(executor);
 
+		this.offloadTable = new boolean[UpstreamEventType.values().length];
 		if (eventTypes == null) {
-			this.eventTypeSet = null;
-		} else if (eventTypes.length == 0) {
-			this.eventTypeSet = EnumSet.of(DEFAULT_EVENT_TYPES[0],
-					DEFAULT_EVENT_TYPES);
+			// 所有事件都进入线程池处理
+			Arrays.fill(this.offloadTable, true);
+			this.offloadOthers = true;
 		} else {
-			this.eventTypeSet = EnumSet.of(eventTypes[0], eventTypes);
+			for (UpstreamEventType type : (eventTypes.length == 0 ? DEFAULT_EVENT_TYPES
+					: eventTypes)) {
+				this.offloadTable[type.ordinal()] = true;
+			}
+			this.offloadOthers = false;
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * @return 是否在I/O线程中直接处理非阻塞消息
+	 */
+	public boolean isInlineNonBlocking() {
+		return inlineNonBlocking;
+	}
+
+	/**
+	 * 设置是否在I/O线程中直接处理非阻塞消息
+	 * <p>
+	 * 注意: 必须在接收到任何连接之前设置
 	 * 
-	 * @see
-	 * org.jboss.netty.handler.execution.ExecutionHandler#handleUpstream(org
-	 * .jboss.netty.channel.ChannelHandlerContext,
-	 * org.jboss.netty.channel.ChannelEvent)
+	 * @param inline
+	 * @see INonBlockingMessage
 	 */
-	@Override
-	public void handleUpstream(ChannelHandlerContext context, ChannelEvent e)
-			throws Exception {
+	public void setInlineNonBlocking(boolean inline) {
+		this.inlineNonBlocking = inline;
+	}
 
-		if (eventTypeSet == null) { // 所有事件都进入线程池处理
-			super.handleUpstream(context, e);
-			return;
-		}
+	/**
+	 * @return 线程池饱和策略(null=不拒绝)
+	 */
+	public ExecutorSaturationPolicy getSaturationPolicy() {
+		return saturationPolicy;
+	}
 
-		boolean matched = false;
+	/**
+	 * 设置线程池饱和策略
+	 * <p>
+	 * 注意: 必须在接收到任何连接之前设置
+	 * 
+	 * @param policy
+	 *            null=不拒绝
+	 */
+	public void setSaturationPolicy(ExecutorSaturationPolicy policy) {
+		this.saturationPolicy = policy;
+	}
 
+	/**
+	 * @return 服务器运行统计(null=不统计)
+	 */
+	public NettyServerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * 设置服务器运行统计
+	 * 
+	 * @param metrics
+	 *            null=不统计
+	 */
+	public void setMetrics(NettyServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * 获取事件对应的事件类型
+	 * 
+	 * @param e
+	 *            事件
+	 * @return null=不属于可使用线程池处理的事件类型
+	 */
+	public static UpstreamEventType getEventType(ChannelEvent e) {
 		if (e instanceof MessageEvent) {
-			matched = eventTypeSet.contains(UpstreamEventType.MESSAGE_RECEIVED);
+			return UpstreamEventType.MESSAGE_RECEIVED;
 		} else if (e instanceof IdleStateEvent) {
-			matched = eventTypeSet.contains(UpstreamEventType.CHANNEL_IDLE);
+			return UpstreamEventType.CHANNEL_IDLE;
 		} else if (e instanceof ChannelStateEvent) {
 			ChannelStateEvent evt = (ChannelStateEvent) e;
 			switch (evt.getState()) {
 			case OPEN:
 				if (Boolean.TRUE.equals(evt.getValue())) {
-					matched = eventTypeSet
-							.contains(UpstreamEventType.CHANNEL_OPENED);
+					return UpstreamEventType.CHANNEL_OPENED;
 				} else {
-					matched = eventTypeSet
-							.contains(UpstreamEventType.CHANNEL_CLOSED);
+					return UpstreamEventType.CHANNEL_CLOSED;
 				}
-				break;
 			case CONNECTED:
 				if (evt.getValue() != null) {
-					matched = eventTypeSet
-							.contains(UpstreamEventType.CHANNEL_CONNECTED);
+					return UpstreamEventType.CHANNEL_CONNECTED;
 				} else {
-					matched = eventTypeSet
-							.contains(UpstreamEventType.CHANNEL_DISCONNECTED);
+					return UpstreamEventType.CHANNEL_DISCONNECTED;
 				}
-				break;
+			default:
+				return null;
 			}
 		} else if (e instanceof ExceptionEvent) {
-			matched = eventTypeSet.contains(UpstreamEventType.EXCEPTION_CAUGHT);
+			return UpstreamEventType.EXCEPTION_CAUGHT;
+		}
+
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.jboss.netty.handler.execution.ExecutionHandler#handleUpstream(org
+	 * .jboss.netty.channel.ChannelHandlerContext,
+	 * org.jboss.netty.channel.ChannelEvent)
+	 */
+	@Override
+	public void handleUpstream(ChannelHandlerContext context, ChannelEvent e)
+			throws Exception {
+		UpstreamEventType type = getEventType(e);
+		NettyServerMetrics m = this.metrics;
+		if (m != null && type == UpstreamEventType.MESSAGE_RECEIVED) {
+			m.frameDecoded();
+		}
+
+		boolean matched = (type == null ? offloadOthers
+				: offloadTable[type.ordinal()]);
+
+		AtomicInteger outstanding = null;
+		ExecutorSaturationPolicy policy = this.saturationPolicy;
+		if (matched && (this.inlineNonBlocking || policy != null)) {
+			outstanding = outstandingEvents(context);
+			if (type == UpstreamEventType.MESSAGE_RECEIVED) {
+				if (this.inlineNonBlocking && outstanding.get() == 0
+						&& isNonBlocking(((MessageEvent) e).getMessage())) {
+					// 没有排队中的事件, 内联处理不会改变事件顺序
+					matched = false;
+				} else if (policy != null && policy.isSaturated()) {
+					// 线程池饱和: 在I/O线程中直接拒绝, 不再排队
+					policy.reject(context, (MessageEvent) e,
+							outstanding.get() == 0);
+					return;
+				}
+			}
 		}
 
 		if (matched) {
 			// 启用线程池
-			super.handleUpstream(context, e);
-		} else {
+			if (outstanding == null && (m == null || type == null)) {
+				super.handleUpstream(context, e);
+			} else {
+				if (outstanding != null) {
+					outstanding.incrementAndGet();
+				}
+				try {
+					getExecutor().execute(
+							new MeasuredUpstreamEventRunnable(context, e,
+									getExecutor(), type, m, outstanding,
+									policy));
+				} catch (RejectedExecutionException ex) {
+					if (outstanding != null) {
+						outstanding.decrementAndGet();
+					}
+					throw ex;
+				}
+			}
+		} else if (m == null || type == null) {
 			// 不使用线程池
 			context.sendUpstream(e);
+		} else {
+			// 不使用线程池
+			long start = System.nanoTime();
+			try {
+				context.sendUpstream(e);
+			} finally {
+				m.eventHandled(type, System.nanoTime() - start);
+			}
 		}
+	}
 
+	/**
+	 * 判断消息是否可以在I/O线程中直接处理
+	 * 
+	 * @param message
+	 *            业务消息
+	 * @return
+	 */
+	protected boolean isNonBlocking(Object message) {
+		if (message instanceof INonBlockingMessage) {
+			return true;
+		}
+
+		if (message instanceof FrameBatch) {
+			// 批量消息中的所有帧都必须是非阻塞的
+			for (Object frame : (FrameBatch) message) {
+				if (!(frame instanceof INonBlockingMessage)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 获取连接的未完成事件计数器
+	 * 
+	 * @param context
+	 * @return
+	 */
+	private static AtomicInteger outstandingEvents(ChannelHandlerContext context) {
+		return outstandingEvents(context.getChannel());
+	}
+
+	/**
+	 * 获取连接的未完成事件计数器
+	 * <p>
+	 * 异步命令未完成期间, 会话处理器也会增加计数, 避免后续消息被内联处理或者以协议方式拒绝而打乱响应顺序
+	 * 
+	 * @param channel
+	 * @return
+	 */
+	static AtomicInteger outstandingEvents(Channel channel) {
+		AtomicInteger counter = outstandingEvents.get(channel);
+		if (counter == null) {
+			counter = new AtomicInteger(0);
+			AtomicInteger old = outstandingEvents.setIfAbsent(channel, counter);
+			if (old != null) {
+				counter = old;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * 统计排队及处理耗时的事件任务
+	 */
+	private static class MeasuredUpstreamEventRunnable extends
+			ChannelUpstreamEventRunnable {
+		/**
+		 * 事件类型(null=不属于{@link UpstreamEventType})
+		 */
+		private final UpstreamEventType type;
+
+		/**
+		 * 服务器运行统计(null=不统计)
+		 */
+		private final NettyServerMetrics metrics;
+
+		/**
+		 * 所属连接的未完成事件计数器(null=不计数)
+		 */
+		private final AtomicInteger outstanding;
+
+		/**
+		 * 线程池饱和策略(null=不记录排队耗时)
+		 */
+		private final ExecutorSaturationPolicy policy;
+
+		/**
+		 * 任务创建时间(单位:ns)
+		 */
+		private final long createTime = System.nanoTime();
+
+		MeasuredUpstreamEventRunnable(ChannelHandlerContext ctx,
+				ChannelEvent e, Executor executor, UpstreamEventType type,
+				NettyServerMetrics metrics, AtomicInteger outstanding,
+				ExecutorSaturationPolicy policy) {
+			super(ctx, e, executor);
+			this.type = type;
+			this.metrics = metrics;
+			this.outstanding = outstanding;
+			this.policy = policy;
+		}
+
+		@Override
+		protected void doRun() {
+			long start = System.nanoTime();
+			if (metrics != null) {
+				metrics.executorWaited(start - createTime);
+			}
+			if (policy != null) {
+				policy.recordWait(start - createTime);
+			}
+			SessionStatistics stat = MetricsChannelHandler
+					.getSessionStatistics(ctx.getPipeline());
+			if (stat != null) {
+				stat.executorWaited(start - createTime);
+			}
+			try {
+				super.doRun();
+			} finally {
+				if (outstanding != null) {
+					outstanding.decrementAndGet();
+				}
+				if (metrics != null && type != null) {
+					metrics.eventHandled(type, System.nanoTime() - start);
+				}
+			}
+		}
 	}
 
 }
@@ -0,0 +1,403 @@
+package com.git.original.server.netty;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.handler.execution.ChannelEventRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 使用虚拟线程处理事件的业务线程池
+ * <p>
+ * 每个连接拥有独立的串行执行队列, 有事件等待处理时为该连接启动一个虚拟线程, 队列处理完毕后线程自动结束;
+ * 因此同一连接的事件按顺序处理, 而会话处理器中的阻塞调用(如数据库,存储访问)只会占用虚拟线程, 不会耗尽平台线程
+ * <p>
+ * 只能在支持虚拟线程的JDK上使用, 参见{@link #isSupported()}
+ * 
+ * @author linaoxiang
+ */
+public class VirtualThreadChannelExecutor extends AbstractExecutorService
+		implements IExecutorStatistics {
+
+	/**
+	 * 虚拟线程工厂(null=当前JDK不支持虚拟线程)
+	 */
+	private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory("netty-virtual-handle-");
+
+	/**
+	 * 通道 --> 串行执行队列 映射表
+	 * <p>
+	 * 通道关闭且队列中的任务全部执行完毕后移除, 参见{@link SerialQueue#releaseIfClosed()}
+	 */
+	private final ConcurrentHashMap<Channel, SerialQueue> channel2Queue = new ConcurrentHashMap<Channel, SerialQueue>();
+
+	/**
+	 * 当前正在运行的虚拟线程数
+	 */
+	private final AtomicInteger runningCount = new AtomicInteger(0);
+
+	/**
+	 * 当前正在处理事件的虚拟线程数
+	 */
+	private final AtomicInteger activeCount = new AtomicInteger(0);
+
+	/**
+	 * 事件计数器
+	 */
+	private final ExecutorEventCounter counter = new ExecutorEventCounter();
+
+	/**
+	 * 线程池关闭标记
+	 */
+	private volatile boolean shutdown = false;
+
+	/**
+	 * 用于等待线程池终止
+	 */
+	private final Object terminationLock = new Object();
+
+	/** 日志记录 */
+	private static final Logger LOG = LoggerFactory
+			.getLogger(VirtualThreadChannelExecutor.class);
+
+	/**
+	 * 构造函数
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             当前JDK不支持虚拟线程
+	 */
+	public VirtualThreadChannelExecutor() {
+		if (VIRTUAL_THREAD_FACTORY == null) {
+			throw new UnsupportedOperationException(
+					"virtual thread is not supported by current jdk: "
+							+ System.getProperty("java.version"));
+		}
+	}
+
+	/**
+	 * 当前JDK是否支持虚拟线程
+	 * 
+	 * @return
+	 */
+	public static boolean isSupported() {
+		return VIRTUAL_THREAD_FACTORY != null;
+	}
+
+	/**
+	 * 通过反射创建虚拟线程工厂
+	 * <p>
+	 * 等价于: Thread.ofVirtual().name(prefix, 0).factory()
+	 * 
+	 * @param prefix
+	 *            线程名称前缀
+	 * @return null=当前JDK不支持虚拟线程
+	 */
+	private static ThreadFactory createVirtualThreadFactory(String prefix) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class)
+					.invoke(builder, prefix, 0L);
+			Method factory = builderClass.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (Throwable th) {
+			// 当前JDK不支持虚拟线程
+			return null;
+		}
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (command == null) {
+			throw new NullPointerException("command");
+		}
+
+		counter.onSubmit(command);
+		if (this.shutdown) {
+			counter.onRejected(command);
+			throw new RejectedExecutionException("executor is shutdown");
+		}
+
+		if (!(command instanceof ChannelEventRunnable)) {
+			// 非通道事件, 直接使用独立的虚拟线程执行
+			new SerialQueue(null).execute(command);
+			return;
+		}
+
+		Channel channel = ((ChannelEventRunnable) command).getEvent()
+				.getChannel();
+
+		for (;;) {
+			SerialQueue queue = channel2Queue.get(channel);
+			boolean created = false;
+			if (queue == null) {
+				queue = new SerialQueue(channel);
+				SerialQueue old = channel2Queue.putIfAbsent(channel, queue);
+				if (old != null) {
+					queue = old;
+				} else {
+					created = true;
+				}
+			}
+
+			if (!queue.offer(command)) {
+				// 队列已经释放(通道关闭且空闲), 使用新的队列
+				channel2Queue.remove(channel, queue);
+				continue;
+			}
+
+			if (created) {
+				// 通道关闭且队列空闲时移除(通道可能已经关闭, 此时监听器立即执行, 须在提交任务之后注册)
+				final SerialQueue q = queue;
+				channel.getCloseFuture().addListener(
+						new ChannelFutureListener() {
+							@Override
+							public void operationComplete(ChannelFuture future)
+									throws Exception {
+								q.releaseIfClosed();
+							}
+						});
+			}
+			return;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		this.shutdown = true;
+		this.tryTerminate();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		this.shutdown = true;
+
+		List<Runnable> list = new ArrayList<Runnable>();
+		for (SerialQueue queue : channel2Queue.values()) {
+			queue.drainTo(list);
+		}
+		channel2Queue.clear();
+
+		this.tryTerminate();
+		return list;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return this.shutdown;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return this.shutdown && runningCount.get() == 0;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+		synchronized (terminationLock) {
+			while (!this.isTerminated()) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0) {
+					return false;
+				}
+				terminationLock.wait(wait);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 检查线程池是否已经终止, 并唤醒等待终止的线程
+	 */
+	private void tryTerminate() {
+		if (this.isTerminated()) {
+			synchronized (terminationLock) {
+				terminationLock.notifyAll();
+			}
+		}
+	}
+
+	@Override
+	public int getPendingEventCount() {
+		return counter.getPending();
+	}
+
+	@Override
+	public long getCompletedEventCount() {
+		return counter.getCompleted();
+	}
+
+	@Override
+	public long getRejectedEventCount() {
+		return counter.getRejected();
+	}
+
+	@Override
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	@Override
+	public int getPoolSize() {
+		return runningCount.get();
+	}
+
+	/**
+	 * @return 当前存在串行执行队列的通道数
+	 */
+	int getChannelQueueCount() {
+		return channel2Queue.size();
+	}
+
+	/**
+	 * 串行执行队列
+	 * <p>
+	 * 队列中有任务时最多只有一个虚拟线程在执行
+	 */
+	private class SerialQueue implements Runnable {
+		/**
+		 * 所属通道(null=不属于任何通道)
+		 */
+		private final Channel channel;
+
+		/**
+		 * 等待执行的任务
+		 */
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+		/**
+		 * 是否已经有线程在执行本队列
+		 */
+		private final AtomicBoolean running = new AtomicBoolean(false);
+
+		/**
+		 * 是否已经从映射表中移除(此后不再接受任务)
+		 */
+		private boolean released = false;
+
+		SerialQueue(Channel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * 通道已经关闭且队列空闲时, 从映射表中移除本队列
+		 * <p>
+		 * 仍有任务未执行时不移除, 避免关闭后的事件进入新的队列, 与本队列中的任务并发执行; 由执行线程在任务执行完毕后再次检查
+		 */
+		void releaseIfClosed() {
+			if (channel == null || channel.isOpen()) {
+				return;
+			}
+
+			synchronized (this) {
+				if (released || !tasks.isEmpty() || running.get()) {
+					return;
+				}
+				released = true;
+			}
+			channel2Queue.remove(channel, this);
+		}
+
+		/**
+		 * 提交任务
+		 * 
+		 * @param task
+		 */
+		void execute(Runnable task) {
+			tasks.add(task);
+			this.schedule();
+		}
+
+		/**
+		 * 提交通道事件任务
+		 * 
+		 * @param task
+		 * @return false=本队列已经释放, 任务未提交
+		 */
+		boolean offer(Runnable task) {
+			synchronized (this) {
+				if (released) {
+					return false;
+				}
+				tasks.add(task);
+			}
+			this.schedule();
+			return true;
+		}
+
+		/**
+		 * 队列中有任务且没有线程执行时, 启动新的虚拟线程
+		 */
+		private void schedule() {
+			if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+				runningCount.incrementAndGet();
+				try {
+					VIRTUAL_THREAD_FACTORY.newThread(this).start();
+				} catch (RuntimeException ex) {
+					running.set(false);
+					runningCount.decrementAndGet();
+					throw ex;
+				}
+			}
+		}
+
+		/**
+		 * 取出全部等待执行的任务
+		 * 
+		 * @param list
+		 */
+		void drainTo(List<Runnable> list) {
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				list.add(task);
+				counter.beforeExecute(task);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				Runnable task;
+				while ((task = tasks.poll()) != null) {
+					counter.beforeExecute(task);
+					activeCount.incrementAndGet();
+					try {
+						task.run();
+					} catch (Throwable th) {
+						LOG.warn("unexpected exception in handle task", th);
+					} finally {
+						activeCount.decrementAndGet();
+						counter.afterExecute(task);
+					}
+				}
+			} finally {
+				running.set(false);
+				runningCount.decrementAndGet();
+			}
+
+			if (!tasks.isEmpty()) {
+				// 线程退出前有新任务加入
+				this.schedule();
+			} else {
+				this.releaseIfClosed();
+				tryTerminate();
+			}
+		}
+	}
+}
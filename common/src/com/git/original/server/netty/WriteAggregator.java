@@ -0,0 +1,196 @@
+package com.git.original.server.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DownstreamMessageEvent;
+import org.jboss.netty.channel.MessageEvent;
+
+/**
+ * 单个通道的输出数据聚合器
+ * <p>
+ * 将多次写出的小块数据复制到同一个连续的缓存块中, 较大的数据块则直接引用,
+ * 最终以一次聚集写(gathering write)的方式写出
+ * <p>
+ * 本类只负责暂存及合并数据, 不直接写出: {@link #drain()}返回合并后的写事件, 由调用者在释放自身的锁之后向下传递
+ * <p>
+ * 注意: 非线程安全, 由调用者同步访问
+ *
+ * @author linaoxiang
+ */
+public class WriteAggregator {
+
+	/**
+	 * 小于该长度的数据块被复制到连续缓存块中(单位:字节)
+	 */
+	private static final int COPY_THRESHOLD = 1024;
+
+	/**
+	 * 暂存数据量达到该值时应当写出(单位:字节)
+	 */
+	private final int flushThreshold;
+
+	/**
+	 * 已经封闭的待写出数据块
+	 */
+	private final List<ChannelBuffer> components = new ArrayList<ChannelBuffer>();
+
+	/**
+	 * 当前正在复制小块数据的连续缓存块(null=尚未分配)
+	 */
+	private ChannelBuffer current;
+
+	/**
+	 * 暂存的写操作future
+	 */
+	private final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+
+	/**
+	 * 暂存数据所属的处理器上下文
+	 */
+	private ChannelHandlerContext context;
+
+	/**
+	 * 暂存的数据量(单位:字节)
+	 */
+	private int pendingBytes;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param flushThreshold
+	 *            暂存数据量达到该值时应当写出(单位:字节)
+	 */
+	public WriteAggregator(int flushThreshold) {
+		this.flushThreshold = Math.max(COPY_THRESHOLD, flushThreshold);
+	}
+
+	/**
+	 * @return 暂存的数据量(单位:字节)
+	 */
+	public int getPendingBytes() {
+		return pendingBytes;
+	}
+
+	/**
+	 * @return 暂存的数据量是否已经达到写出阈值
+	 */
+	public boolean isFull() {
+		return pendingBytes >= flushThreshold;
+	}
+
+	/**
+	 * 暂存一次写操作的数据
+	 *
+	 * @param ctx
+	 *            处理器上下文
+	 * @param future
+	 *            写操作future
+	 * @param buffer
+	 *            数据
+	 * @param transientBuffer
+	 *            数据是否只在本次调用期间有效(true=总是复制)
+	 */
+	public void write(ChannelHandlerContext ctx, ChannelFuture future,
+			ChannelBuffer buffer, boolean transientBuffer) {
+		this.context = ctx;
+		this.futures.add(future);
+
+		int length = buffer.readableBytes();
+		if (length > 0) {
+			if (transientBuffer || length < COPY_THRESHOLD) {
+				if (current == null) {
+					current = ChannelBuffers.dynamicBuffer(Math.max(
+							COPY_THRESHOLD * 4, length), ctx.getChannel()
+							.getConfig().getBufferFactory());
+				}
+				current.writeBytes(buffer, buffer.readerIndex(), length);
+			} else {
+				this.sealCurrent();
+				components.add(buffer);
+			}
+			this.pendingBytes += length;
+		}
+	}
+
+	/**
+	 * @return 暂存数据所属的处理器上下文(null=没有暂存的数据)
+	 */
+	public ChannelHandlerContext getContext() {
+		return context;
+	}
+
+	/**
+	 * 取出暂存的数据, 合并为一个写事件
+	 * <p>
+	 * 返回的事件需要通过暂存数据所属的处理器上下文({@link #getContext()}, 须在调用本方法之前获取)向下传递
+	 * 
+	 * @return null=没有暂存的数据
+	 */
+	public MessageEvent drain() {
+		int count = futures.size();
+		if (count == 0) {
+			return null;
+		}
+
+		this.sealCurrent();
+		ChannelHandlerContext ctx = this.context;
+
+		ChannelBuffer merged;
+		if (components.isEmpty()) {
+			merged = ChannelBuffers.EMPTY_BUFFER;
+		} else if (components.size() == 1) {
+			merged = components.get(0);
+		} else {
+			merged = ChannelBuffers.wrappedBuffer(true,
+					components.toArray(new ChannelBuffer[components.size()]));
+		}
+
+		ChannelFuture future;
+		if (count == 1) {
+			future = futures.get(0);
+		} else {
+			final ChannelFuture[] pending = futures
+					.toArray(new ChannelFuture[count]);
+			future = Channels.future(ctx.getChannel());
+			future.addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture future)
+						throws Exception {
+					for (ChannelFuture f : pending) {
+						if (future.isSuccess()) {
+							f.setSuccess();
+						} else if (future.isCancelled()) {
+							f.cancel();
+						} else {
+							f.setFailure(future.getCause());
+						}
+					}
+				}
+			});
+		}
+
+		components.clear();
+		futures.clear();
+		this.context = null;
+		this.pendingBytes = 0;
+		return new DownstreamMessageEvent(ctx.getChannel(), future, merged,
+				null);
+	}
+
+	/**
+	 * 封闭当前的连续缓存块, 此后的小块数据复制到新的缓存块中
+	 */
+	private void sealCurrent() {
+		if (current != null) {
+			components.add(current);
+			current = null;
+		}
+	}
+}
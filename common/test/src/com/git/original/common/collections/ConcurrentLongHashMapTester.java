@@ -0,0 +1,115 @@
+package com.git.original.common.collections;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.common.collections.ConcurrentLongHashMap进行测试
+ *
+ * @author linaoxiang
+ */
+public class ConcurrentLongHashMapTester {
+
+	@Test
+	public void testRandomOperations() throws Exception {
+		Random rand = new Random(20131017);
+		ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>(4,
+				4);
+		Map<Long, Long> expected = new HashMap<Long, Long>();
+
+		for (int i = 0; i < 200000; i++) {
+			// 较小的键范围使得插入与删除频繁交错, 覆盖探测链的后移删除
+			long key = rand.nextInt(2000) - 1000;
+			Long value = Long.valueOf(rand.nextLong());
+			switch (rand.nextInt(4)) {
+			case 0:
+				Assert.assertEquals(expected.put(key, value),
+						map.put(key, value));
+				break;
+			case 1:
+				Long old = expected.get(key);
+				if (old == null) {
+					expected.put(key, value);
+				}
+				Assert.assertEquals(old, map.putIfAbsent(key, value));
+				break;
+			case 2:
+				Assert.assertEquals(expected.remove(key), map.remove(key));
+				break;
+			default:
+				Assert.assertEquals(expected.get(key), map.get(key));
+			}
+			Assert.assertEquals(expected.size(), map.size());
+		}
+
+		for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+			Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		List<Long> values = map.values();
+		Assert.assertEquals(expected.size(), values.size());
+		Assert.assertTrue(values.containsAll(expected.values()));
+
+		Long any = values.get(0);
+		long anyKey = 0;
+		for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+			if (entry.getValue().equals(any)) {
+				anyKey = entry.getKey();
+			}
+		}
+		Assert.assertFalse(map.remove(anyKey, Long.valueOf(any + 1)));
+		Assert.assertTrue(map.remove(anyKey, any));
+		Assert.assertNull(map.get(anyKey));
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>();
+		final int threads = 8;
+		final int perThread = 20000;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		final AtomicInteger errors = new AtomicInteger();
+
+		List<Thread> list = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			final long base = (long) t * perThread;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (long k = base; k < base + perThread; k++) {
+							map.put(k, Long.valueOf(k));
+						}
+						for (long k = base; k < base + perThread; k += 2) {
+							if (map.remove(k) == null) {
+								errors.incrementAndGet();
+							}
+						}
+					} finally {
+						latch.countDown();
+					}
+				}
+			};
+			list.add(thread);
+			thread.start();
+		}
+		latch.await();
+
+		Assert.assertEquals(0, errors.get());
+		Assert.assertEquals(threads * perThread / 2, map.size());
+		for (long k = 0; k < threads * perThread; k++) {
+			Assert.assertEquals(k % 2 == 0 ? null : Long.valueOf(k), map.get(k));
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.git.original.common.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.common.utils.CharsetUtil进行测试
+ *
+ * @author linaoxiang
+ */
+public class CharsetUtilTester {
+
+	private static final Charset[] CHARSETS = { CharsetUtil.US_ASCII,
+			CharsetUtil.ISO_8859_1, CharsetUtil.UTF_8 };
+
+	@Test
+	public void testEncode() throws Exception {
+		Random rand = new Random(20131017);
+
+		for (int round = 0; round < 5000; round++) {
+			String s = randomString(rand);
+
+			for (Charset charset : CHARSETS) {
+				byte[] expected = encodeByJdk(s, charset);
+				Assert.assertEquals(s, expected.length,
+						CharsetUtil.encodedLength(s, charset));
+
+				byte[] actual = new byte[expected.length + 2];
+				Assert.assertEquals(expected.length,
+						CharsetUtil.encode(s, charset, actual, 2));
+				Assert.assertTrue(s, Arrays.equals(expected,
+						Arrays.copyOfRange(actual, 2, actual.length)));
+			}
+		}
+
+		Assert.assertEquals(-1,
+				CharsetUtil.encodedLength("abc", CharsetUtil.UTF_16));
+		Assert.assertFalse(CharsetUtil.hasFastPath(CharsetUtil.UTF_16));
+		Assert.assertTrue(CharsetUtil.hasFastPath(Charset.forName("utf8")));
+	}
+
+	@Test
+	public void testDecode() throws Exception {
+		Random rand = new Random(20131017);
+
+		for (int round = 0; round < 5000; round++) {
+			byte[] data = new byte[rand.nextInt(32)];
+			for (int i = 0; i < data.length; i++) {
+				// 以ASCII为主, 偶尔出现非ASCII字节
+				data[i] = (byte) (rand.nextInt(10) == 0 ? rand.nextInt(256)
+						: 0x20 + rand.nextInt(0x5F));
+			}
+			int offset = data.length == 0 ? 0 : rand.nextInt(data.length);
+
+			for (Charset charset : CHARSETS) {
+				Assert.assertEquals(new String(data, offset, data.length
+						- offset, charset), CharsetUtil.decode(data, offset,
+						data.length - offset, charset));
+			}
+		}
+	}
+
+	private static byte[] encodeByJdk(String s, Charset charset)
+			throws Exception {
+		ByteBuffer buf = CharsetUtil.getEncoder(charset).encode(
+				CharBuffer.wrap(s));
+		byte[] bytes = new byte[buf.remaining()];
+		buf.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * 生成以ASCII为主, 包含拉丁字符, 中文, 代理对及不成对代理字符的字符串
+	 */
+	private static String randomString(Random rand) {
+		StringBuilder sb = new StringBuilder();
+		int length = rand.nextInt(24);
+		for (int i = 0; i < length; i++) {
+			switch (rand.nextInt(12)) {
+			case 0:
+				sb.append((char) (0x80 + rand.nextInt(0x80)));
+				break;
+			case 1:
+				sb.append((char) (0x4E00 + rand.nextInt(0x100)));
+				break;
+			case 2:
+				sb.appendCodePoint(0x1F600 + rand.nextInt(0x40));
+				break;
+			case 3:
+				sb.append((char) (Character.MIN_SURROGATE + rand
+						.nextInt(0x800)));
+				break;
+			default:
+				sb.append((char) (0x20 + rand.nextInt(0x5F)));
+			}
+		}
+		return sb.toString();
+	}
+}
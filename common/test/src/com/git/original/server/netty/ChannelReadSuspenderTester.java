@@ -0,0 +1,71 @@
+package com.git.original.server.netty;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.server.netty.ChannelReadSuspender进行测试
+ *
+ * @author linaoxiang
+ */
+public class ChannelReadSuspenderTester {
+
+	@Test
+	public void testToggleOutsideLock() throws Exception {
+		final int[] toggles = new int[1];
+		final boolean[] finished = new boolean[1];
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(
+				new SimpleChannelHandler() {
+					@Override
+					public void setInterestOpsRequested(
+							ChannelHandlerContext ctx, ChannelStateEvent e)
+							throws Exception {
+						toggles[0]++;
+						if (toggles[0] == 1) {
+							// 切换期间其他线程(如I/O线程的写缓存水位事件)变更原因, 不能被阻塞
+							final Channel channel = ctx.getChannel();
+							Thread other = new Thread() {
+								@Override
+								public void run() {
+									ChannelReadSuspender.suspend(channel,
+											ChannelReadSuspender.REASON_UNWRITABLE);
+									ChannelReadSuspender.resume(channel,
+											ChannelReadSuspender.REASON_ASYNC_COMMAND);
+									finished[0] = true;
+								}
+							};
+							other.start();
+							other.join(5000);
+							Assert.assertTrue(finished[0]);
+						}
+						super.setInterestOpsRequested(ctx, e);
+					}
+				});
+		Channel channel = embedder.getPipeline().getChannel();
+
+		Assert.assertTrue(ChannelReadSuspender.suspend(channel,
+				ChannelReadSuspender.REASON_ASYNC_COMMAND));
+		Assert.assertTrue(finished[0]);
+		Assert.assertFalse(ChannelReadSuspender.isSuspended(channel,
+				ChannelReadSuspender.REASON_ASYNC_COMMAND));
+		Assert.assertTrue(ChannelReadSuspender.isSuspended(channel,
+				ChannelReadSuspender.REASON_UNWRITABLE));
+		// 仍有暂停原因: 只切换一次
+		Assert.assertEquals(1, toggles[0]);
+
+		Assert.assertTrue(ChannelReadSuspender.resume(channel,
+				ChannelReadSuspender.REASON_UNWRITABLE));
+		Assert.assertEquals(2, toggles[0]);
+		Assert.assertFalse(ChannelReadSuspender.resume(channel,
+				ChannelReadSuspender.REASON_UNWRITABLE));
+		Assert.assertEquals(2, toggles[0]);
+
+		embedder.finish();
+	}
+}
@@ -0,0 +1,112 @@
+package com.git.original.server.netty;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.server.netty.CommandStatistics进行测试
+ *
+ * @author linaoxiang
+ */
+public class CommandStatisticsTester {
+
+	@Test
+	public void testRecord() throws Exception {
+		CommandStatistics stat = new CommandStatistics(3);
+		stat.record("FETCH", 300);
+		stat.record("FETCH", 500);
+		stat.record("NOOP", 10);
+		stat.record(null, 1000);
+
+		List<CommandStatistics.Entry> list = stat.list();
+		Assert.assertEquals(2, list.size());
+		Assert.assertEquals("FETCH", list.get(0).getCommand());
+		Assert.assertEquals(2, list.get(0).getCount());
+		Assert.assertEquals(800, list.get(0).getTotalNanos());
+		Assert.assertEquals(500, list.get(0).getMaxNanos());
+		Assert.assertEquals("NOOP", list.get(1).getCommand());
+
+		// 超出名称数量上限的命令统一计入OTHER_COMMAND
+		stat.record("SELECT", 100);
+		stat.record("LOGIN", 2000);
+		stat.record("LOGOUT", 3000);
+		stat.record("FETCH", 100);
+
+		list = stat.list();
+		Assert.assertEquals(4, list.size());
+		Assert.assertEquals(CommandStatistics.OTHER_COMMAND, list.get(0)
+				.getCommand());
+		Assert.assertEquals(2, list.get(0).getCount());
+		Assert.assertEquals(5000, list.get(0).getTotalNanos());
+		Assert.assertEquals(3, list.get(1).getCount());
+
+		stat.clear();
+		Assert.assertTrue(stat.list().isEmpty());
+	}
+
+	@Test
+	public void testRecordFirstWord() throws Exception {
+		CommandStatistics stat = new CommandStatistics(2);
+		Assert.assertFalse(stat.isEnabled());
+
+		stat.recordFirstWord("fetch 1:* FLAGS", 100);
+		stat.recordFirstWord(ChannelBuffers.copiedBuffer("FETCH 2",
+				CharsetUtil.US_ASCII), 200);
+		stat.record("FETCH", 300);
+		stat.recordFirstWord("NOOP", 10);
+		stat.recordFirstWord(" leading space", 10);
+		stat.recordFirstWord(Integer.valueOf(1), 10);
+		stat.recordFirstWord("SELECT INBOX", 1000);
+
+		List<CommandStatistics.Entry> list = stat.list();
+		Assert.assertEquals(3, list.size());
+		Assert.assertEquals(CommandStatistics.OTHER_COMMAND, list.get(0)
+				.getCommand());
+		Assert.assertEquals("FETCH", list.get(1).getCommand());
+		Assert.assertEquals(3, list.get(1).getCount());
+		Assert.assertEquals(600, list.get(1).getTotalNanos());
+		Assert.assertEquals("NOOP", list.get(2).getCommand());
+	}
+
+	@Test
+	public void testListWhileRecording() throws Exception {
+		final CommandStatistics stat = new CommandStatistics(256);
+		for (int i = 0; i < 200; i++) {
+			stat.record("CMD" + i, i);
+		}
+
+		// 排序期间统计值被持续更新, 不能违反比较器的约定
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				Random rand = new Random(20131017);
+				while (!stop.get()) {
+					stat.record("CMD" + rand.nextInt(200), rand.nextInt(1000));
+				}
+			}
+		};
+		writer.start();
+		try {
+			for (int i = 0; i < 200; i++) {
+				Assert.assertEquals(200, stat.list().size());
+			}
+		} finally {
+			stop.set(true);
+			writer.join();
+		}
+
+		List<CommandStatistics.Entry> list = stat.list();
+		for (int i = 1; i < list.size(); i++) {
+			Assert.assertTrue(list.get(i - 1).getTotalNanos() >= list.get(i)
+					.getTotalNanos());
+		}
+	}
+}
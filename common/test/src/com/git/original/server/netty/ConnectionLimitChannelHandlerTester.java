@@ -0,0 +1,237 @@
+package com.git.original.server.netty;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.channel.AbstractChannel;
+import org.jboss.netty.channel.AbstractChannelSink;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelConfig;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultChannelConfig;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.junit.Test;
+
+import junit.framework.Assert;
+/**
+ * 对com.git.original.server.netty.ConnectionLimitChannelHandler进行测试
+ *
+ * @author linaoxiang
+ */
+public class ConnectionLimitChannelHandlerTester {
+
+	@Test
+	public void testMaxConnections() throws Exception {
+		ConnectionLimitChannelHandler limit = limit(2, 0, 0, 0, null);
+		List<Channel> accepted = new ArrayList<Channel>();
+
+		Channel c1 = open(limit, "10.0.0.1", accepted);
+		Channel c2 = open(limit, "10.0.0.2", accepted);
+		Channel c3 = open(limit, "10.0.0.3", accepted);
+		Assert.assertEquals(2, accepted.size());
+		Assert.assertFalse(accepted.contains(c3));
+		Assert.assertEquals(2, limit.getActiveConnections());
+		Assert.assertEquals(1, limit.getRejectedCount());
+
+		// 被拒绝的连接关闭时不释放许可
+		close(c3);
+		Assert.assertEquals(2, limit.getActiveConnections());
+
+		close(c1);
+		Assert.assertEquals(1, limit.getActiveConnections());
+		open(limit, "10.0.0.3", accepted);
+		Assert.assertEquals(3, accepted.size());
+
+		close(c2);
+		close(accepted.get(2));
+		Assert.assertEquals(0, limit.getActiveConnections());
+		Assert.assertEquals(0, limit.getTrackedIpCount());
+	}
+
+	@Test
+	public void testMaxConnectionsPerIp() throws Exception {
+		ConnectionLimitChannelHandler limit = limit(0, 2, 0, 0, null);
+		List<Channel> accepted = new ArrayList<Channel>();
+
+		open(limit, "10.0.0.1", accepted);
+		open(limit, "10.0.0.1", accepted);
+		open(limit, "10.0.0.1", accepted);
+		open(limit, "10.0.0.2", accepted);
+		Assert.assertEquals(3, accepted.size());
+		Assert.assertEquals(1, limit.getRejectedCount());
+		// 单个IP被拒绝时回退全局计数
+		Assert.assertEquals(3, limit.getActiveConnections());
+		Assert.assertEquals(2, limit.getTrackedIpCount());
+
+		// 计数归零后从映射表中移除, 再次连接时重新计数
+		close(accepted.get(0));
+		close(accepted.get(1));
+		Assert.assertEquals(1, limit.getTrackedIpCount());
+		open(limit, "10.0.0.1", accepted);
+		Assert.assertEquals(4, accepted.size());
+		Assert.assertEquals(2, limit.getTrackedIpCount());
+
+		close(accepted.get(2));
+		close(accepted.get(3));
+		Assert.assertEquals(0, limit.getActiveConnections());
+		Assert.assertEquals(0, limit.getTrackedIpCount());
+	}
+
+	@Test
+	public void testConnectRate() throws Exception {
+		// 每秒1个连接, 令牌桶容量2: 测试期间补充的令牌不足1个
+		ConnectionLimitChannelHandler limit = limit(0, 0, 1, 2, null);
+		List<Channel> accepted = new ArrayList<Channel>();
+
+		open(limit, "10.0.0.1", accepted);
+		open(limit, "10.0.0.2", accepted);
+		open(limit, "10.0.0.3", accepted);
+		Assert.assertEquals(2, accepted.size());
+		Assert.assertEquals(1, limit.getRejectedCount());
+
+		// 关闭连接不归还令牌
+		close(accepted.get(0));
+		open(limit, "10.0.0.4", accepted);
+		Assert.assertEquals(2, accepted.size());
+		Assert.assertEquals(2, limit.getRejectedCount());
+	}
+
+	@Test
+	public void testWhitelist() throws Exception {
+		// 非法地址被忽略, 不影响其他白名单地址
+		ConnectionLimitChannelHandler limit = limit(1, 1, 1, 1,
+				"illegal-ip, 10.0.0.1");
+		List<Channel> accepted = new ArrayList<Channel>();
+
+		for (int i = 0; i < 5; i++) {
+			open(limit, "10.0.0.1", accepted);
+		}
+		Assert.assertEquals(5, accepted.size());
+		Assert.assertEquals(0, limit.getActiveConnections());
+		Assert.assertEquals(0, limit.getTrackedIpCount());
+		Assert.assertEquals(0, limit.getRejectedCount());
+
+		for (Channel channel : accepted) {
+			close(channel);
+		}
+		Assert.assertEquals(0, limit.getActiveConnections());
+		Assert.assertEquals(0, limit.getTrackedIpCount());
+
+		// 白名单之外仍然受限
+		open(limit, "10.0.0.2", accepted);
+		open(limit, "10.0.0.3", accepted);
+		Assert.assertEquals(6, accepted.size());
+		Assert.assertEquals(1, limit.getRejectedCount());
+	}
+
+	/**
+	 * 创建连接数限制处理器
+	 * 
+	 * @see ConnectionLimitChannelHandler#updateLimits(int, int, int, int,
+	 *      String)
+	 */
+	private static ConnectionLimitChannelHandler limit(int maxConnections,
+			int maxConnectionsPerIp, int connectRate, int connectBurst,
+			String whitelist) {
+		ConnectionLimitChannelHandler limit = new ConnectionLimitChannelHandler();
+		limit.updateLimits(maxConnections, maxConnectionsPerIp, connectRate,
+				connectBurst, whitelist);
+		return limit;
+	}
+
+	/**
+	 * 建立一个来自指定IP的连接
+	 * 
+	 * @param limit
+	 *            连接数限制处理器
+	 * @param ip
+	 *            来源IP
+	 * @param accepted
+	 *            保存被接受(连接建立事件传递到后续处理器)的连接
+	 * @return 新建的连接
+	 */
+	private static Channel open(ConnectionLimitChannelHandler limit,
+			String ip, final List<Channel> accepted) {
+		ChannelPipeline pipeline = Channels.pipeline();
+		pipeline.addLast("limit", limit);
+		pipeline.addLast("tail", new SimpleChannelUpstreamHandler() {
+			@Override
+			public void channelOpen(ChannelHandlerContext ctx,
+					ChannelStateEvent e) throws Exception {
+				accepted.add(e.getChannel());
+			}
+		});
+
+		Channel channel = new TestChannel(PARENT, pipeline,
+				new InetSocketAddress(ip, 1000));
+		Channels.fireChannelOpen(channel);
+		return channel;
+	}
+
+	/**
+	 * 关闭连接
+	 * 
+	 * @param channel
+	 *            网络通道
+	 */
+	private static void close(Channel channel) {
+		Channels.fireChannelClosed(channel);
+	}
+
+	/** 测试用侦听通道 */
+	private static final Channel PARENT = new TestChannel(null,
+			Channels.pipeline(), null);
+
+	/**
+	 * 测试用网络通道: 不进行任何实际的I/O操作
+	 */
+	private static class TestChannel extends AbstractChannel {
+
+		private final ChannelConfig config = new DefaultChannelConfig();
+
+		private final SocketAddress remoteAddress;
+
+		TestChannel(Channel parent, ChannelPipeline pipeline,
+				SocketAddress remoteAddress) {
+			super(parent, null, pipeline, new AbstractChannelSink() {
+				@Override
+				public void eventSunk(ChannelPipeline pipeline, ChannelEvent e)
+						throws Exception {
+					// 忽略
+				}
+			});
+			this.remoteAddress = remoteAddress;
+		}
+
+		@Override
+		public ChannelConfig getConfig() {
+			return config;
+		}
+
+		@Override
+		public boolean isBound() {
+			return true;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public SocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public SocketAddress getRemoteAddress() {
+			return remoteAddress;
+		}
+	}
+}
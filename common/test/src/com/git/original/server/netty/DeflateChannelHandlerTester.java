@@ -0,0 +1,116 @@
+package com.git.original.server.netty;
+
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.server.netty.DeflateChannelHandler进行测试
+ *
+ * @author linaoxiang
+ */
+public class DeflateChannelHandlerTester {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		if (!DeflateChannelHandler.isSupported()) {
+			return;
+		}
+
+		Random rand = new Random(20131017);
+		DecoderEmbedder<Object> server = new DecoderEmbedder<Object>(
+				new DeflateChannelHandler(Deflater.DEFAULT_COMPRESSION, true));
+		DecoderEmbedder<Object> client = new DecoderEmbedder<Object>(
+				new DeflateChannelHandler(Deflater.BEST_SPEED, false));
+
+		// 开启压缩命令自身的响应不压缩
+		Channels.write(server.getPipeline().getChannel(),
+				ChannelBuffers.wrappedBuffer("A01 OK\r\n".getBytes("US-ASCII")));
+		Assert.assertEquals("A01 OK\r\n",
+				((ChannelBuffer) server.poll()).toString("US-ASCII"));
+
+		for (int i = 0; i < 50; i++) {
+			byte[] data = new byte[rand.nextInt(i % 10 == 0 ? 40000 : 200)];
+			for (int j = 0; j < data.length; j++) {
+				data[j] = (byte) ('a' + rand.nextInt(6));
+			}
+			ChannelBuffer message = (i % 2 == 0 ? ChannelBuffers
+					.wrappedBuffer(data) : ChannelBuffers.directBuffer(data.length));
+			if (i % 2 != 0) {
+				message.writeBytes(data);
+			}
+			Channels.write(server.getPipeline().getChannel(), message);
+
+			ChannelBuffer compressed = (ChannelBuffer) server.poll();
+			Assert.assertNull(server.poll());
+			if (data.length > 100) {
+				Assert.assertTrue(compressed.readableBytes() < data.length);
+			}
+
+			// 同步刷新: 每次写出的数据在对端都可以立即完整解压
+			ChannelBuffer received = ChannelBuffers.dynamicBuffer();
+			while (compressed.readable()) {
+				int len = Math.min(compressed.readableBytes(),
+						1 + rand.nextInt(500));
+				client.offer(compressed.readBytes(len));
+				Object output;
+				while ((output = client.poll()) != null) {
+					received.writeBytes((ChannelBuffer) output);
+				}
+			}
+			Assert.assertEquals(ChannelBuffers.wrappedBuffer(data), received);
+		}
+
+		server.finish();
+		client.finish();
+	}
+
+	@Test
+	public void testMaxInflateSize() throws Exception {
+		if (!DeflateChannelHandler.isSupported()) {
+			return;
+		}
+
+		final boolean[] closed = new boolean[1];
+		DeflateChannelHandler handler = new DeflateChannelHandler(
+				Deflater.DEFAULT_COMPRESSION, false);
+		handler.setMaxInflateSize(4096);
+		DecoderEmbedder<Object> server = new DecoderEmbedder<Object>(
+				new SimpleChannelHandler() {
+					@Override
+					public void closeRequested(ChannelHandlerContext ctx,
+							ChannelStateEvent e) throws Exception {
+						closed[0] = true;
+					}
+				}, handler);
+		DecoderEmbedder<Object> client = new DecoderEmbedder<Object>(
+				new DeflateChannelHandler(Deflater.BEST_COMPRESSION, false));
+
+		// 未超过上限的数据正常解压
+		Channels.write(client.getPipeline().getChannel(),
+				ChannelBuffers.wrappedBuffer(new byte[4096]));
+		server.offer(client.poll());
+		Assert.assertEquals(4096, ((ChannelBuffer) server.poll())
+				.readableBytes());
+		Assert.assertFalse(closed[0]);
+
+		// 少量压缩数据解压出大量数据: 关闭连接
+		Channels.write(client.getPipeline().getChannel(),
+				ChannelBuffers.wrappedBuffer(new byte[1024 * 1024]));
+		ChannelBuffer compressed = (ChannelBuffer) client.poll();
+		Assert.assertTrue(compressed.readableBytes() < 4096);
+		server.offer(compressed);
+		Assert.assertNull(server.poll());
+		Assert.assertTrue(closed[0]);
+	}
+}
@@ -0,0 +1,202 @@
+package com.git.original.server.netty;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.handler.codec.embedder.CodecEmbedderException;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+import org.junit.Test;
+
+import com.git.original.common.utils.CompressUtils;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.server.netty.LengthFieldFrameCodecHandler进行测试
+ *
+ * @author linaoxiang
+ */
+public class LengthFieldFrameCodecHandlerTester {
+
+	@Test
+	public void testEncodeDecode() throws Exception {
+		Random rand = new Random(20131017);
+
+		for (int width : new int[] { 1, 2, 3, 4, 8 }) {
+			for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN,
+					ByteOrder.LITTLE_ENDIAN }) {
+				for (boolean compress : new boolean[] { false, true }) {
+					LengthFieldFrameCodecHandler codec = new LengthFieldFrameCodecHandler(
+							4096, width, order, compress);
+					if (compress) {
+						codec.setCompressThreshold(64);
+					}
+					int maxLength = (width == 1 ? 255 : 1000);
+
+					// 编码
+					DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(
+							codec);
+					List<byte[]> payloads = new ArrayList<byte[]>();
+					for (int i = 0; i < 20; i++) {
+						byte[] payload = new byte[rand.nextInt(maxLength + 1)];
+						for (int j = 0; j < payload.length; j++) {
+							// 较小的取值范围, 使得数据可以被压缩
+							payload[j] = (byte) rand.nextInt(4);
+						}
+						payloads.add(payload);
+						Channels.write(embedder.getPipeline().getChannel(),
+								payload);
+					}
+
+					ChannelBuffer encoded = ChannelBuffers.dynamicBuffer();
+					Object written;
+					while ((written = embedder.poll()) != null) {
+						encoded.writeBytes((ChannelBuffer) written);
+					}
+
+					// 随机切分为多次到达的数据后解码
+					while (encoded.readable()) {
+						int len = Math.min(encoded.readableBytes(),
+								1 + rand.nextInt(300));
+						embedder.offer(encoded.readBytes(len));
+					}
+					embedder.finish();
+
+					for (byte[] payload : payloads) {
+						ChannelBuffer frame = (ChannelBuffer) embedder.poll();
+						Assert.assertEquals(ChannelBuffers.wrappedBuffer(payload),
+								frame);
+					}
+					Assert.assertNull(embedder.poll());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTooLongFrame() throws Exception {
+		LengthFieldFrameCodecHandler codec = new LengthFieldFrameCodecHandler(
+				16);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(codec);
+
+		ChannelBuffer data = ChannelBuffers.dynamicBuffer();
+		data.writeInt(20);
+		data.writeBytes(new byte[20]);
+		data.writeInt(3);
+		data.writeBytes(new byte[] { 1, 2, 3 });
+
+		try {
+			embedder.offer(data.readBytes(10));
+			Assert.fail();
+		} catch (CodecEmbedderException ex) {
+			Assert.assertTrue(ex.getCause() instanceof TooLongFrameException);
+		}
+
+		// 超长帧的剩余数据被丢弃, 后续帧正常解码
+		embedder.offer(data);
+		Assert.assertEquals(
+				ChannelBuffers.wrappedBuffer(new byte[] { 1, 2, 3 }),
+				embedder.poll());
+		Assert.assertNull(embedder.poll());
+	}
+
+	@Test
+	public void testCompressedTooLongFrame() throws Exception {
+		LengthFieldFrameCodecHandler codec = new LengthFieldFrameCodecHandler(
+				8192, 4, ByteOrder.BIG_ENDIAN, true);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(codec);
+
+		// 压缩数据本身未超过长度上限, 解压后远超长度上限
+		ByteBuffer compressed = CompressUtils
+				.compressFastestDefalte(ByteBuffer.wrap(new byte[1024 * 1024]));
+		ChannelBuffer data = ChannelBuffers.dynamicBuffer();
+		data.writeByte(LengthFieldFrameCodecHandler.FLAG_COMPRESSED);
+		data.writeInt(compressed.remaining());
+		data.writeBytes(compressed);
+		Assert.assertTrue(compressed.remaining() < 8192);
+
+		try {
+			embedder.offer(data);
+			Assert.fail();
+		} catch (CodecEmbedderException ex) {
+			Assert.assertTrue(ex.getCause() instanceof TooLongFrameException);
+		}
+		Assert.assertNull(embedder.poll());
+	}
+
+	@Test
+	public void testBatchFramesBeforeTooLongFrame() throws Exception {
+		LengthFieldFrameCodecHandler codec = new LengthFieldFrameCodecHandler(
+				8);
+		codec.setBatchFrames(true);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(codec);
+
+		// 正常帧之后紧跟超长帧
+		ChannelBuffer data = ChannelBuffers.dynamicBuffer();
+		data.writeInt(1);
+		data.writeByte(1);
+		data.writeInt(1);
+		data.writeByte(2);
+		data.writeInt(9);
+		data.writeBytes(new byte[9]);
+
+		try {
+			embedder.offer(data);
+			Assert.fail();
+		} catch (CodecEmbedderException ex) {
+			Assert.assertTrue(ex.getCause() instanceof TooLongFrameException);
+		}
+
+		// 解码异常之前得到的帧仍然送达
+		FrameBatch batch = (FrameBatch) embedder.poll();
+		Assert.assertNotNull(batch);
+		List<Object> frames = new ArrayList<Object>();
+		for (Object frame : batch) {
+			frames.add(frame);
+		}
+		Assert.assertEquals(2, frames.size());
+		Assert.assertEquals(ChannelBuffers.wrappedBuffer(new byte[] { 2 }),
+				frames.get(1));
+		Assert.assertNull(embedder.poll());
+	}
+
+	@Test
+	public void testTooLongFrameFollowedByFrame() throws Exception {
+		LengthFieldFrameCodecHandler codec = new LengthFieldFrameCodecHandler(
+				8);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(codec);
+
+		// 超长帧与正常帧在同一次读取中到达
+		ChannelBuffer data = ChannelBuffers.dynamicBuffer();
+		data.writeInt(9);
+		data.writeBytes(new byte[9]);
+		data.writeInt(3);
+		data.writeBytes(new byte[] { 1, 2, 3 });
+
+		try {
+			embedder.offer(data);
+			Assert.fail();
+		} catch (CodecEmbedderException ex) {
+			Assert.assertTrue(ex.getCause() instanceof TooLongFrameException);
+		}
+
+		// 超长帧之后的数据被保留, 与后续数据一起解码
+		ChannelBuffer next = ChannelBuffers.dynamicBuffer();
+		next.writeInt(1);
+		next.writeByte(4);
+		embedder.offer(next);
+		Assert.assertEquals(
+				ChannelBuffers.wrappedBuffer(new byte[] { 1, 2, 3 }),
+				embedder.poll());
+		Assert.assertEquals(ChannelBuffers.wrappedBuffer(new byte[] { 4 }),
+				embedder.poll());
+		Assert.assertNull(embedder.poll());
+	}
+}
@@ -0,0 +1,146 @@
+package com.git.original.server.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.execution.ExecutionHandler;
+import org.junit.Test;
+
+import com.git.original.server.IAsyncSessionHandler;
+import com.git.original.server.ICommandCompletion;
+import com.git.original.server.ISessionHandler;
+import com.git.original.server.ServerConfig;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.server.netty.NettyChannelHandler进行测试
+ *
+ * @author linaoxiang
+ */
+public class NettyChannelHandlerTester {
+
+	/**
+	 * 记录消息顺序的异步会话处理器; 以"!"结尾的消息在调用期间直接完成
+	 */
+	private static class RecordingAsyncHandler implements IAsyncSessionHandler {
+		final List<Object> received = new ArrayList<Object>();
+
+		final List<ICommandCompletion> completions = new ArrayList<ICommandCompletion>();
+
+		@Override
+		public void connectionOpened() throws Exception {
+		}
+
+		@Override
+		public void connectionClosed() throws Exception {
+		}
+
+		@Override
+		public void connectionIdle() throws Exception {
+		}
+
+		@Override
+		public void messageReceived(Object message) throws Exception {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void messageReceived(Object message,
+				ICommandCompletion completion) throws Exception {
+			received.add(message);
+			completions.add(completion);
+			if (message.toString().endsWith("!")) {
+				completion.completed();
+			}
+		}
+	}
+
+	@Test
+	public void testAsyncOrdering() throws Exception {
+		final RecordingAsyncHandler handler = new RecordingAsyncHandler();
+		NettyServer server = new NettyServer() {
+			@Override
+			protected ISessionHandler createHandler(long channelUid,
+					Channel channel) {
+				return handler;
+			}
+
+			@Override
+			protected CodecStreamHandler createCodecFilter() {
+				return null;
+			}
+
+			@Override
+			protected ExecutionHandler createExecutorFilter(Executor executor) {
+				return null;
+			}
+
+			@Override
+			public ServerConfig getConfig() throws Exception {
+				return null;
+			}
+
+			@Override
+			public String getConfigName() {
+				return "test";
+			}
+		};
+
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(
+				new NettyChannelHandler(server));
+		Channel channel = server.getSessionRegistry().list().get(0)
+				.getChannel();
+
+		// 命令未完成期间, 后续消息暂存
+		embedder.offer("A");
+		embedder.offer("B!");
+		embedder.offer("C");
+		Assert.assertEquals(1, handler.received.size());
+		Assert.assertFalse(NettyChannelHandler.isChannelQuiet(channel, 0));
+		Assert.assertTrue(ChannelReadSuspender.isSuspended(channel,
+				ChannelReadSuspender.REASON_ASYNC_COMMAND));
+
+		// 写缓存高水位同时暂停读取: 恢复写入不影响异步命令的暂停
+		Assert.assertTrue(ChannelReadSuspender.suspend(channel,
+				ChannelReadSuspender.REASON_UNWRITABLE));
+		Assert.assertTrue(ChannelReadSuspender.resume(channel,
+				ChannelReadSuspender.REASON_UNWRITABLE));
+		Assert.assertTrue(ChannelReadSuspender.isSuspended(channel,
+				ChannelReadSuspender.REASON_ASYNC_COMMAND));
+		Assert.assertTrue(ChannelReadSuspender.suspend(channel,
+				ChannelReadSuspender.REASON_UNWRITABLE));
+
+		// A完成后依次处理: B在调用期间完成, 继续处理C
+		handler.completions.get(0).completed();
+		Assert.assertEquals(3, handler.received.size());
+		Assert.assertEquals("A", handler.received.get(0));
+		Assert.assertEquals("B!", handler.received.get(1));
+		Assert.assertEquals("C", handler.received.get(2));
+
+		// 重复的通知被忽略
+		handler.completions.get(0).completed();
+		Assert.assertEquals(3, handler.received.size());
+
+		handler.completions.get(2).completed();
+		Assert.assertTrue(NettyChannelHandler.isChannelQuiet(channel, 0));
+
+		// 异步命令全部完成, 但写缓存仍超过高水位
+		Assert.assertFalse(ChannelReadSuspender.isSuspended(channel,
+				ChannelReadSuspender.REASON_ASYNC_COMMAND));
+		Assert.assertTrue(ChannelReadSuspender.isSuspended(channel,
+				ChannelReadSuspender.REASON_UNWRITABLE));
+		Assert.assertTrue(ChannelReadSuspender.resume(channel,
+				ChannelReadSuspender.REASON_UNWRITABLE));
+
+		// 队列空闲时直接处理
+		embedder.offer("D!");
+		Assert.assertEquals(4, handler.received.size());
+		Assert.assertTrue(NettyChannelHandler.isChannelQuiet(channel, 0));
+		Assert.assertEquals(4, server.getSessionRegistry().list().get(0)
+				.getStatistics().getMessages());
+	}
+}
@@ -0,0 +1,488 @@
+package com.git.original.server.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.WrappedChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.server.netty.TextLineMessageCodecHandler进行测试
+ * 
+ * @author linaoxiang
+ */
+public class TextLineMessageCodecHandlerTester {
+
+	private static final byte[] CRLF = { '\r', '\n' };
+
+	private static final byte[] LF = { '\n' };
+
+	@Test
+	public void testIndexOf() {
+		Random rand = new Random(20131017);
+
+		for (int round = 0; round < 5000; round++) {
+			byte[] data = new byte[rand.nextInt(64)];
+			for (int i = 0; i < data.length; i++) {
+				// 较小的取值范围, 使得结束符出现得更频繁
+				int r = rand.nextInt(12);
+				data[i] = (byte) (r == 0 ? '\r' : (r == 1 ? '\n' : 'a' + r));
+			}
+			int start = data.length == 0 ? 0 : rand.nextInt(data.length + 1);
+
+			for (byte[] needle : new byte[][] { CRLF, LF }) {
+				ChannelBuffer expected = ChannelBuffers.wrappedBuffer(data);
+				expected.readerIndex(start);
+				int expectedLength = indexOfBytewise(expected, needle);
+
+				for (ChannelBuffer buf : createBuffers(data, rand)) {
+					buf.readerIndex(start);
+					Assert.assertEquals(expectedLength,
+							TextLineMessageCodecHandler.indexOf(buf, needle));
+					Assert.assertEquals(expected.readerIndex(),
+							buf.readerIndex());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDecodeSplitLines() throws Exception {
+		String text = "EHLO example.com\r\nMAIL FROM:<a@b.com>\r\n"
+				+ "a long line which is longer than eight bytes\r\n\r\nQUIT\r\n";
+		byte[] data = text.getBytes(CharsetUtil.US_ASCII);
+
+		// 按所有可能的位置切分为两次到达的数据
+		for (int split = 0; split <= data.length; split++) {
+			TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+					1024);
+			ChannelBuffer cumulation = ChannelBuffers.dynamicBuffer();
+			List<String> lines = new ArrayList<String>();
+
+			cumulation.writeBytes(data, 0, split);
+			decodeAll(codec, cumulation, lines);
+			cumulation.writeBytes(data, split, data.length - split);
+			decodeAll(codec, cumulation, lines);
+
+			Assert.assertEquals(5, lines.size());
+			Assert.assertEquals("EHLO example.com", lines.get(0));
+			Assert.assertEquals("MAIL FROM:<a@b.com>", lines.get(1));
+			Assert.assertEquals("a long line which is longer than eight bytes",
+					lines.get(2));
+			Assert.assertEquals("", lines.get(3));
+			Assert.assertEquals("QUIT", lines.get(4));
+		}
+	}
+
+	@Test
+	public void testDecodeSlices() throws Exception {
+		byte[] data = "MAIL FROM:<a@b.com>\r\nrcpt to:<c@d.com>\r\n\u4E2D\u6587\r\nQU"
+				.getBytes(CharsetUtil.UTF_8);
+
+		TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+				1024);
+		codec.setFrameType(TextLineMessageCodecHandler.FrameType.CHAR_SEQUENCE);
+		ChannelBuffer cumulation = ChannelBuffers.dynamicBuffer(16);
+		cumulation.writeBytes(data);
+
+		List<CharSequence> lines = new ArrayList<CharSequence>();
+		Object line;
+		while ((line = codec.decode(null, null, cumulation)) != null) {
+			lines.add((CharSequence) line);
+		}
+		Assert.assertEquals(3, lines.size());
+
+		// 后续数据到达不能影响已经产生的帧
+		cumulation.writeBytes("IT\r\n".getBytes(CharsetUtil.US_ASCII));
+		Assert.assertEquals("QUIT",
+				codec.decode(null, null, cumulation).toString());
+
+		ChannelBufferCharSequence mail = (ChannelBufferCharSequence) lines
+				.get(0);
+		Assert.assertEquals("MAIL FROM:<a@b.com>", mail.toString());
+		Assert.assertEquals(19, mail.length());
+		Assert.assertEquals(':', mail.charAt(9));
+		Assert.assertEquals("FROM", mail.subSequence(5, 9).toString());
+		Assert.assertTrue(mail.startsWithIgnoreCase("mail from:"));
+		Assert.assertTrue(((ChannelBufferCharSequence) lines.get(1))
+				.startsWithIgnoreCase("RCPT TO:"));
+		Assert.assertFalse(mail.startsWithIgnoreCase("RCPT TO:"));
+
+		Assert.assertEquals("\u4E2D\u6587", lines.get(2).toString());
+		Assert.assertEquals(2, lines.get(2).length());
+
+		// 产生的帧为只读缓存
+		codec.setFrameType(TextLineMessageCodecHandler.FrameType.BUFFER);
+		cumulation.writeBytes("NOOP\r\n".getBytes(CharsetUtil.US_ASCII));
+		ChannelBuffer frame = (ChannelBuffer) codec.decode(null, null,
+				cumulation);
+		Assert.assertEquals("NOOP", frame.toString(CharsetUtil.US_ASCII));
+		try {
+			frame.setByte(0, 'X');
+			Assert.fail();
+		} catch (UnsupportedOperationException ex) {
+			// 正确
+		}
+	}
+
+	@Test
+	public void testCumulationStrategy() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			sb.append("line-").append(i).append("\r\n");
+		}
+		byte[] data = sb.toString().getBytes(CharsetUtil.US_ASCII);
+		Random rand = new Random(20131017);
+
+		for (CodecStreamHandler.CumulationStrategy strategy : CodecStreamHandler.CumulationStrategy
+				.values()) {
+			TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+					1024);
+			codec.setCumulationStrategy(strategy);
+			codec.setMaxCumulationComponents(3);
+			codec.setMinShrinkCapacity(16);
+			DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(
+					codec);
+
+			// 随机切分为多次到达的数据块, 部分帧跨越多个数据块
+			int offset = 0;
+			while (offset < data.length) {
+				int len = Math.min(data.length - offset, 1 + rand.nextInt(9));
+				embedder.offer(ChannelBuffers.wrappedBuffer(data, offset, len));
+				offset += len;
+			}
+			embedder.finish();
+
+			for (int i = 0; i < 200; i++) {
+				Assert.assertEquals("line-" + i, embedder.poll());
+			}
+			Assert.assertNull(embedder.poll());
+		}
+	}
+
+	@Test
+	public void testSharedCumulation() throws Exception {
+		TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+				1024);
+		codec.setFrameType(TextLineMessageCodecHandler.FrameType.BUFFER);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(codec);
+
+		embedder.offer(ChannelBuffers.copiedBuffer("A1\r\nA2",
+				CharsetUtil.US_ASCII));
+		embedder.offer(ChannelBuffers.copiedBuffer(" X\r\nB3",
+				CharsetUtil.US_ASCII));
+		Assert.assertEquals("A1", ((ChannelBuffer) embedder.poll())
+				.toString(CharsetUtil.US_ASCII));
+		ChannelBuffer frame = (ChannelBuffer) embedder.poll();
+		Assert.assertEquals("A2 X", frame.toString(CharsetUtil.US_ASCII));
+
+		ChannelBuffer owner = frame;
+		while (owner instanceof WrappedChannelBuffer) {
+			owner = ((WrappedChannelBuffer) owner).unwrap();
+		}
+		int ownerWriterIndex = owner.writerIndex();
+
+		// 帧仍引用的缓存不再被追加数据(可能正在其他线程中读取), 后续数据在新的缓存块中累积
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 800; i++) {
+			sb.append('Y');
+		}
+		embedder.offer(ChannelBuffers.copiedBuffer(sb + "\r\n",
+				CharsetUtil.US_ASCII));
+		Assert.assertEquals(ownerWriterIndex, owner.writerIndex());
+		Assert.assertEquals("A2 X", frame.toString(CharsetUtil.US_ASCII));
+		Assert.assertEquals("B3" + sb, ((ChannelBuffer) embedder.poll())
+				.toString(CharsetUtil.US_ASCII));
+		Assert.assertNull(embedder.poll());
+	}
+
+	@Test
+	public void testStreaming() throws Exception {
+		String text = "DATA\r\nSubject: a\r\n\r\nbody\r\n..dot\r\n.\r\n"
+				+ "DATA\r\n.\r\nAPPEND {5+}\r\nhello)\r\nQUIT\r\n";
+		byte[] data = text.getBytes(CharsetUtil.US_ASCII);
+
+		// 按所有可能的位置切分为两次到达的数据
+		for (int split = 0; split <= data.length; split++) {
+			TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+					1024) {
+				@Override
+				protected void lineDecoded(Channel channel, ChannelBuffer line) {
+					String s = line.toString(CharsetUtil.US_ASCII);
+					if (s.equals("DATA")) {
+						startStreaming(new byte[] { '\r', '\n', '.', '\r',
+								'\n' });
+					} else if (s.endsWith("{5+}")) {
+						startStreaming(5);
+					}
+				}
+			};
+			DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(
+					codec);
+			embedder.offer(ChannelBuffers.wrappedBuffer(data, 0, split));
+			embedder.offer(ChannelBuffers.wrappedBuffer(data, split,
+					data.length - split));
+			embedder.finish();
+
+			Assert.assertEquals("DATA", embedder.poll());
+			Assert.assertEquals("Subject: a\r\n\r\nbody\r\n..dot",
+					pollStream(embedder));
+			Assert.assertEquals("DATA", embedder.poll());
+			Assert.assertEquals("", pollStream(embedder));
+			Assert.assertEquals("APPEND {5+}", embedder.poll());
+			Assert.assertEquals("hello", pollStream(embedder));
+			Assert.assertEquals(")", embedder.poll());
+			Assert.assertEquals("QUIT", embedder.poll());
+			Assert.assertNull(embedder.poll());
+		}
+
+		// 长度为0时不会产生数据块, 不允许切换为流模式
+		TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+				1024);
+		try {
+			codec.startStreaming(0);
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+		}
+		Assert.assertFalse(codec.isStreaming());
+	}
+
+	@Test
+	public void testBatchFrames() throws Exception {
+		TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+				1024);
+		codec.setBatchFrames(true);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(codec);
+
+		embedder.offer(ChannelBuffers.copiedBuffer("MAIL\r\nRCPT\r\nDA",
+				CharsetUtil.US_ASCII));
+		FrameBatch batch = (FrameBatch) embedder.poll();
+		Assert.assertEquals(2, batch.size());
+		Assert.assertEquals("MAIL", batch.getFrames().get(0));
+		Assert.assertEquals("RCPT", batch.getFrames().get(1));
+
+		// 只解码得到一个帧时不合并
+		embedder.offer(ChannelBuffers.copiedBuffer("TA\r\n",
+				CharsetUtil.US_ASCII));
+		Assert.assertEquals("DATA", embedder.poll());
+
+		// 合并写出
+		Channel channel = embedder.getPipeline().getChannel();
+		codec.beginWriteBatch();
+		Channels.write(channel, "250 OK");
+		Channels.write(channel, "354 go ahead");
+		Assert.assertNull(embedder.poll());
+		codec.endWriteBatch();
+
+		ChannelBuffer written = (ChannelBuffer) embedder.poll();
+		Assert.assertEquals("250 OK\r\n354 go ahead\r\n",
+				written.toString(CharsetUtil.US_ASCII));
+		Assert.assertNull(embedder.poll());
+	}
+
+	@Test
+	public void testWriteAggregation() throws Exception {
+		TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+				1024);
+		codec.setWriteFlushThreshold(1024);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(codec);
+		Channel channel = embedder.getPipeline().getChannel();
+
+		StringBuilder expected = new StringBuilder();
+		codec.beginWriteBatch();
+		for (int i = 0; i < 300; i++) {
+			String line = "* " + i + " FETCH";
+			expected.append(line).append("\r\n");
+			Channels.write(channel, line);
+		}
+		// 较大的数据块直接引用
+		ChannelBuffer literal = ChannelBuffers.wrappedBuffer(new byte[2048]);
+		Channels.write(channel, literal);
+		expected.append(new String(new byte[2048], "US-ASCII"));
+		Channels.write(channel, "A1 OK");
+		expected.append("A1 OK\r\n");
+		codec.endWriteBatch();
+
+		// 达到阈值时自动写出
+		StringBuilder actual = new StringBuilder();
+		int writes = 0;
+		Object written;
+		while ((written = embedder.poll()) != null) {
+			actual.append(((ChannelBuffer) written)
+					.toString(CharsetUtil.US_ASCII));
+			writes++;
+		}
+		Assert.assertEquals(expected.toString(), actual.toString());
+		Assert.assertTrue(writes > 1 && writes < 10);
+	}
+
+	@Test
+	public void testWriteBatchForeignThread() throws Exception {
+		final TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+				1024);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(codec);
+		final Channel channel = embedder.getPipeline().getChannel();
+
+		codec.beginWriteBatch();
+		Channels.write(channel, "* 1 EXISTS");
+		Assert.assertNull(embedder.poll());
+
+		// 其他线程写出: 不参与合并, 但排在已暂存的数据之后
+		Thread other = new Thread() {
+			@Override
+			public void run() {
+				codec.beginWriteBatch();
+				Channels.write(channel, "* OK async");
+				codec.endWriteBatch();
+			}
+		};
+		other.start();
+		other.join();
+
+		Assert.assertEquals("* 1 EXISTS\r\n", ((ChannelBuffer) embedder.poll())
+				.toString(CharsetUtil.US_ASCII));
+		Assert.assertEquals("* OK async\r\n", ((ChannelBuffer) embedder.poll())
+				.toString(CharsetUtil.US_ASCII));
+		Assert.assertNull(embedder.poll());
+
+		// 当前线程仍在合并写出
+		Channels.write(channel, "A1 OK");
+		Assert.assertNull(embedder.poll());
+		codec.endWriteBatch();
+		Assert.assertEquals("A1 OK\r\n", ((ChannelBuffer) embedder.poll())
+				.toString(CharsetUtil.US_ASCII));
+	}
+
+	@Test
+	public void testWriteBatchFlushReentrance() throws Exception {
+		final TextLineMessageCodecHandler codec = new TextLineMessageCodecHandler(
+				1024);
+		final boolean[] finished = new boolean[1];
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(
+				new SimpleChannelHandler() {
+					@Override
+					public void writeRequested(ChannelHandlerContext ctx,
+							MessageEvent e) throws Exception {
+						if (!finished[0]) {
+							// 写出期间(如写缓存超过高水位时)其他线程切换读取状态及写出, 不能被阻塞
+							final Channel channel = ctx.getChannel();
+							Thread other = new Thread() {
+								@Override
+								public void run() {
+									channel.setReadable(false);
+									Channels.write(channel, "* OK async");
+									finished[0] = true;
+								}
+							};
+							other.start();
+							other.join(5000);
+							Assert.assertTrue(finished[0]);
+						}
+						ctx.sendDownstream(e);
+					}
+				}, codec);
+		Channel channel = embedder.getPipeline().getChannel();
+
+		codec.beginWriteBatch();
+		Channels.write(channel, "* 1 EXISTS");
+		codec.endWriteBatch();
+
+		// 其他线程的写出排在正在写出的数据之后
+		Assert.assertEquals("* 1 EXISTS\r\n", ((ChannelBuffer) embedder.poll())
+				.toString(CharsetUtil.US_ASCII));
+		Assert.assertEquals("* OK async\r\n", ((ChannelBuffer) embedder.poll())
+				.toString(CharsetUtil.US_ASCII));
+		Assert.assertNull(embedder.poll());
+	}
+
+	/**
+	 * 合并流模式下的数据块, 直至最后一个数据块
+	 */
+	private static String pollStream(DecoderEmbedder<Object> embedder) {
+		StringBuilder sb = new StringBuilder();
+		for (;;) {
+			StreamChunk chunk = (StreamChunk) embedder.poll();
+			sb.append(chunk.getContent().toString(CharsetUtil.US_ASCII));
+			if (chunk.isLast()) {
+				return sb.toString();
+			}
+		}
+	}
+
+	/**
+	 * 逐字节比对的{@link TextLineMessageCodecHandler#indexOf(ChannelBuffer, byte[])}参考实现
+	 */
+	private static int indexOfBytewise(ChannelBuffer haystack, byte[] needle) {
+		for (int i = haystack.readerIndex(); i < haystack.writerIndex(); i++) {
+			int haystackIndex = i;
+			int needleIndex;
+
+			for (needleIndex = 0; needleIndex < needle.length; needleIndex++) {
+				if (haystack.getByte(haystackIndex) != needle[needleIndex]) {
+					break;
+				} else {
+					haystackIndex++;
+					if (haystackIndex == haystack.writerIndex()
+							&& needleIndex != needle.length - 1) {
+
+						haystack.readerIndex(i);
+						return -1;
+					}
+				}
+			}
+
+			if (needleIndex == needle.length) {
+				// Found the needle from the haystack!
+				int length = i - haystack.readerIndex();
+				haystack.readerIndex(i);
+				return length;
+			}
+		}
+
+		haystack.readerIndex(haystack.writerIndex());
+		return -1;
+	}
+
+	private static void decodeAll(TextLineMessageCodecHandler codec,
+			ChannelBuffer cumulation, List<String> lines) throws Exception {
+		Object line;
+		while ((line = codec.decode(null, null, cumulation)) != null) {
+			lines.add((String) line);
+		}
+	}
+
+	/**
+	 * 生成内容相同的堆内存, 带偏移量的堆内存, 直接内存及组合缓存
+	 */
+	private static List<ChannelBuffer> createBuffers(byte[] data, Random rand) {
+		List<ChannelBuffer> list = new ArrayList<ChannelBuffer>();
+		list.add(ChannelBuffers.wrappedBuffer(data));
+
+		byte[] padded = new byte[data.length + 7];
+		System.arraycopy(data, 0, padded, 3, data.length);
+		list.add(ChannelBuffers.wrappedBuffer(padded, 3, data.length));
+
+		ChannelBuffer direct = ChannelBuffers.directBuffer(Math.max(1,
+				data.length));
+		direct.writeBytes(data);
+		list.add(direct);
+
+		int split = rand.nextInt(data.length + 1);
+		list.add(ChannelBuffers.wrappedBuffer(
+				ChannelBuffers.wrappedBuffer(data, 0, split),
+				ChannelBuffers.wrappedBuffer(data, split, data.length - split)));
+		return list;
+	}
+}
@@ -0,0 +1,145 @@
+package com.git.original.server.netty;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Test;
+
+import com.git.original.server.INonBlockingMessage;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.server.netty.UpstreamEventExecutionHandler进行测试
+ *
+ * @author linaoxiang
+ */
+public class UpstreamEventExecutionHandlerTester {
+
+	/**
+	 * 非阻塞消息
+	 */
+	private static class Noop implements INonBlockingMessage {
+		@Override
+		public String toString() {
+			return "NOOP";
+		}
+	}
+
+	@Test
+	public void testInlineNonBlocking() throws Exception {
+		final Queue<Runnable> tasks = new LinkedList<Runnable>();
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				tasks.add(command);
+			}
+		};
+
+		UpstreamEventExecutionHandler handler = new UpstreamEventExecutionHandler(
+				executor);
+		handler.setInlineNonBlocking(true);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(handler);
+		runAll(tasks);
+
+		// 没有未完成的事件: 非阻塞消息直接处理
+		Noop noop1 = new Noop();
+		embedder.offer(noop1);
+		Assert.assertTrue(tasks.isEmpty());
+		Assert.assertSame(noop1, embedder.poll());
+
+		// 普通消息进入线程池; 其后的非阻塞消息也必须排队, 保证处理顺序
+		embedder.offer("FETCH");
+		Noop noop2 = new Noop();
+		embedder.offer(noop2);
+		Assert.assertEquals(2, tasks.size());
+		Assert.assertNull(embedder.poll());
+
+		runAll(tasks);
+		Assert.assertEquals("FETCH", embedder.poll());
+		Assert.assertSame(noop2, embedder.poll());
+
+		// 队列清空后恢复内联处理
+		Noop noop3 = new Noop();
+		embedder.offer(noop3);
+		Assert.assertTrue(tasks.isEmpty());
+		Assert.assertSame(noop3, embedder.poll());
+
+		// 批量消息中只要有一个帧不是非阻塞的, 就必须进入线程池
+		List<Object> frames = new ArrayList<Object>();
+		frames.add(new Noop());
+		frames.add("FETCH");
+		embedder.offer(new FrameBatch(frames));
+		Assert.assertEquals(1, tasks.size());
+		runAll(tasks);
+	}
+
+	@Test
+	public void testSaturation() throws Exception {
+		final Queue<Runnable> tasks = new LinkedList<Runnable>();
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				tasks.add(command);
+			}
+		};
+		IExecutorStatistics stat = new IExecutorStatistics() {
+			public int getPendingEventCount() {
+				return tasks.size();
+			}
+
+			public long getCompletedEventCount() {
+				return 0;
+			}
+
+			public long getRejectedEventCount() {
+				return 0;
+			}
+
+			public int getActiveCount() {
+				return 0;
+			}
+
+			public int getPoolSize() {
+				return 1;
+			}
+		};
+
+		UpstreamEventExecutionHandler handler = new UpstreamEventExecutionHandler(
+				executor);
+		ExecutorSaturationPolicy policy = new ExecutorSaturationPolicy(stat, 3,
+				0, ExecutorSaturationPolicy.Action.CLOSE);
+		handler.setSaturationPolicy(policy);
+		DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(handler);
+		runAll(tasks);
+
+		// 未饱和时正常排队
+		for (int i = 0; i < 3; i++) {
+			embedder.offer("CMD" + i);
+		}
+		Assert.assertEquals(3, tasks.size());
+		Assert.assertEquals(0, policy.getRejectedCount());
+
+		// 饱和后直接拒绝, 不再排队
+		embedder.offer("CMD3");
+		Assert.assertEquals(3, tasks.size());
+		Assert.assertEquals(1, policy.getRejectedCount());
+
+		runAll(tasks);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals("CMD" + i, embedder.poll());
+		}
+		Assert.assertNull(embedder.poll());
+	}
+
+	private static void runAll(Queue<Runnable> tasks) {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			task.run();
+		}
+	}
+}
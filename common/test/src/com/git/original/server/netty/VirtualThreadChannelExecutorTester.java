@@ -0,0 +1,264 @@
+package com.git.original.server.netty;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.channel.AbstractChannel;
+import org.jboss.netty.channel.AbstractChannelSink;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelConfig;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultChannelConfig;
+import org.jboss.netty.channel.DefaultExceptionEvent;
+import org.jboss.netty.channel.UpstreamChannelStateEvent;
+import org.jboss.netty.channel.UpstreamMessageEvent;
+import org.jboss.netty.handler.execution.ChannelEventRunnable;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * 对com.git.original.server.netty.VirtualThreadChannelExecutor进行测试
+ * <p>
+ * 当前JDK不支持虚拟线程时跳过
+ *
+ * @author linaoxiang
+ */
+public class VirtualThreadChannelExecutorTester {
+
+	private VirtualThreadChannelExecutor executor;
+
+	/** 按执行顺序记录的事件 */
+	private final List<String> executed = new CopyOnWriteArrayList<String>();
+
+	/** 同时执行的事件数 */
+	private final AtomicInteger concurrent = new AtomicInteger(0);
+
+	/** 同时执行的事件数的最大值 */
+	private final AtomicInteger maxConcurrent = new AtomicInteger(0);
+
+	@Before
+	public void setUp() {
+		Assume.assumeTrue(VirtualThreadChannelExecutor.isSupported());
+		executor = new VirtualThreadChannelExecutor();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (executor != null) {
+			executor.shutdown();
+			Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void testChannelOrder() throws Exception {
+		TestChannel[] channels = new TestChannel[4];
+		for (int i = 0; i < channels.length; i++) {
+			channels[i] = new TestChannel();
+		}
+
+		final int count = 200;
+		for (int n = 0; n < count; n++) {
+			for (TestChannel channel : channels) {
+				executor.execute(new RecordingRunnable(new UpstreamMessageEvent(
+						channel, channel.getId() + ":" + n, null), null));
+			}
+		}
+		for (TestChannel channel : channels) {
+			channel.close();
+			executor.execute(new RecordingRunnable(closedEvent(channel), null));
+		}
+
+		waitFor(channels.length * (count + 1));
+		for (TestChannel channel : channels) {
+			int n = 0;
+			for (String event : executed) {
+				if (event.startsWith(channel.getId() + ":")) {
+					Assert.assertEquals(channel.getId() + ":" + n, event);
+					n++;
+				}
+			}
+			Assert.assertEquals(count, n);
+		}
+		Assert.assertEquals(channels.length * (count + 1),
+				executor.getCompletedEventCount());
+		Assert.assertEquals(0, executor.getPendingEventCount());
+		Assert.assertEquals(0, executor.getChannelQueueCount());
+	}
+
+	@Test
+	public void testReleaseAfterClosed() throws Exception {
+		TestChannel channel = new TestChannel();
+		executor.execute(new RecordingRunnable(new UpstreamMessageEvent(
+				channel, "A", null), null));
+		waitFor(1);
+		Assert.assertEquals(1, executor.getChannelQueueCount());
+
+		channel.close();
+		executor.execute(new RecordingRunnable(closedEvent(channel), null));
+		waitFor(2);
+		Assert.assertEquals(0, executor.getChannelQueueCount());
+
+		// 关闭事件不经过线程池时, 由通道的关闭通知移除空闲的队列
+		channel = new TestChannel();
+		executor.execute(new RecordingRunnable(new UpstreamMessageEvent(
+				channel, "B", null), null));
+		waitFor(3);
+		Assert.assertEquals(1, executor.getChannelQueueCount());
+		channel.close();
+		Assert.assertEquals(0, executor.getChannelQueueCount());
+	}
+
+	@Test
+	public void testClosedWithPendingEvents() throws Exception {
+		TestChannel channel = new TestChannel();
+		CountDownLatch blocker = new CountDownLatch(1);
+		executor.execute(new RecordingRunnable(new UpstreamMessageEvent(
+				channel, "A", null), blocker));
+		executor.execute(new RecordingRunnable(new UpstreamMessageEvent(
+				channel, "B", null), null));
+
+		// 事件仍在排队时通道关闭, 之后又有事件到达(如关闭过程中的异常事件)
+		channel.close();
+		executor.execute(new RecordingRunnable(closedEvent(channel), null));
+		executor.execute(new RecordingRunnable(new DefaultExceptionEvent(
+				channel, new Exception("late")), null));
+		Assert.assertEquals(1, executor.getChannelQueueCount());
+		Assert.assertTrue(executed.isEmpty());
+
+		blocker.countDown();
+		waitFor(4);
+		Assert.assertEquals(1, maxConcurrent.get());
+		Assert.assertEquals("A", executed.get(0));
+		Assert.assertEquals("B", executed.get(1));
+		Assert.assertEquals("CLOSED", executed.get(2));
+		Assert.assertEquals("EXCEPTION", executed.get(3));
+		Assert.assertEquals(0, executor.getChannelQueueCount());
+	}
+
+	/**
+	 * 等待指定数量的事件执行完毕, 且执行线程全部退出
+	 * 
+	 * @param count
+	 *            事件数
+	 */
+	private void waitFor(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (executed.size() < count || executor.getPoolSize() > 0) {
+			Assert.assertTrue("timeout", System.currentTimeMillis() < deadline);
+			Thread.sleep(1);
+		}
+		Assert.assertEquals(count, executed.size());
+	}
+
+	private static ChannelEvent closedEvent(Channel channel) {
+		return new UpstreamChannelStateEvent(channel, ChannelState.OPEN,
+				Boolean.FALSE);
+	}
+
+	/**
+	 * 记录执行顺序及并发数的事件任务
+	 */
+	private class RecordingRunnable extends ChannelEventRunnable {
+
+		/** 执行前等待的闭锁(null=不等待) */
+		private final CountDownLatch blocker;
+
+		RecordingRunnable(ChannelEvent e, CountDownLatch blocker) {
+			super(null, e, executor);
+			this.blocker = blocker;
+		}
+
+		@Override
+		protected void doRun() {
+			int n = concurrent.incrementAndGet();
+			if (n > maxConcurrent.get()) {
+				maxConcurrent.set(n);
+			}
+
+			try {
+				if (blocker != null) {
+					blocker.await(5, TimeUnit.SECONDS);
+				}
+				// 让出执行机会, 使并发执行更容易暴露
+				Thread.sleep(1);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+
+			if (e instanceof UpstreamMessageEvent) {
+				executed.add(String.valueOf(((UpstreamMessageEvent) e)
+						.getMessage()));
+			} else if (e instanceof DefaultExceptionEvent) {
+				executed.add("EXCEPTION");
+			} else {
+				executed.add("CLOSED");
+			}
+			concurrent.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 测试用网络通道: 不进行任何实际的I/O操作
+	 */
+	private static class TestChannel extends AbstractChannel {
+
+		private final ChannelConfig config = new DefaultChannelConfig();
+
+		TestChannel() {
+			super(null, null, Channels.pipeline(), new AbstractChannelSink() {
+				@Override
+				public void eventSunk(ChannelPipeline pipeline, ChannelEvent e)
+						throws Exception {
+					// 忽略
+				}
+			});
+		}
+
+		/**
+		 * 将通道标记为已关闭, 并触发关闭通知
+		 */
+		@Override
+		public ChannelFuture close() {
+			this.setClosed();
+			return this.getCloseFuture();
+		}
+
+		@Override
+		public ChannelConfig getConfig() {
+			return config;
+		}
+
+		@Override
+		public boolean isBound() {
+			return true;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public SocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public SocketAddress getRemoteAddress() {
+			return null;
+		}
+	}
+}